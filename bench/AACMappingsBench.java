@@ -0,0 +1,100 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Benchmarks of AACMappings on synthetic vocabularies.
+ *
+ * @author Alex Cyphers
+ */
+public class AACMappingsBench {
+  /**
+   * Run the suite.
+   *
+   * @param bench
+   *   The harness.
+   * @param sizes
+   *   The numbers of items in the vocabularies to benchmark.
+   *
+   * @throws Exception
+   *   If a benchmark fails.
+   */
+  public static void run(Bench bench, int[] sizes) throws Exception {
+    Bench.heading("AACMappings");
+    for (int n : sizes) {
+      Path file = Files.createTempFile("AACMappingsBench", ".txt");
+      file.toFile().deleteOnExit();
+      MappingsGenerator.writeOfSize(file, n);
+      String filename = file.toString();
+
+      bench.measure("AACMappings(String)", n, 1, null,
+          () -> new AACMappings(filename));
+
+      AACMappings mappings = new AACMappings(filename);
+      String[] categories = mappings.getImageLocs();
+      String category = categories[categories.length / 2];
+      mappings.select(category);
+      String[] items = mappings.getImageLocs();
+
+      bench.measure("AACMappings.select (hit)", n, items.length, null, () -> {
+        int total = 0;
+        for (String item : items) {
+          total += mappings.select(item).length();
+        } // for
+        return total;
+      });
+
+      bench.measure("AACMappings.select (miss)", n, categories.length, null,
+          () -> {
+            int missed = 0;
+            for (String item : categories) {
+              try {
+                mappings.select(item);
+              } catch (RuntimeException e) {
+                missed++;
+              } // try/catch
+            } // for
+            return missed;
+          });
+
+      bench.measure("AACMappings.trySelect (miss)", n, categories.length, null,
+          () -> {
+            int missed = 0;
+            for (String item : categories) {
+              missed += (mappings.trySelect(item) == null) ? 1 : 0;
+            } // for
+            return missed;
+          });
+
+      bench.measure("AACMappings.getImageLocs", n, 1, null,
+          mappings::getImageLocs);
+
+      bench.measure("AACMappings.getImageLocView", n, 1, null, () -> {
+        List<String> view = mappings.getImageLocView();
+        return view.get(view.size() - 1);
+      });
+
+      mappings.search("", 1);
+      String[] queries = {"french fries", "hot water", "pizza", "mil",
+          "big red ball", "zipper"};
+      bench.measure("AACMappings.search", n, queries.length, null, () -> {
+        int found = 0;
+        for (String query : queries) {
+          found += mappings.search(query, 10).size();
+        } // for
+        return found;
+      });
+
+      mappings.fuzzySearch("", 1);
+      String[] typos = {"frech fries", "hot watr", "piza", "mikl",
+          "big red bal", "ziper"};
+      bench.measure("AACMappings.fuzzySearch", n, typos.length, null, () -> {
+        int found = 0;
+        for (String query : typos) {
+          found += mappings.fuzzySearch(query, 10).size();
+        } // for
+        return found;
+      });
+    } // for
+  } // run(Bench, int[])
+} // class AACMappingsBench
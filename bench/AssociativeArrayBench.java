@@ -0,0 +1,114 @@
+import edu.grinnell.csc207.util.AssociativeArray;
+import edu.grinnell.csc207.util.PersistentAssociativeArray;
+import edu.grinnell.csc207.util.StringAssociativeArray;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Benchmarks of the basic operations of the associative arrays.
+ *
+ * @author Alex Cyphers
+ */
+public class AssociativeArrayBench {
+  /**
+   * Run the suite.
+   *
+   * @param bench
+   *   The harness.
+   * @param sizes
+   *   The numbers of pairs to benchmark.
+   *
+   * @throws Exception
+   *   If a benchmark fails.
+   */
+  public static void run(Bench bench, int[] sizes) throws Exception {
+    Bench.heading("AssociativeArray");
+    for (int n : sizes) {
+      String[] keys = new String[n];
+      String[] misses = new String[n];
+      for (int i = 0; i < n; i++) {
+        keys[i] = "img/food/icons8-symbol-" + i + "-96.png";
+        misses[i] = "img/food/icons8-missing-" + i + "-96.png";
+      } // for
+
+      AssociativeArray<String, String> full = new AssociativeArray<>();
+      for (String key : keys) {
+        full.set(key, key);
+      } // for
+
+      bench.measure("AssociativeArray.set", n, n, null, () -> {
+        AssociativeArray<String, String> arr = new AssociativeArray<>();
+        for (String key : keys) {
+          arr.set(key, key);
+        } // for
+        return arr;
+      });
+
+      bench.measure("AssociativeArray.get", n, n, null, () -> {
+        int total = 0;
+        for (String key : keys) {
+          total += full.get(key).length();
+        } // for
+        return total;
+      });
+
+      bench.measure("AssociativeArray.hasKey (hit)", n, n, null, () -> {
+        int found = 0;
+        for (String key : keys) {
+          found += full.hasKey(key) ? 1 : 0;
+        } // for
+        return found;
+      });
+
+      bench.measure("AssociativeArray.hasKey (miss)", n, n, null, () -> {
+        int found = 0;
+        for (String key : misses) {
+          found += full.hasKey(key) ? 1 : 0;
+        } // for
+        return found;
+      });
+
+      // Each run removes from a fresh copy, made before the clock starts.
+      AtomicReference<AssociativeArray<String, String>> victim = new AtomicReference<>();
+      bench.measure("AssociativeArray.remove", n, n,
+          () -> victim.set(full.clone()), () -> {
+            AssociativeArray<String, String> arr = victim.get();
+            for (String key : keys) {
+              arr.remove(key);
+            } // for
+            return arr;
+          });
+
+      bench.measure("AssociativeArray.clone", n, 1, null, full::clone);
+
+      bench.measure("StringAssociativeArray.set", n, n, null, () -> {
+        StringAssociativeArray<String> arr = new StringAssociativeArray<>();
+        for (String key : keys) {
+          arr.set(key, key);
+        } // for
+        return arr;
+      });
+
+      StringAssociativeArray<String> strings = new StringAssociativeArray<>();
+      for (String key : keys) {
+        strings.set(key, key);
+      } // for
+      bench.measure("StringAssociativeArray.get", n, n, null, () -> {
+        int total = 0;
+        for (String key : keys) {
+          total += strings.get(key).length();
+        } // for
+        return total;
+      });
+
+      bench.measure("PersistentAssociativeArray.with", n, n, null, () -> {
+        PersistentAssociativeArray<String, String> arr =
+            new PersistentAssociativeArray<>();
+        for (String key : keys) {
+          arr = arr.with(key, key);
+        } // for
+        return arr;
+      });
+    } // for
+  } // run(Bench, int[])
+} // class AssociativeArrayBench
@@ -0,0 +1,219 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A small benchmark harness, in the spirit of JMH, for the associative
+ * arrays and the AAC mappings. Each benchmark is run for a number of
+ * warmup iterations, whose results are discarded, and then for a
+ * number of measured iterations of a fixed length. Work that a
+ * benchmark needs before each timed call (e.g., refilling an array
+ * that the benchmark empties) is done outside of the timed region.
+ *
+ * Run all of the suites with
+ *
+ *   java -cp out:bench-out Bench
+ *
+ * or only some of them by naming them (e.g., "Bench array mappings").
+ * The settings can be changed with the system properties
+ * bench.warmup, bench.iterations, bench.millis and bench.sizes.
+ *
+ * @author Alex Cyphers
+ */
+public class Bench {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** The vocabulary sizes we benchmark by default. */
+  static final String DEFAULT_SIZES = "10,100,1000,10000,100000";
+
+  // +---------------+-----------------------------------------------
+  // | Static fields |
+  // +---------------+
+
+  /**
+   * Results are stored here so that the JIT cannot discard the work
+   * that produced them.
+   */
+  static volatile Object sink;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The number of warmup iterations. */
+  final int warmup;
+
+  /** The number of measured iterations. */
+  final int iterations;
+
+  /** The length of each iteration, in nanoseconds. */
+  final long iterationNanos;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a harness with the settings given by system properties.
+   */
+  public Bench() {
+    this.warmup = Integer.getInteger("bench.warmup", 3);
+    this.iterations = Integer.getInteger("bench.iterations", 5);
+    this.iterationNanos = Integer.getInteger("bench.millis", 200) * 1000000L;
+  } // Bench()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * A benchmarked operation.
+   */
+  @FunctionalInterface
+  interface Task {
+    /**
+     * Do the work being measured.
+     *
+     * @return a result, which the harness consumes.
+     *
+     * @throws Exception
+     *   If the work fails, which aborts the benchmark.
+     */
+    Object run() throws Exception;
+  } // interface Task
+
+  /**
+   * Get the vocabulary sizes to benchmark.
+   *
+   * @return the sizes.
+   */
+  static int[] sizes() {
+    return Arrays.stream(System.getProperty("bench.sizes", DEFAULT_SIZES)
+        .split(",")).mapToInt(Integer::parseInt).toArray();
+  } // sizes()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Measure a task and print the result as one row of a table.
+   *
+   * @param name
+   *   The name of the benchmark.
+   * @param param
+   *   The parameter (e.g., vocabulary size) of this run.
+   * @param operations
+   *   The number of operations that one call of task performs.
+   * @param setup
+   *   Untimed work to do before each call of task, or null.
+   * @param task
+   *   The timed work.
+   *
+   * @throws Exception
+   *   If the task fails.
+   */
+  public void measure(String name, int param, long operations,
+      Runnable setup, Task task) throws Exception {
+    for (int i = 0; i < this.warmup; i++) {
+      this.iteration(operations, setup, task);
+    } // for
+    double[] nanosPerOp = new double[this.iterations];
+    for (int i = 0; i < this.iterations; i++) {
+      nanosPerOp[i] = this.iteration(operations, setup, task);
+    } // for
+    Arrays.sort(nanosPerOp);
+    double median = nanosPerOp[nanosPerOp.length / 2];
+    System.out.printf("%-36s %8d %14.1f %16.0f   [%.1f .. %.1f]%n", name,
+        param, median, 1e9 / median, nanosPerOp[0],
+        nanosPerOp[nanosPerOp.length - 1]);
+  } // measure(String, int, long, Runnable, Task)
+
+  /**
+   * Run one iteration of a task.
+   *
+   * @param operations
+   *   The number of operations per call.
+   * @param setup
+   *   Untimed work to do before each call, or null.
+   * @param task
+   *   The timed work.
+   *
+   * @return the mean time per operation, in nanoseconds.
+   *
+   * @throws Exception
+   *   If the task fails.
+   */
+  double iteration(long operations, Runnable setup, Task task)
+      throws Exception {
+    long timed = 0;
+    long calls = 0;
+    long start = System.nanoTime();
+    do {
+      if (setup != null) {
+        setup.run();
+      } // if
+      long before = System.nanoTime();
+      sink = task.run();
+      timed += System.nanoTime() - before;
+      calls++;
+    } while (System.nanoTime() - start < this.iterationNanos);
+    return (double) timed / (calls * operations);
+  } // iteration(long, Runnable, Task)
+
+  /**
+   * Print the heading of a table of results.
+   *
+   * @param title
+   *   The title of the suite.
+   */
+  public static void heading(String title) {
+    System.out.println();
+    System.out.println("== " + title);
+    System.out.printf("%-36s %8s %14s %16s   %s%n", "benchmark", "size",
+        "ns/op", "ops/s", "[min .. max ns/op]");
+  } // heading(String)
+
+  // +------+--------------------------------------------------------
+  // | Main |
+  // +------+
+
+  /**
+   * Run the benchmark suites named on the command line, or all of
+   * them.
+   *
+   * @param args
+   *   The names of the suites to run.
+   *
+   * @throws Exception
+   *   If a benchmark fails.
+   */
+  public static void main(String[] args) throws Exception {
+    List<String> suites = new ArrayList<>(Arrays.asList(args));
+    if (suites.isEmpty()) {
+      suites.addAll(Arrays.asList("array", "mappings", "concurrent",
+          "loader"));
+    } // if
+    Bench bench = new Bench();
+    for (String suite : suites) {
+      switch (suite) {
+        case "array":
+          AssociativeArrayBench.run(bench, sizes());
+          break;
+        case "mappings":
+          AACMappingsBench.run(bench, sizes());
+          break;
+        case "concurrent":
+          ConcurrentReadBench.run(bench);
+          break;
+        case "loader":
+          LoaderBench.run(bench, sizes());
+          break;
+        default:
+          System.err.println("Unknown suite: " + suite);
+      } // switch
+    } // for
+  } // main(String[])
+} // class Bench
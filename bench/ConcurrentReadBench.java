@@ -0,0 +1,115 @@
+import edu.grinnell.csc207.util.ConcurrentAssociativeArray;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how the read throughput of a ConcurrentAssociativeArray
+ * scales with the number of reader threads, while one writer thread
+ * keeps changing it. Since reads never lock, throughput should grow
+ * roughly linearly up to the number of cores.
+ *
+ * @author Alex Cyphers
+ */
+public class ConcurrentReadBench {
+  /** The number of keys in the array. */
+  static final int KEYS = 1000;
+
+  /**
+   * Run the suite.
+   *
+   * @param bench
+   *   The harness, whose iteration length we use.
+   *
+   * @throws Exception
+   *   If a benchmark fails.
+   */
+  public static void run(Bench bench) throws Exception {
+    System.out.println();
+    System.out.println("== ConcurrentAssociativeArray reads, one writer");
+    System.out.printf("%-10s %16s %16s%n", "readers", "reads/s",
+        "reads/s/reader");
+
+    String[] keys = new String[KEYS];
+    ConcurrentAssociativeArray<String, String> arr =
+        new ConcurrentAssociativeArray<>();
+    for (int i = 0; i < KEYS; i++) {
+      keys[i] = "img/category" + i + "/icon.png";
+      arr.set(keys[i], "category " + i);
+    } // for
+
+    int cores = Runtime.getRuntime().availableProcessors();
+    for (int readers = 1; readers <= cores; readers *= 2) {
+      double rate = 0;
+      for (int i = 0; i < bench.warmup + bench.iterations; i++) {
+        double r = iteration(arr, keys, readers, bench.iterationNanos);
+        if (i >= bench.warmup) {
+          rate += r / bench.iterations;
+        } // if
+      } // for
+      System.out.printf("%-10d %16.0f %16.0f%n", readers, rate,
+          rate / readers);
+    } // for
+  } // run(Bench)
+
+  /**
+   * Run the readers and the writer for a while.
+   *
+   * @param arr
+   *   The shared array.
+   * @param keys
+   *   Its keys.
+   * @param readers
+   *   The number of reader threads.
+   * @param nanos
+   *   How long to run.
+   *
+   * @return the total number of reads per second.
+   *
+   * @throws InterruptedException
+   *   If interrupted while waiting for the threads.
+   */
+  static double iteration(ConcurrentAssociativeArray<String, String> arr,
+      String[] keys, int readers, long nanos) throws InterruptedException {
+    AtomicBoolean done = new AtomicBoolean(false);
+    LongAdder reads = new LongAdder();
+    CountDownLatch finished = new CountDownLatch(readers + 1);
+
+    for (int t = 0; t < readers; t++) {
+      int offset = t * 7919;
+      new Thread(() -> {
+        long count = 0;
+        int i = offset;
+        while (!done.get()) {
+          for (int j = 0; j < 1000; j++) {
+            if (arr.getOrDefault(keys[i++ % keys.length], null) != null) {
+              count++;
+            } // if
+          } // for
+        } // while
+        reads.add(count);
+        finished.countDown();
+      }).start();
+    } // for
+
+    new Thread(() -> {
+      int i = 0;
+      while (!done.get()) {
+        try {
+          arr.set(keys[i++ % keys.length], "edited " + i);
+          Thread.sleep(1);
+        } catch (Exception e) {
+          break;
+        } // try/catch
+      } // while
+      finished.countDown();
+    }).start();
+
+    long start = System.nanoTime();
+    Thread.sleep(nanos / 1000000);
+    done.set(true);
+    finished.await();
+    return reads.sum() * 1e9 / (System.nanoTime() - start);
+  } // iteration(ConcurrentAssociativeArray, String[], int, long)
+} // class ConcurrentReadBench
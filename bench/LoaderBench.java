@@ -0,0 +1,98 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares the Scanner-based parser that AACMappings used to use with
+ * MappingsReader, both on their own and when building categories, and
+ * compares loading AACMappings sequentially, in parallel, from a
+ * binary snapshot, and lazily.
+ *
+ * @author Alex Cyphers
+ */
+public class LoaderBench {
+  /**
+   * A handler that only counts the lines it sees.
+   */
+  static class Counter implements MappingsReader.Handler {
+    /** The number of characters seen, so that nothing is optimized out. */
+    long chars;
+
+    @Override
+    public void category(String imageLoc, String name) {
+      this.chars += imageLoc.length() + name.length();
+    } // category(String, String)
+
+    @Override
+    public void item(String imageLoc, String text) {
+      this.chars += imageLoc.length() + text.length();
+    } // item(String, String)
+  } // class Counter
+
+  /**
+   * Run the suite.
+   *
+   * @param bench
+   *   The harness.
+   * @param sizes
+   *   The numbers of items in the files to parse.
+   *
+   * @throws Exception
+   *   If a benchmark fails.
+   */
+  public static void run(Bench bench, int[] sizes) throws Exception {
+    Bench.heading("Mapping file loaders (ns per line)");
+    for (int n : sizes) {
+      Path file = Files.createTempFile("LoaderBench", ".txt");
+      file.toFile().deleteOnExit();
+      MappingsGenerator.writeOfSize(file, n);
+      String filename = file.toString();
+      long lines = Files.readAllLines(file).size();
+
+      bench.measure("Scanner parse", n, lines, null, () -> {
+        Counter counter = new Counter();
+        ScannerMappingsReader.read(filename, counter);
+        return counter.chars;
+      });
+
+      bench.measure("MappingsReader parse", n, lines, null, () -> {
+        Counter counter = new Counter();
+        MappingsReader.read(filename, counter);
+        return counter.chars;
+      });
+
+      bench.measure("Scanner + CategoryBuilder", n, lines, null, () -> {
+        CategoryBuilder builder = new CategoryBuilder();
+        ScannerMappingsReader.read(filename, builder);
+        return builder.finish();
+      });
+
+      bench.measure("MappingsReader + CategoryBuilder", n, lines, null, () -> {
+        CategoryBuilder builder = new CategoryBuilder();
+        MappingsReader.read(filename, builder);
+        return builder.finish();
+      });
+
+      bench.measure("AACMappings (sequential)", n, lines, null,
+          () -> new AACMappings(filename, false));
+
+      bench.measure("AACMappings (parallel)", n, lines, null,
+          () -> new AACMappings(filename, true));
+
+      AACMappings.load(filename);
+      MappingsSnapshot.snapshotPath(filename).toFile().deleteOnExit();
+      bench.measure("AACMappings.load (snapshot)", n, lines, null,
+          () -> {
+            AACMappings mappings = AACMappings.load(filename);
+            mappings.close();
+            return mappings;
+          });
+
+      bench.measure("AACMappings.loadLazily", n, lines, null, () -> {
+        AACMappings mappings = AACMappings.loadLazily(filename);
+        mappings.close();
+        return mappings;
+      });
+      EditJournal.journalPath(filename).toFile().deleteOnExit();
+    } // for
+  } // run(Bench, int[])
+} // class LoaderBench
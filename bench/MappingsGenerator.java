@@ -0,0 +1,127 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Generates synthetic mapping files in the format that AACMappings
+ * reads, so that benchmarks of large vocabularies are reproducible.
+ * The same arguments always produce the same file.
+ *
+ *   java -cp bench-out MappingsGenerator out.txt 100 1000 42
+ *
+ * writes 100 categories of 1000 items each, using seed 42.
+ *
+ * @author Alex Cyphers
+ */
+public class MappingsGenerator {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** Words from which the spoken text is made. */
+  static final String[] WORDS = {"apple", "ball", "cap", "dress", "egg",
+      "fries", "glove", "hat", "igloo", "juice", "kite", "lamp", "milk",
+      "nest", "onion", "pizza", "quilt", "rain", "sock", "toast", "under",
+      "violin", "water", "box", "yarn", "zipper", "red", "big", "small",
+      "hot", "cold", "more", "stop", "go", "want", "like"};
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Write a synthetic mapping file.
+   *
+   * @param file
+   *   Where to write it.
+   * @param categories
+   *   The number of categories.
+   * @param items
+   *   The number of items in each category.
+   * @param seed
+   *   The seed for the random choice of words.
+   *
+   * @throws IOException
+   *   If the file cannot be written.
+   */
+  public static void write(Path file, int categories, int items, long seed)
+      throws IOException {
+    Random random = new Random(seed);
+    try (BufferedWriter out = Files.newBufferedWriter(file,
+        StandardCharsets.UTF_8)) {
+      for (int c = 0; c < categories; c++) {
+        String dir = "img/category" + c + "/";
+        out.write(dir + "icon.png " + phrase(random, 1) + " " + c);
+        out.newLine();
+        for (int i = 0; i < items; i++) {
+          out.write(">" + dir + "icons8-symbol-" + i + "-96.png "
+              + phrase(random, 1 + random.nextInt(3)));
+          out.newLine();
+        } // for
+      } // for
+    } // try
+  } // write(Path, int, int, long)
+
+  /**
+   * Write a synthetic mapping file with about `size` entries in total,
+   * split into categories of at most 100 items.
+   *
+   * @param file
+   *   Where to write it.
+   * @param size
+   *   The total number of items.
+   *
+   * @throws IOException
+   *   If the file cannot be written.
+   */
+  public static void writeOfSize(Path file, int size) throws IOException {
+    int items = Math.min(size, 100);
+    write(file, Math.max(1, size / items), items, 42);
+  } // writeOfSize(Path, int)
+
+  /**
+   * Make up a phrase.
+   *
+   * @param random
+   *   The source of randomness.
+   * @param words
+   *   The number of words.
+   *
+   * @return the phrase.
+   */
+  static String phrase(Random random, int words) {
+    StringBuilder phrase = new StringBuilder();
+    for (int i = 0; i < words; i++) {
+      if (i > 0) {
+        phrase.append(' ');
+      } // if
+      phrase.append(WORDS[random.nextInt(WORDS.length)]);
+    } // for
+    return phrase.toString();
+  } // phrase(Random, int)
+
+  /**
+   * Write a file as described by the command line.
+   *
+   * @param args
+   *   The file name, number of categories, number of items per
+   *   category, and (optionally) the seed.
+   *
+   * @throws IOException
+   *   If the file cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3) {
+      System.err.println(
+          "Usage: java MappingsGenerator FILE CATEGORIES ITEMS [SEED]");
+      System.exit(1);
+    } // if
+    long seed = (args.length > 3) ? Long.parseLong(args[3]) : 42;
+    write(Paths.get(args[0]), Integer.parseInt(args[1]),
+        Integer.parseInt(args[2]), seed);
+  } // main(String[])
+} // class MappingsGenerator
@@ -0,0 +1,41 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Scanner;
+
+/**
+ * The original, Scanner-based way of reading mapping files, kept as a
+ * baseline for LoaderBench.
+ *
+ * @author Alex Cyphers
+ */
+public class ScannerMappingsReader {
+  /**
+   * Parse a whole mapping file, one String per line.
+   *
+   * @param filename
+   *   The name of the file.
+   * @param handler
+   *   What to do with each line.
+   *
+   * @throws IOException
+   *   If the file cannot be read.
+   */
+  public static void read(String filename, MappingsReader.Handler handler)
+      throws IOException {
+    try (Scanner scanner = new Scanner(new File(filename))) {
+      while (scanner.hasNextLine()) {
+        String line = scanner.nextLine();
+        if (line.isEmpty()) {
+          continue;
+        } // if
+        if (line.startsWith(">")) {
+          handler.item(line.substring(1, line.indexOf(" ")),
+              line.substring(line.indexOf(" ") + 1));
+        } else {
+          handler.category(line.substring(0, line.indexOf(" ")),
+              line.substring(line.indexOf(" ") + 1));
+        } // if/else
+      } // while
+    } // try
+  } // read(String, MappingsReader.Handler)
+} // class ScannerMappingsReader
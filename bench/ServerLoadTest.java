@@ -0,0 +1,256 @@
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A load test for AACServer. A number of clients, each on its own
+ * thread and with its own session, repeatedly list the home page,
+ * enter a random category, list it, select a random item and return
+ * home, for a fixed time. The test reports the requests per second and
+ * the median and 99th percentile latency.
+ *
+ * Run it against a server that is already running with
+ *
+ *   java -cp out:bench-out ServerLoadTest http://localhost:8207
+ *
+ * or with no URL to start a local server over a synthetic mapping
+ * file. The settings can be changed with the system properties
+ * load.clients, load.seconds and load.size (the number of items in the
+ * synthetic file).
+ *
+ * @author Alex Cyphers
+ */
+public class ServerLoadTest {
+  /**
+   * One client's requests and their latencies.
+   */
+  static class Client implements Runnable {
+    /** The shared HTTP client. */
+    final HttpClient http;
+
+    /** The address of the server. */
+    final String base;
+
+    /** When to stop, by System.nanoTime. */
+    final long deadline;
+
+    /** The latencies of the requests, in nanoseconds. */
+    long[] latencies = new long[1024];
+
+    /** The number of requests made. */
+    int count;
+
+    /** The number of requests that failed. */
+    int errors;
+
+    /** Random choices of categories and items. */
+    final Random random;
+
+    /**
+     * Create a client.
+     *
+     * @param http
+     *   The shared HTTP client.
+     * @param base
+     *   The address of the server.
+     * @param deadline
+     *   When to stop, by System.nanoTime.
+     * @param seed
+     *   The seed for the client's choices.
+     */
+    Client(HttpClient http, String base, long deadline, long seed) {
+      this.http = http;
+      this.base = base;
+      this.deadline = deadline;
+      this.random = new Random(seed);
+    } // Client(HttpClient, String, long, long)
+
+    @Override
+    public void run() {
+      try {
+        String session = field(this.send("POST", "/sessions"), "session");
+        String query = "?session=" + session;
+        while (System.nanoTime() < this.deadline) {
+          List<String> categories = images(this.send("GET", "/images" + query));
+          if (categories.isEmpty()) {
+            break;
+          } // if
+          this.send("POST", "/select" + query + "&image="
+              + pick(categories, this.random));
+          List<String> items = images(this.send("GET", "/images" + query));
+          if (!items.isEmpty()) {
+            this.send("POST", "/select" + query + "&image="
+                + pick(items, this.random));
+          } // if
+          this.send("POST", "/reset" + query);
+        } // while
+      } catch (Exception e) {
+        e.printStackTrace();
+        this.errors++;
+      } // try/catch
+    } // run()
+
+    /**
+     * Send a request and time it.
+     *
+     * @param method
+     *   The HTTP method.
+     * @param path
+     *   The path and query.
+     *
+     * @return the body of the response.
+     *
+     * @throws Exception
+     *   If the request cannot be sent.
+     */
+    String send(String method, String path) throws Exception {
+      HttpRequest request = HttpRequest.newBuilder(URI.create(this.base + path))
+          .method(method, HttpRequest.BodyPublishers.noBody()).build();
+      long start = System.nanoTime();
+      HttpResponse<String> response =
+          this.http.send(request, HttpResponse.BodyHandlers.ofString());
+      long elapsed = System.nanoTime() - start;
+      if (this.count == this.latencies.length) {
+        this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+      } // if
+      this.latencies[this.count++] = elapsed;
+      if (response.statusCode() != 200) {
+        this.errors++;
+      } // if
+      return response.body();
+    } // send(String, String)
+  } // class Client
+
+  /**
+   * Pick a random element of a list.
+   *
+   * @param list
+   *   The list, which is not empty.
+   * @param random
+   *   The source of randomness.
+   *
+   * @return the element, encoded for a query.
+   */
+  static String pick(List<String> list, Random random) {
+    return URLEncoder.encode(list.get(random.nextInt(list.size())),
+        StandardCharsets.UTF_8);
+  } // pick(List, Random)
+
+  /**
+   * Get a string field of a JSON object.
+   *
+   * @param json
+   *   The object.
+   * @param name
+   *   The name of the field.
+   *
+   * @return its value.
+   */
+  static String field(String json, String name) {
+    int start = json.indexOf("\"" + name + "\":\"") + name.length() + 4;
+    return json.substring(start, json.indexOf('"', start));
+  } // field(String, String)
+
+  /**
+   * Get the images listed in a response from /images. Image locations
+   * in the synthetic files have no quotes or escapes.
+   *
+   * @param json
+   *   The response.
+   *
+   * @return the images.
+   */
+  static List<String> images(String json) {
+    List<String> images = new ArrayList<>();
+    int start = json.indexOf("\"images\":[") + 10;
+    int end = json.lastIndexOf(']');
+    for (int i = start; i < end; ) {
+      int close = json.indexOf('"', i + 1);
+      images.add(json.substring(i + 1, close));
+      i = close + 2;
+    } // for
+    return images;
+  } // images(String)
+
+  /**
+   * Run the load test.
+   *
+   * @param args
+   *   The address of the server, if it is already running.
+   *
+   * @throws Exception
+   *   If the test cannot be run.
+   */
+  public static void main(String[] args) throws Exception {
+    int clients = Integer.getInteger("load.clients", 32);
+    int seconds = Integer.getInteger("load.seconds", 5);
+    AACServer server = null;
+    String base;
+    if (args.length > 0) {
+      base = args[0];
+    } else {
+      Path file = Files.createTempFile("ServerLoadTest", ".txt");
+      file.toFile().deleteOnExit();
+      MappingsGenerator.writeOfSize(file, Integer.getInteger("load.size", 10000));
+      if (System.getProperty(AACServer.NODELAY) == null) {
+        // As AACServer.main does, so that responses are not delayed.
+        System.setProperty(AACServer.NODELAY, "true");
+      } // if
+      server = new AACServer(new AACMappings(file.toString()), 0);
+      base = "http://localhost:" + server.getPort();
+    } // if/else
+
+    HttpClient http = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1).build();
+    // Warm up the server and the client before measuring.
+    Client warmup = new Client(http, base, System.nanoTime() + 1000000000L, 0);
+    warmup.run();
+
+    long start = System.nanoTime();
+    long deadline = start + seconds * 1000000000L;
+    Client[] workers = new Client[clients];
+    Thread[] threads = new Thread[clients];
+    for (int i = 0; i < clients; i++) {
+      workers[i] = new Client(http, base, deadline, i + 1);
+      threads[i] = new Thread(workers[i]);
+      threads[i].start();
+    } // for
+    for (Thread thread : threads) {
+      thread.join();
+    } // for
+    double elapsed = (System.nanoTime() - start) / 1e9;
+
+    int total = 0;
+    int errors = 0;
+    for (Client worker : workers) {
+      total += worker.count;
+      errors += worker.errors;
+    } // for
+    long[] all = new long[total];
+    int filled = 0;
+    for (Client worker : workers) {
+      System.arraycopy(worker.latencies, 0, all, filled, worker.count);
+      filled += worker.count;
+    } // for
+    Arrays.sort(all);
+    System.out.printf("%d clients, %.1f s: %d requests, %d errors%n",
+        clients, elapsed, total, errors);
+    if (total > 0) {
+      System.out.printf("%.0f requests/s, p50 %.3f ms, p99 %.3f ms%n",
+          total / elapsed, all[total / 2] / 1e6,
+          all[Math.min(total - 1, (int) (total * 0.99))] / 1e6);
+    } // if
+    if (server != null) {
+      server.close();
+    } // if
+  } // main(String[])
+} // class ServerLoadTest
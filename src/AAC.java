@@ -5,6 +5,7 @@ import javax.swing.JPanel;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JFileChooser;
+import javax.swing.SwingUtilities;
 
 import java.awt.BorderLayout;
 import java.awt.Container;
@@ -16,6 +17,8 @@ import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Locale;
 import java.util.Scanner;
 
@@ -38,9 +41,12 @@ public class AAC implements ActionListener {
 	private int endIndex;
 	private static final int NUM_ACROSS = 3;
 	private static final int NUM_DOWN = 3;
-	private String[] images;
+	private static final String PREDICT = "predict:";
+	private List<SymbolPredictor.Prediction> predictions = List.of();
+	private List<String> images;
 	private AACPage page;
 	private Scanner input;
+	private MappingsWatcher watcher;
 
 	/**
 	 * Creates the AAC display for the file provided
@@ -50,10 +56,11 @@ public class AAC implements ActionListener {
 	 */
 	public AAC(String filename) {
 		// this.page = new AACCategory("test");
-		this.page = new AACMappings(filename);
-		this.images = this.page.getImageLocs();
+		AACMappings mappings = AACMappings.load(filename);
+		this.page = mappings;
+		this.images = this.page.getImageLocView();
 		this.startIndex = 0;
-		this.endIndex = Math.min(NUM_ACROSS * NUM_DOWN, this.images.length);
+		this.endIndex = Math.min(NUM_ACROSS * NUM_DOWN, this.images.size());
 		frame = new JFrame();
 		frame.setPreferredSize(new Dimension(500, 500));
 		loadImages(NUM_ACROSS, NUM_DOWN);
@@ -61,6 +68,30 @@ public class AAC implements ActionListener {
 		frame.pack();
 		frame.setVisible(true);
 		input = new Scanner(System.in);
+		// Check the images while the first screen is in use, and report
+		// any that cannot be shown.
+		mappings.validateImages().thenAccept((report) -> {
+			if (!report.isClean()) {
+				System.err.println(report);
+			}
+		});
+		try {
+			this.watcher = new MappingsWatcher(mappings, filename, SwingUtilities::invokeLater,
+					this::reloaded);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Redraws the screen after the mapping file has been changed and
+	 * reloaded
+	 */
+	private void reloaded() {
+		this.images = this.page.getImageLocView();
+		this.startIndex = 0;
+		this.endIndex = Math.min(NUM_ACROSS * NUM_DOWN, this.images.size());
+		loadImages(NUM_ACROSS, NUM_DOWN);
 	}
 
 	/**
@@ -105,6 +136,27 @@ public class AAC implements ActionListener {
 		c.gridx = 0;
 		c.gridy = 1;
 		topPanel.add(panel1, c);
+
+		// add the items most likely to be selected next
+		if (this.page instanceof AACMappings) {
+			this.predictions = ((AACMappings) this.page).predict(NUM_ACROSS);
+			if (!this.predictions.isEmpty()) {
+				JPanel predictionPanel = new JPanel();
+				predictionPanel.setLayout(new GridLayout(1, NUM_ACROSS));
+				for (int i = 0; i < this.predictions.size(); i++) {
+					SymbolPredictor.Prediction prediction = this.predictions.get(i);
+					JButton button = new JButton(new ImageIcon(prediction.getImageLoc()));
+					// The command names the prediction by its place, since image
+					// locations may contain any character.
+					button.setActionCommand(PREDICT + i);
+					button.addActionListener(this);
+					predictionPanel.add(button);
+				}
+				c.gridx = 0;
+				c.gridy = 2;
+				topPanel.add(predictionPanel, c);
+			}
+		}
 		pane.add(topPanel, BorderLayout.PAGE_START);
 
 		// if on page 2+, add back button
@@ -121,10 +173,10 @@ public class AAC implements ActionListener {
 		int currImage = startIndex;
 		for (int y = 0; y < length; y++) {
 			for (int x = 0; x < width; x++) {
-				if (currImage < this.images.length) {
-					ImageIcon img = new ImageIcon(images[currImage]);
+				if (currImage < this.images.size()) {
+					ImageIcon img = new ImageIcon(images.get(currImage));
 					JButton button = new JButton(img);
-					button.setActionCommand(images[currImage]);
+					button.setActionCommand(images.get(currImage));
 					button.addActionListener(this);
 					panel.add(button);
 					currImage++;
@@ -135,7 +187,7 @@ public class AAC implements ActionListener {
 		pane.add(panel, BorderLayout.CENTER);
 
 		// if have later pages, add next button
-		if (endIndex < images.length) {
+		if (endIndex < images.size()) {
 			JButton nextArrow = new JButton(new ImageIcon("img/next.png"));
 			nextArrow.setActionCommand("next");
 			nextArrow.addActionListener(this);
@@ -182,12 +234,12 @@ public class AAC implements ActionListener {
 			this.endIndex -= NUM_ACROSS * NUM_DOWN;
 		} else if (actionCommand.equals("next")) {
 			this.startIndex += NUM_ACROSS * NUM_DOWN;
-			this.endIndex = Math.min(endIndex + NUM_ACROSS * NUM_DOWN, this.images.length);
+			this.endIndex = Math.min(endIndex + NUM_ACROSS * NUM_DOWN, this.images.size());
 		} else if (actionCommand.equals("save") && this.page instanceof AACMappings) {
-			((AACMappings) this.page).writeToFile("AACMappingsNew.txt");
-			this.images = this.page.getImageLocs();
+			((AACMappings) this.page).save();
+			this.images = this.page.getImageLocView();
 			this.startIndex = 0;
-			this.endIndex = Math.min(NUM_ACROSS * NUM_DOWN, this.images.length);
+			this.endIndex = Math.min(NUM_ACROSS * NUM_DOWN, this.images.size());
 		} else if (actionCommand.equals("add")) {
 			JFileChooser chooser = new JFileChooser();
 			int returnVal = chooser.showOpenDialog(frame);
@@ -197,23 +249,44 @@ public class AAC implements ActionListener {
 				String result = (String) JOptionPane.showInputDialog(frame, "What is the text?", "AAC Add",
 						JOptionPane.PLAIN_MESSAGE, null, null, "");
 				if (result != null && result.length() > 0) {
-					this.page.addItem(imageLoc, result);
+					try {
+						this.page.addItem(imageLoc, result);
+					} catch (IllegalArgumentException ex) {
+						JOptionPane.showMessageDialog(frame, ex.getMessage(), "AAC Add",
+								JOptionPane.ERROR_MESSAGE);
+					}
 				}
 			}
-			this.images = this.page.getImageLocs();
+			this.images = this.page.getImageLocView();
+			this.startIndex = 0;
+			this.endIndex = Math.min(NUM_ACROSS * NUM_DOWN, this.images.size());
+		} else if (actionCommand.startsWith(PREDICT) && this.page instanceof AACMappings) {
+			SymbolPredictor.Prediction prediction =
+					this.predictions.get(Integer.parseInt(actionCommand.substring(PREDICT.length())));
+			String toSpeak = ((AACMappings) this.page).selectPrediction(prediction.getCategory(),
+					prediction.getImageLoc());
+			this.images = this.page.getImageLocView();
 			this.startIndex = 0;
-			this.endIndex = Math.min(NUM_ACROSS * NUM_DOWN, this.images.length);
+			this.endIndex = Math.min(NUM_ACROSS * NUM_DOWN, this.images.size());
+			if (toSpeak != null) {
+				try {
+					synthesizer.speakPlainText(toSpeak, null);
+					synthesizer.waitEngineState(Synthesizer.QUEUE_EMPTY);
+				} catch (Exception e1) {
+					e1.printStackTrace();
+				}
+			}
 		} else if (actionCommand.equals("") && this.page instanceof AACMappings) {
 			((AACMappings) this.page).reset();
-			this.images = this.page.getImageLocs();
+			this.images = this.page.getImageLocView();
 			this.startIndex = 0;
-			this.endIndex = Math.min(NUM_ACROSS * NUM_DOWN, this.images.length);
+			this.endIndex = Math.min(NUM_ACROSS * NUM_DOWN, this.images.size());
 		} else {
 			if (this.page.getCategory().equals("")) {
 				this.page.select(actionCommand);
-				this.images = this.page.getImageLocs();
+				this.images = this.page.getImageLocView();
 				this.startIndex = 0;
-				this.endIndex = Math.min(NUM_ACROSS * NUM_DOWN, this.images.length);
+				this.endIndex = Math.min(NUM_ACROSS * NUM_DOWN, this.images.size());
 			} else {
 				try {
 					String toSpeak = this.page.select(actionCommand);
@@ -1,12 +1,26 @@
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
-import edu.grinnell.csc207.util.AssociativeArray;
-import edu.grinnell.csc207.util.KeyNotFoundException;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+import edu.grinnell.csc207.util.PersistentAssociativeArray;
+import edu.grinnell.csc207.util.PrefixTable;
+import edu.grinnell.csc207.util.StringAssociativeArray;
 import edu.grinnell.csc207.util.NullKeyException;
 
 /**
  * Represents the mappings for a single category of items that should
  * be displayed
  * 
+ * Copies of a category share its items. Items added to a copy go into
+ * a persistent array of additions, which the copies also share, until
+ * there are as many additions as other items and they are moved in
+ * with the rest. Copying a category and then adding an item to the
+ * copy, as AACMappings does for every item it adds, therefore takes
+ * time in proportion to the log of the number of items, on average,
+ * rather than to the number of items.
+ * 
  * @author Catie Baker & AlexCyphers
  *
  */
@@ -14,46 +28,230 @@ public class AACCategory implements AACPage {
 
 	/*
 	 * An associative array used to map the image locations to the
-	 * text that the image should speak.
+	 * text that the image should speak. It is copied before it is
+	 * changed if it is shared with a copy of the category.
+	 */
+	private StringAssociativeArray<String> locs;
+
+	/*
+	 * The items added since locs was last shared, which are not in
+	 * locs, in the order they were added.
+	 */
+	private PersistentAssociativeArray<String, String> added;
+
+	/*
+	 * Whether locs may be shared with a copy of the category.
+	 */
+	private boolean shared;
+
+	/*
+	 * The smallest number of additions that are moved into locs.
 	 */
-	private AssociativeArray<String, String> locs;
+	static final int MIN_MERGE = 32;
 
 	/*
 	 * The name of the category.
 	 */
 	private String name;
 
+	/*
+	 * The table of image directories, so that each image location stores
+	 * only its directory's id and the rest of its path. The categories
+	 * read from one file share a table, which holds only the directories
+	 * of that file.
+	 */
+	private PrefixTable directories;
+
 	/**
-	 * Creates a new empty category with the given name
+	 * Creates a new empty category with the given name and its own
+	 * table of image directories
 	 * @param name the name of the category
 	 */
 	public AACCategory(String name) {
-		this.locs = new AssociativeArray<>();
-		this.name = name;
+		this(name, new PrefixTable());
 	} // AACCategory(String)
+
+	/**
+	 * Creates a new empty category with the given name and room for
+	 * the given number of items, with its own table of image directories
+	 * @param name the name of the category
+	 * @param capacity the number of items expected in the category
+	 */
+	public AACCategory(String name, int capacity) {
+		this(name, capacity, new PrefixTable());
+	} // AACCategory(String, int)
+
+	/**
+	 * Creates a new empty category with the given name that shares a
+	 * table of image directories with other categories
+	 * @param name the name of the category
+	 * @param directories the table of image directories
+	 */
+	public AACCategory(String name, PrefixTable directories) {
+		this.locs = new StringAssociativeArray<>(directories);
+		this.added = new PersistentAssociativeArray<>();
+		this.directories = directories;
+		this.name = name;
+	} // AACCategory(String, PrefixTable)
+
+	/**
+	 * Creates a new empty category with the given name and room for
+	 * the given number of items that shares a table of image directories
+	 * with other categories
+	 * @param name the name of the category
+	 * @param capacity the number of items expected in the category
+	 * @param directories the table of image directories
+	 */
+	public AACCategory(String name, int capacity, PrefixTable directories) {
+		this.locs = new StringAssociativeArray<>(capacity, directories);
+		this.added = new PersistentAssociativeArray<>();
+		this.directories = directories;
+		this.name = name;
+	} // AACCategory(String, int, PrefixTable)
+
+	/**
+	 * Creates a copy of this category, which shares its items and its
+	 * table of image directories, in constant time. Later changes to
+	 * either category do not affect the other.
+	 * @return the copy
+	 */
+	public AACCategory clone() {
+		AACCategory copy = new AACCategory(this.name, 0, this.directories);
+		copy.locs = this.locs;
+		copy.added = this.added;
+		copy.shared = true;
+		this.shared = true;
+		return copy;
+	} // clone()
 	
 	/**
-	 * Adds the image location, text pairing to the category
+	 * Adds the image location, text pairing to the category. Giving an
+	 * image that the category already had before it was last copied a
+	 * new text copies the items.
 	 * @param imageLoc the location of the image
 	 * @param text the text that image should speak
 	 */
 	public void addItem(String imageLoc, String text) {
 		try {
-			this.locs.set(imageLoc, text);
+			if ((!this.shared && this.added.size() == 0) || this.locs.hasKey(imageLoc)) {
+				this.ownLocs();
+				this.locs.set(imageLoc, text);
+			} else {
+				this.added = this.added.with(imageLoc, text);
+				if (this.added.size() >= Math.max(MIN_MERGE, this.locs.size())) {
+					this.merge();
+				} // if
+			} // if/else
 		} catch (NullKeyException e) {
 			// Should not have null key
 		}
 	} // addItem(String, String)
 
+	/**
+	 * Adds many image location, text pairings to the category at once,
+	 * as if by calling addItem on each pair in order
+	 * @param imageLocs the locations of the images
+	 * @param texts the text each image should speak, in the same order
+	 */
+	public void addItems(String[] imageLocs, String[] texts) {
+		this.merge();
+		try {
+			this.locs.setAll(imageLocs, texts, false);
+		} catch (NullKeyException e) {
+			// Should not have null key
+		} // try/catch
+	} // addItems(String[], String[])
+
+	/**
+	 * Makes sure that locs is not shared with a copy of the category, so
+	 * that it may be changed
+	 */
+	private void ownLocs() {
+		if (this.shared) {
+			this.locs = this.locs.clone();
+			this.shared = false;
+		} // if
+	} // ownLocs()
+
+	/**
+	 * Moves the additions into locs, in order
+	 */
+	private void merge() {
+		this.ownLocs();
+		if (this.added.size() == 0) {
+			return;
+		} // if
+		String[] imageLocs = new String[this.added.size()];
+		String[] texts = new String[imageLocs.length];
+		int[] next = new int[] {0};
+		this.added.forEach((imageLoc, text) -> {
+			imageLocs[next[0]] = imageLoc;
+			texts[next[0]++] = text;
+		});
+		try {
+			this.locs.setAll(imageLocs, texts, true);
+		} catch (NullKeyException e) {
+			// Should not have null key
+		} // try/catch
+		this.added = new PersistentAssociativeArray<>();
+	} // merge()
+
 	/**
 	 * Returns an array of all the images in the category
 	 * @return the array of image locations; if there are no images,
 	 * it should return an empty array
 	 */
 	public String[] getImageLocs() {
-		return this.locs.keyStrings();
+		String[] locs = this.locs.keyStrings();
+		if (this.added.size() == 0) {
+			return locs;
+		} // if
+		String[] all = new String[locs.length + this.added.size()];
+		System.arraycopy(locs, 0, all, 0, locs.length);
+		int[] next = new int[] {locs.length};
+		this.added.forEach((imageLoc, text) -> all[next[0]++] = imageLoc);
+		return all;
 	} // getImageLocs()
 
+	/**
+	 * Returns a read-only view of the images in the category. The
+	 * locations that getImageLocs or get on the view rebuild from their
+	 * directories are held softly until the category next changes;
+	 * iterating over the view rebuilds each location without keeping it.
+	 * @return the list of image locations
+	 */
+	public List<String> getImageLocView() {
+		if (this.added.size() == 0) {
+			return this.locs.keys();
+		} // if
+		return new JoinedView(this.locs.keys(), this.added.keys());
+	} // getImageLocView()
+
+	/**
+	 * Builds an index of the image locations in the category by prefix,
+	 * which makes forEachImageLocWithPrefix much faster on large
+	 * categories
+	 */
+	public void enablePrefixIndex() {
+		this.merge();
+		this.locs.enablePrefixIndex();
+	} // enablePrefixIndex()
+
+	/**
+	 * Calls action on each image location in the category that starts
+	 * with the given prefix, such as a directory
+	 * @param prefix the prefix of the image locations
+	 * @param action what to do with each image location
+	 */
+	public void forEachImageLocWithPrefix(String prefix, Consumer<String> action) {
+		this.locs.forEachWithPrefix(prefix, action);
+		this.added.forEach((imageLoc, text) -> {
+			if (imageLoc.startsWith(prefix)) {
+				action.accept(imageLoc);
+			} // if
+		});
+	} // forEachImageLocWithPrefix(String, Consumer)
+
 	/**
 	 * Returns the name of the category
 	 * @return the name of the category
@@ -70,19 +268,84 @@ public class AACCategory implements AACPage {
 	 * 		   category
 	 */
 	public String select(String imageLoc) {
-		try {
-			return this.locs.get(imageLoc);
-		} catch (KeyNotFoundException e) {
+		String text = this.trySelect(imageLoc);
+		if (text == null) {
 			throw new NoSuchElementException("No Element");
-		} // try/catch
+		} // if
+		return text;
 	} // select(String)
 
+	/**
+	 * Returns the text associated with the given image in this category,
+	 * or null if the image is not in the category
+	 * @param imageLoc the location of the image
+	 * @return the text associated with the image, or null
+	 */
+	public String trySelect(String imageLoc) {
+		String text = this.added.getOrDefault(imageLoc, null);
+		return (text != null) ? text : this.locs.getOrDefault(imageLoc, null);
+	} // trySelect(String)
+
 	/**
 	 * Determines if the provided images is stored in the category
 	 * @param imageLoc the location of the category
 	 * @return true if it is in the category, false otherwise
 	 */
 	public boolean hasImage(String imageLoc) {
-		return this.locs.hasKey(imageLoc);
+		return this.added.hasKey(imageLoc) || this.locs.hasKey(imageLoc);
 	} // hasImage(String)
+
+	/**
+	 * A read-only view of the image locations of a category that has
+	 * additions: those in locs, then the additions.
+	 */
+	private static class JoinedView extends AbstractList<String> implements RandomAccess {
+
+		/*
+		 * The locations in locs.
+		 */
+		private final List<String> first;
+
+		/*
+		 * The locations of the additions.
+		 */
+		private final List<String> rest;
+
+		/**
+		 * Creates a view of two lists, one after the other
+		 * @param first the first list
+		 * @param rest the list that follows it
+		 */
+		JoinedView(List<String> first, List<String> rest) {
+			this.first = first;
+			this.rest = rest;
+		} // JoinedView(List, List)
+
+		public String get(int i) {
+			int split = this.first.size();
+			return (i < split) ? this.first.get(i) : this.rest.get(i - split);
+		} // get(int)
+
+		public int size() {
+			return this.first.size() + this.rest.size();
+		} // size()
+
+		public boolean contains(Object o) {
+			return this.rest.contains(o) || this.first.contains(o);
+		} // contains(Object)
+
+		public Iterator<String> iterator() {
+			Iterator<String> firsts = this.first.iterator();
+			Iterator<String> rests = this.rest.iterator();
+			return new Iterator<String>() {
+				public boolean hasNext() {
+					return firsts.hasNext() || rests.hasNext();
+				} // hasNext()
+
+				public String next() {
+					return firsts.hasNext() ? firsts.next() : rests.next();
+				} // next()
+			}; // new Iterator
+		} // iterator()
+	} // class JoinedView
 }
@@ -1,13 +1,29 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
 
 import edu.grinnell.csc207.util.AssociativeArray;
-import edu.grinnell.csc207.util.KeyNotFoundException;
+import edu.grinnell.csc207.util.ConcurrentAssociativeArray;
 import edu.grinnell.csc207.util.NullKeyException;
+import edu.grinnell.csc207.util.PersistentAssociativeArray;
+import edu.grinnell.csc207.util.PrefixTable;
 
 import java.io.PrintWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.NoSuchFileException;
 
 
 
@@ -19,6 +35,10 @@ import java.io.FileNotFoundException;
  * and updating the set of images that would be shown and handling
  * an interactions.
  * 
+ * A set of mappings keeps track of one user's current category. To
+ * serve several users at once, give each an AACSession over the same
+ * mappings; sessions share the mappings' vocabulary without copying it.
+ * 
  * @author Catie Baker & Alex Cyphers
  *
  */
@@ -26,19 +46,88 @@ public class AACMappings implements AACPage {
 
 	/*
 	 * The associative array that is used for mapping filenames
-	 * or names to their categories.
+	 * or names to their categories. Readers may use it while
+	 * another thread adds items, so a category is never changed
+	 * once it is in the array; addItem replaces it with a changed
+	 * copy instead.
 	 */
-	private AssociativeArray<String, AACCategory> categories;
+	private ConcurrentAssociativeArray<String, AACCategory> categories;
 
 	/*
 	 * The current category.
 	 */
 	private AACCategory currCategory;
 
+	/*
+	 * The image location of the current category, or null when
+	 * the current category is the default category.
+	 */
+	private String currLoc;
+
 	/*
 	 * The default category.
 	 */
 	private AACCategory defaultCategory;
+
+	/*
+	 * The table of image directories shared by the categories read from
+	 * the mapping file and those added to it.
+	 */
+	private PrefixTable directories;
+
+	/*
+	 * Whether the categories keep an index of their image locations
+	 * by prefix.
+	 */
+	private boolean prefixIndexed;
+
+	/*
+	 * The journal of added items, or null if the mappings were not
+	 * loaded with load.
+	 */
+	private EditJournal journal;
+
+	/*
+	 * The name of the mapping file the mappings were loaded from, or
+	 * null if they were not loaded with load.
+	 */
+	private String filename;
+
+	/*
+	 * The index of the mapping file, when the categories are read from
+	 * it as they are needed, or null if every category has been read.
+	 */
+	private CategoryIndex index;
+
+	/*
+	 * The index of the text of every symbol, or null if it has not been
+	 * needed yet.
+	 */
+	private TextIndex textIndex;
+
+	/*
+	 * What has been selected so far, for predicting what comes next.
+	 */
+	private SymbolPredictor predictor;
+
+	/*
+	 * The vocabulary over the categories as they were when it was last
+	 * asked for, or null if it has not been asked for.
+	 */
+	private volatile Vocabulary vocabulary;
+
+	/*
+	 * The number of edits in the journal at which save compacts it,
+	 * if the journal also has at least as many edits as there are
+	 * categories.
+	 */
+	static final int COMPACT_THRESHOLD = 1024;
+
+	/*
+	 * The largest number of edits between a word of a fuzzy search and
+	 * a word that it matches.
+	 */
+	static final int FUZZY_DISTANCE = 2;
 	
 	/**
 	 * Creates a set of mappings for the AAC based on the provided
@@ -58,43 +147,367 @@ public class AACMappings implements AACPage {
 	 * represents the file with two categories, food and clothing
 	 * and food has french fries and watermelon and clothing has a 
 	 * collared shirt
+	 * 
+	 * Large files are split at category lines and their categories
+	 * are built in parallel.
 	 * @param filename the name of the file that stores the mapping information
 	 */
 	public AACMappings(String filename) {
-		this.categories = new AssociativeArray<>();
-		this.defaultCategory = new AACCategory("");
+		this(filename, true);
+	} // AACMappings(String)
+
+	/**
+	 * Creates a set of mappings for the AAC based on the provided
+	 * file, as described above, either reading the file from start
+	 * to end or building its categories in parallel on the common
+	 * fork-join pool. Both give the same categories in the same order.
+	 * @param filename the name of the file that stores the mapping information
+	 * @param parallel whether to build the categories in parallel
+	 */
+	public AACMappings(String filename, boolean parallel) {
+		this.directories = new PrefixTable();
+		this.defaultCategory = new AACCategory("", this.directories);
 		this.currCategory = this.defaultCategory;
+		this.predictor = new SymbolPredictor();
 		try {
-			Scanner scanner = new Scanner(new File(filename));
-			AACCategory tempLoc = null;
-
-			while (scanner.hasNextLine()) {
-				String line = scanner.nextLine();
+			ByteBuffer buffer = MappingsReader.load(filename);
+			if (parallel) {
+				this.categories = new ConcurrentAssociativeArray<>(
+						CategoryBuilder.build(buffer, this.directories));
+			} else {
+				CategoryBuilder builder = new CategoryBuilder(this.directories);
+				new MappingsReader().parse(buffer, 0, buffer.limit(), builder);
+				this.categories = new ConcurrentAssociativeArray<>(builder.finish());
+			} // if/else
+		} catch (NoSuchFileException e) {
+			throw new NullPointerException("File not found: " + filename);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read " + filename, e);
+		} // try/catch
+	} // AACMappings(String, boolean)
 
-				if (line.isEmpty()) {
-					continue;
-				} // if
+	/**
+	 * Loads the mappings in a file, as described above, from the file's
+	 * binary snapshot if it has an up-to-date one. Otherwise, the text
+	 * of the file is read and a new snapshot is written next to it for
+	 * the next time. Items added since the file was last written are
+	 * then replayed from its journal, and later additions are recorded
+	 * there; see save.
+	 * @param filename the name of the file that stores the mapping information
+	 * @return the mappings
+	 * @throws NullPointerException if the file does not exist
+	 * @throws UncheckedIOException if the file cannot be read
+	 */
+	public static AACMappings load(String filename) {
+		AssociativeArray<String, AACCategory> categories;
+		PrefixTable directories = new PrefixTable();
+		try {
+			categories = MappingsSnapshot.read(filename, directories);
+		} catch (IOException e) {
+			categories = null;
+		} // try/catch
+		if (categories == null) {
+			try {
+				// The time is taken first so that a change made while the
+				// file is read is never recorded as the time of what was read.
+				long modified = Files.getLastModifiedTime(Paths.get(filename)).toMillis();
+				ByteBuffer buffer = MappingsReader.load(filename);
+				categories = CategoryBuilder.build(buffer, directories);
+				try {
+					MappingsSnapshot.write(filename, modified, buffer, categories);
+				} catch (IOException e) {
+					// The snapshot only saves time, so we can do without it.
+				} // try/catch
+			} catch (NoSuchFileException e) {
+				throw new NullPointerException("File not found: " + filename);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not read " + filename, e);
+			} // try/catch
+		} // if
+		AACMappings mappings = new AACMappings(
+				new ConcurrentAssociativeArray<>(categories).snapshot(), directories);
+		mappings.openJournal(filename);
+		return mappings;
+	} // load(String)
 
-				if (line.startsWith(">")) {
-					String image = line.substring(1, line.indexOf(" "));
-					String text = line.substring(line.indexOf(" ") + 1);
-					tempLoc.addItem(image, text);
-				} else {
-					String image = line.substring(0, line.indexOf(" "));
-					String text = line.substring(line.indexOf(" ") + 1);
-					tempLoc = new AACCategory(text);
-					try {
-						this.categories.set(image, tempLoc);
-					} catch (NullKeyException e) {
-						// Should not recieve a null key.
-					} // try/catch
-				} // if/else
-			} // while-loop
-			scanner.close();
-		} catch (FileNotFoundException e) {
+	/**
+	 * Loads the mappings in a file, as described above, reading only
+	 * the lines of its categories. The items of a category are read
+	 * the first time it is selected (or when something needs all of
+	 * the items, such as writeToFile), so time and memory grow with the
+	 * categories that are used rather than with the whole vocabulary.
+	 * As with load, the file's journal is replayed and kept up to date.
+	 * @param filename the name of the file that stores the mapping information
+	 * @return the mappings
+	 * @throws NullPointerException if the file does not exist
+	 * @throws UncheckedIOException if the file cannot be read
+	 */
+	public static AACMappings loadLazily(String filename) {
+		CategoryIndex index;
+		PrefixTable directories = new PrefixTable();
+		try {
+			index = new CategoryIndex(MappingsReader.load(filename), directories);
+		} catch (NoSuchFileException e) {
 			throw new NullPointerException("File not found: " + filename);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read " + filename, e);
 		} // try/catch
-	} // AACMappings(String)
+		AACMappings mappings = new AACMappings(
+				new ConcurrentAssociativeArray<>(index.stubs()).snapshot(), directories);
+		mappings.index = index;
+		mappings.openJournal(filename);
+		return mappings;
+	} // loadLazily(String)
+
+	/**
+	 * Opens the journal of the mapping file, applying the items that
+	 * were added to the mappings after the file was last written
+	 * @param filename the name of the mapping file
+	 * @throws UncheckedIOException if the journal cannot be read
+	 */
+	private void openJournal(String filename) {
+		this.filename = filename;
+		try {
+			this.journal = EditJournal.open(filename, new Replay());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read the journal of " + filename, e);
+		} // try/catch
+	} // openJournal(String)
+
+	/**
+	 * Applies the entries of a journal to mappings that no one else can
+	 * see yet. Adding an item to a published category has to copy it,
+	 * but each category is copied only the first time the journal adds
+	 * to it and the copy takes the rest of its items in place, so
+	 * replaying takes time in proportion to the entries rather than to
+	 * the entries times the size of their categories.
+	 */
+	private class Replay implements EditJournal.Handler {
+		/* The copies made by this replay, by the location of their category */
+		private final AssociativeArray<String, AACCategory> copies = new AssociativeArray<>();
+
+		public void category(String imageLoc, String name) {
+			AACMappings.this.putCategory(imageLoc, name);
+		} // category(String, String)
+
+		public void item(String category, String imageLoc, String text) {
+			AACCategory current = AACMappings.this.category(category);
+			if (current == null) {
+				return;
+			} // if
+			AACCategory copy = this.copies.getOrDefault(category, null);
+			if (copy != current) {
+				copy = current.clone();
+				try {
+					this.copies.set(category, copy);
+				} catch (NullKeyException e) {
+					// There should not be a null key.
+				} // try/catch
+			} // if
+			AACMappings.this.putItemInto(category, copy, imageLoc, text);
+		} // item(String, String, String)
+	} // class Replay
+
+	/**
+	 * Creates a set of mappings over the given categories, starting
+	 * at the default category
+	 * @param categories the categories, which are never changed
+	 * @param directories the table of image directories of the categories
+	 */
+	private AACMappings(PersistentAssociativeArray<String, AACCategory> categories,
+			PrefixTable directories) {
+		this.categories = new ConcurrentAssociativeArray<>(categories);
+		this.directories = directories;
+		this.defaultCategory = new AACCategory("", directories);
+		this.currCategory = this.defaultCategory;
+		this.predictor = new SymbolPredictor();
+	} // AACMappings(PersistentAssociativeArray, PrefixTable)
+
+	/**
+	 * Creates a snapshot of the mappings as they are now. Later changes
+	 * to either the mappings or the snapshot do not affect the other,
+	 * and since the categories are shared rather than copied, taking a
+	 * snapshot takes constant time. The snapshot starts at the default
+	 * category.
+	 * @return the snapshot
+	 */
+	public AACMappings snapshot() {
+		AACMappings snapshot = new AACMappings(this.categories.snapshot(),
+				this.directories);
+		snapshot.index = this.index;
+		snapshot.predictor = this.predictor.clone();
+		return snapshot;
+	} // snapshot()
+
+	/**
+	 * Replaces the categories and items with those of a snapshot, for
+	 * instance to undo the changes made since the snapshot was taken.
+	 * If the current category is also in the snapshot, the AAC stays
+	 * in it; otherwise it returns to the default category.
+	 * 
+	 * Restoring does not write anything. Since the journal only records
+	 * additions, mappings that have a journal still replay the items
+	 * added since the snapshot when they are next loaded; call compact
+	 * to make the restored mappings the ones that are saved.
+	 * @param snapshot the mappings to restore
+	 */
+	public void restore(AACMappings snapshot) {
+		this.categories.replace(snapshot.categories.snapshot());
+		this.index = snapshot.index;
+		this.textIndex = null;
+		this.followCurrentCategory();
+	} // restore(AACMappings)
+
+	/**
+	 * Applies the contents of a mapping file that has been changed
+	 * while the mappings are in use, such as by a MappingsWatcher. The new
+	 * categories are compared with the current ones, image location by
+	 * image location, and only categories that changed are replaced;
+	 * the others stay the same objects. Categories whose items had not
+	 * been read yet are replaced by their new contents and counted as
+	 * one change each, since what they had before is not known, so the
+	 * mappings never keep reading a file that has changed. All of the
+	 * changes become visible at once, and if the current category is
+	 * still in the file, the AAC stays in it.
+	 * 
+	 * Items and categories added since the file was last written are
+	 * applied again on top of the changed file, in the order they were
+	 * added, and the journal is moved onto the changed file so that
+	 * they are still there when it is next loaded. As when they were
+	 * first added, a category added again replaces any category with
+	 * the same image.
+	 * @param fresh the categories read from the changed file, which
+	 * become part of the mappings
+	 * @return the number of categories and items that were added,
+	 * removed, or changed, counting a change in the order of either as
+	 * one change
+	 * @throws UncheckedIOException if the journal cannot be moved
+	 */
+	public synchronized int reload(AssociativeArray<String, AACCategory> fresh) {
+		if (this.journal != null) {
+			try {
+				this.journal.rebase(new EditJournal.Handler() {
+					public void category(String imageLoc, String name) {
+						try {
+							fresh.set(imageLoc,
+									new AACCategory(name, AACMappings.this.directories));
+						} catch (NullKeyException e) {
+							// There should not be a null key.
+						} // try/catch
+					} // category(String, String)
+
+					public void item(String category, String imageLoc, String text) {
+						AACCategory added = fresh.getOrDefault(category, null);
+						if (added != null) {
+							added.addItem(imageLoc, text);
+						} // if
+					} // item(String, String, String)
+				});
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not move the journal of "
+						+ this.filename, e);
+			} // try/catch
+		} // if
+		PersistentAssociativeArray<String, AACCategory> current = this.categories.snapshot();
+		PersistentAssociativeArray<String, AACCategory> next = new PersistentAssociativeArray<>();
+		CategoryIndex index = this.index;
+		int changes = 0;
+		for (String loc : fresh.keys()) {
+			AACCategory updated = fresh.getOrDefault(loc, null);
+			AACCategory old = current.getOrDefault(loc, null);
+			if (old == null) {
+				changes += 1 + updated.getImageLocView().size();
+			} else if (index != null && index.isStub(loc, old)) {
+				changes++;
+			} else {
+				int differences = differences(old, updated);
+				if (differences == 0) {
+					updated = old;
+				} // if
+				changes += differences;
+			} // if/else
+			if (updated != old && this.prefixIndexed) {
+				updated.enablePrefixIndex();
+			} // if
+			try {
+				next = next.with(loc, updated);
+			} catch (NullKeyException e) {
+				// There should not be a null key.
+			} // try/catch
+		} // for-loop
+		for (String loc : current.keys()) {
+			if (!fresh.hasKey(loc)) {
+				AACCategory old = current.getOrDefault(loc, null);
+				changes += 1 + ((index != null && index.isStub(loc, old))
+						? 0 : old.getImageLocView().size());
+			} // if
+		} // for-loop
+		if (changes == 0 && !current.keys().equals(fresh.keys())) {
+			changes++;
+		} // if
+		if (changes == 0) {
+			return 0;
+		} // if
+
+		this.categories.replace(next);
+		this.index = null;
+		this.textIndex = null;
+		this.followCurrentCategory();
+		return changes;
+	} // reload(AssociativeArray)
+
+	/**
+	 * Counts the differences between two versions of a category
+	 * @param old the old version
+	 * @param fresh the new version
+	 * @return the number of items added, removed, or given new text,
+	 * plus one if the name changed, or one if only the order of the
+	 * items changed
+	 */
+	static int differences(AACCategory old, AACCategory fresh) {
+		int differences = old.getCategory().equals(fresh.getCategory()) ? 0 : 1;
+		List<String> freshLocs = fresh.getImageLocView();
+		for (String loc : freshLocs) {
+			String text = old.trySelect(loc);
+			if (text == null || !text.equals(fresh.trySelect(loc))) {
+				differences++;
+			} // if
+		} // for-loop
+		List<String> oldLocs = old.getImageLocView();
+		for (String loc : oldLocs) {
+			if (fresh.trySelect(loc) == null) {
+				differences++;
+			} // if
+		} // for-loop
+		if (differences == 0) {
+			// The same locations, so only their order can differ. The
+			// lists are walked rather than compared with equals, which
+			// would look each location up by index.
+			Iterator<String> oldOrder = oldLocs.iterator();
+			for (String loc : freshLocs) {
+				if (!loc.equals(oldOrder.next())) {
+					return 1;
+				} // if
+			} // for-loop
+		} // if
+		return differences;
+	} // differences(AACCategory, AACCategory)
+
+	/**
+	 * Points the current category at the category with the same image
+	 * in the current mappings, or returns to the default category if
+	 * there is none
+	 */
+	private void followCurrentCategory() {
+		if (this.currLoc != null) {
+			AACCategory category = this.categories.getOrDefault(this.currLoc, null);
+			if (category == null) {
+				this.reset();
+			} else {
+				this.currCategory = category;
+			} // if/else
+		} // if
+	} // followCurrentCategory()
 	
 	/**
 	 * Given the image location selected, it determines the action to be
@@ -111,21 +524,74 @@ public class AACMappings implements AACPage {
 	 * category
 	 */
 	public String select(String imageLoc) {
+		String result = this.trySelect(imageLoc);
+		if (result == null) {
+			throw new NoSuchElementException("Image location not found: " + imageLoc);
+		} // if
+		return result;
+	} // select(String)
+
+	/**
+	 * Behaves like select, but returns null instead of throwing an
+	 * exception when the image provided is not in the current category.
+	 * Neither level of the lookup creates an exception on a miss.
+	 * @param imageLoc the location where the image is stored
+	 * @return the text to be spoken, the empty string if a category was
+	 * selected, or null if the image is not in the current category
+	 */
+	public String trySelect(String imageLoc) {
 		if (this.currCategory == this.defaultCategory) {
-			try {
-				this.currCategory = this.categories.get(imageLoc);
-				return "";
-			} catch (KeyNotFoundException e) {
-				throw new NoSuchElementException("Image location not found: " + imageLoc);
-			} // try-catch
+			AACCategory category = this.category(imageLoc);
+			if (category == null) {
+				return null;
+			} // if
+			this.currCategory = category;
+			this.currLoc = imageLoc;
+			return "";
 		} else {
-			if (this.currCategory.hasImage(imageLoc)) {
-				return this.currCategory.select(imageLoc);
-			} else {
-				throw new NoSuchElementException("Image location not found: " + imageLoc);
-			} // if/else
-		} // try-catch
-	} // select(String)
+			String text = this.currCategory.trySelect(imageLoc);
+			if (text != null) {
+				this.predictor.observe(this.currLoc, imageLoc);
+			} // if
+			return text;
+		} // if/else
+	} // trySelect(String)
+
+	/**
+	 * Predicts the items most likely to be selected next, from the
+	 * items selected so far. Items that are no longer in their
+	 * categories are left out.
+	 * @param limit the largest number of predictions to make
+	 * @return the predictions, most likely first
+	 */
+	public List<SymbolPredictor.Prediction> predict(int limit) {
+		List<SymbolPredictor.Prediction> predictions = new ArrayList<>();
+		for (SymbolPredictor.Prediction prediction : this.predictor.predict(SymbolPredictor.SLOTS * 2)) {
+			AACCategory category = this.category(prediction.getCategory());
+			if (predictions.size() < limit && category != null
+					&& category.trySelect(prediction.getImageLoc()) != null) {
+				predictions.add(prediction);
+			} // if
+		} // for-loop
+		return predictions;
+	} // predict(int)
+
+	/**
+	 * Selects a predicted item, moving to its category first
+	 * @param category the image location of the item's category
+	 * @param imageLoc the image location of the item
+	 * @return the text to be spoken, or null if the item is no longer
+	 * in the category
+	 */
+	public String selectPrediction(String category, String imageLoc) {
+		AACCategory found = this.category(category);
+		if (found == null) {
+			return null;
+		} // if
+		this.currCategory = found;
+		this.currLoc = category;
+		return this.trySelect(imageLoc);
+	} // selectPrediction(String, String)
 	
 	/**
 	 * Provides an array of all the images in the current category
@@ -139,6 +605,21 @@ public class AACMappings implements AACPage {
 			return this.currCategory.getImageLocs();
 		} // if/else
 	} // getImageLocs()
+
+	/**
+	 * Provides a read-only view of the images in the current category,
+	 * without copying them. Since categories are replaced rather than
+	 * changed, the view shows the images as they are now; ask again to
+	 * see items added later.
+	 * @return the list of images in the current category
+	 */
+	public List<String> getImageLocView() {
+		if (this.currCategory == this.defaultCategory) {
+			return this.categories.keys();
+		} else {
+			return this.currCategory.getImageLocView();
+		} // if/else
+	} // getImageLocView()
 	
 	/**
 	 * Resets the current category of the AAC back to the default
@@ -146,6 +627,7 @@ public class AACMappings implements AACPage {
 	 */
 	public void reset() {
 		this.currCategory = this.defaultCategory;
+		this.currLoc = null;
 	} // reset()
 	
 	
@@ -168,44 +650,447 @@ public class AACMappings implements AACPage {
 	 * 
 	 * @param filename the name of the file to write the
 	 * AAC mapping to
+	 * @throws IllegalArgumentException if a mapping cannot be written as
+	 * one line (see EditJournal.check); the file is then incomplete
 	 */
 	public void writeToFile(String filename) {
 		try {
-			PrintWriter pen = new PrintWriter(new File(filename));
-			for (int i = 0; i < this.categories.size(); i++) {
-				AACCategory category = new AACCategory(filename);
-				pen.println(category.getCategory());
-				String[] imageLocs = category.getImageLocs();
-				for (int j = 0; j < imageLocs.length; j++) {
-					pen.println(">" + imageLocs[j] + " " + category.select(imageLocs[j]));
-				} // for-loop
-			} // for-loop
+			PrintWriter pen = new PrintWriter(new File(filename), StandardCharsets.UTF_8);
+			this.printTo(pen);
 			pen.close();
 		} catch (FileNotFoundException e) {
 			throw new NullPointerException("File not found: " + filename);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not write " + filename, e);
 		} // try/catch
 	} // writeToFile(String)
+
+	/**
+	 * Prints the mappings in the format described in writeToFile
+	 * @param pen where to print them
+	 * @throws IllegalArgumentException if a mapping cannot be written as
+	 * one line, before it is written
+	 */
+	private void printTo(PrintWriter pen) {
+		PersistentAssociativeArray<String, AACCategory> categories = this.categories.snapshot();
+		for (String loc : categories.keys()) {
+			AACCategory category = this.loaded(loc, categories.getOrDefault(loc, null));
+			EditJournal.check(loc, category.getCategory());
+			pen.println(loc + " " + category.getCategory());
+			for (String imageLoc : category.getImageLocView()) {
+				String text = category.trySelect(imageLoc);
+				EditJournal.check(imageLoc, text);
+				pen.println(">" + imageLoc + " " + text);
+			} // for-loop
+		} // for-loop
+	} // printTo(PrintWriter)
+
+	/**
+	 * Saves the items added since the mappings were loaded, or last
+	 * saved, by forcing their entries in the journal to disk. This
+	 * takes time in proportion to the number of new items. Once the
+	 * journal is large, it is also compacted.
+	 * @throws IllegalStateException if the mappings have no journal
+	 * because they were not created with load
+	 * @throws UncheckedIOException if the journal cannot be written
+	 */
+	public void save() {
+		if (this.journal == null) {
+			throw new IllegalStateException("No journal; use AACMappings.load");
+		} // if
+		try {
+			this.journal.sync();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not save " + this.filename, e);
+		} // try/catch
+		if (this.journal.size() >= COMPACT_THRESHOLD
+				&& this.journal.size() >= this.categories.size()) {
+			this.compact();
+		} // if
+	} // save()
+
+	/**
+	 * Writes all of the mappings into the mapping file they were loaded
+	 * from and empties the journal. The mappings are written to a
+	 * temporary file that then replaces the mapping file, so the
+	 * mapping file is always complete.
+	 * @throws IllegalStateException if the mappings have no journal
+	 * because they were not created with load
+	 * @throws UncheckedIOException if the file cannot be written
+	 */
+	public void compact() {
+		if (this.journal == null) {
+			throw new IllegalStateException("No journal; use AACMappings.load");
+		} // if
+		Path base = Paths.get(this.filename);
+		try {
+			Path temp = Files.createTempFile(base.toAbsolutePath().getParent(),
+					base.getFileName().toString(), ".tmp");
+			try {
+				PrintWriter pen = new PrintWriter(temp.toFile(), StandardCharsets.UTF_8);
+				this.printTo(pen);
+				pen.close();
+				try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+					channel.force(true);
+				} // try
+				Files.move(temp, base, StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temp);
+			} // try/finally
+			this.journal.restart();
+			// Every category was read to write the file.
+			this.index = null;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not write " + this.filename, e);
+		} // try/catch
+	} // compact()
+
+	/**
+	 * Saves any items that have not been saved and closes the journal,
+	 * if there is one
+	 * @throws UncheckedIOException if the journal cannot be written
+	 */
+	public void close() {
+		if (this.journal != null) {
+			try {
+				this.journal.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not save " + this.filename, e);
+			} // try/catch
+			this.journal = null;
+		} // if
+	} // close()
 	
 	/**
 	 * Adds the mapping to the current category (or the default category if
 	 * that is the current category)
 	 * @param imageLoc the location of the image
 	 * @param text the text associated with the image
+	 * @throws IllegalArgumentException if the mappings have a journal
+	 * and the mapping could not be recorded in it; see EditJournal.check
 	 */
 	public void addItem(String imageLoc, String text) {
 		if (this.currCategory == this.defaultCategory) {
-			AACCategory category = new AACCategory(text);
+			this.add(null, imageLoc, text);
+		} else {
+			AACCategory updated = this.add(this.currLoc, imageLoc, text);
+			if (updated != null) {
+				this.currCategory = updated;
+			} // if
+		} // if/else
+	} // addItem(String, String)
+
+	/**
+	 * Adds the mapping to a category, whichever category this set of
+	 * mappings is in, as sessions do
+	 * @param category the location of the category's image, or null to
+	 * add a category
+	 * @param imageLoc the location of the image
+	 * @param text the text associated with the image
+	 * @return true if the mapping was added, or false if there is no
+	 * such category
+	 * @throws IllegalArgumentException if the mappings have a journal
+	 * and the mapping could not be recorded in it; see EditJournal.check
+	 */
+	public boolean addItem(String category, String imageLoc, String text) {
+		return this.add(category, imageLoc, text) != null;
+	} // addItem(String, String, String)
+
+	/**
+	 * Adds a mapping to a category and records it in the journal. Adding
+	 * is synchronized so that concurrent additions to one category do
+	 * not copy the same old category and lose each other's items.
+	 * @param category the location of the category's image, or null to
+	 * add a category
+	 * @param imageLoc the location of the image
+	 * @param text the text associated with the image
+	 * @return the category with the new item, the default category if a
+	 * category was added, or null if there is no such category
+	 * @throws IllegalArgumentException if the mappings have a journal
+	 * and the mapping could not be recorded in it
+	 */
+	private synchronized AACCategory add(String category, String imageLoc, String text) {
+		if (this.journal != null) {
+			// Checked before anything changes, so that a rejected mapping
+			// is neither shown nor lost when the mappings are loaded again.
+			EditJournal.check(imageLoc, text);
+		} // if
+		try {
+			if (category == null) {
+				this.putCategory(imageLoc, text);
+				if (this.journal != null) {
+					this.journal.category(imageLoc, text);
+				} // if
+				return this.defaultCategory;
+			} // if
+			AACCategory current = this.category(category);
+			if (current == null) {
+				return null;
+			} // if
+			AACCategory updated = this.putItem(category, current, imageLoc, text);
+			if (this.journal != null) {
+				this.journal.item(category, imageLoc, text);
+			} // if
+			return updated;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not save " + this.filename, e);
+		} // try/catch
+	} // add(String, String, String)
+
+	/**
+	 * Resolves a sequence of selected images, starting from the default
+	 * category, into the sentence they build, in one call. Categories in
+	 * the sequence move into their categories and items add their text,
+	 * as taps would, but the current category is left as it is.
+	 * @param imageLocs the selected images, in order
+	 * @return the sentence and what each image was resolved to
+	 */
+	public Utterance resolve(List<String> imageLocs) {
+		return this.vocabulary().resolve(null, imageLocs);
+	} // resolve(List)
+
+	/**
+	 * Checks in the background that every image in the mappings exists,
+	 * can be read and can be decoded, without waiting for the check
+	 * @return the report of the problems found, once every image has
+	 * been checked
+	 */
+	public CompletableFuture<ImageValidator.Report> validateImages() {
+		return ImageValidator.validate(this.vocabulary());
+	} // validateImages()
+
+	/**
+	 * Gets the categories and items as they are now, as a vocabulary that
+	 * never changes and can be shared by any number of sessions. Asking
+	 * again before the mappings change gives the same vocabulary.
+	 * @return the vocabulary
+	 */
+	public Vocabulary vocabulary() {
+		PersistentAssociativeArray<String, AACCategory> current = this.categories.snapshot();
+		Vocabulary result = this.vocabulary;
+		if (result == null || !result.isOver(current)) {
+			// The vocabulary keeps the index its stubs came from, since the
+			// mappings drop theirs when they are compacted or reloaded.
+			CategoryIndex index = this.index;
+			result = new Vocabulary(current,
+					(imageLoc, category) -> this.loaded(index, imageLoc, category));
+			this.vocabulary = result;
+		} // if
+		return result;
+	} // vocabulary()
+
+	/**
+	 * Adds a new, empty category, replacing any category with the same
+	 * image
+	 * @param imageLoc the location of the category's image
+	 * @param name the name of the category
+	 */
+	private synchronized void putCategory(String imageLoc, String name) {
+		AACCategory category = new AACCategory(name, this.directories);
+		if (this.prefixIndexed) {
+			category.enablePrefixIndex();
+		} // if
+		if (this.textIndex != null) {
+			AACCategory old = this.categories.getOrDefault(imageLoc, null);
+			if (old != null) {
+				this.textIndex.removeCategory(imageLoc, old);
+			} // if
+			this.textIndex.add("", imageLoc, name);
+		} // if
+		try {
+			this.categories.set(imageLoc, category);
+		} catch (NullKeyException e) {
+			// There should not be a null key.
+		} // try/catch
+	} // putCategory(String, String)
+
+	/**
+	 * Replaces a category with a copy that also has an item
+	 * @param categoryLoc the location of the category's image
+	 * @param category the category
+	 * @param imageLoc the location of the item's image
+	 * @param text the text associated with the item
+	 * @return the new copy of the category
+	 */
+	private synchronized AACCategory putItem(String categoryLoc, AACCategory category,
+			String imageLoc, String text) {
+		return this.putItemInto(categoryLoc, category.clone(), imageLoc, text);
+	} // putItem(String, AACCategory, String, String)
+
+	/**
+	 * Adds an item to a copy of a category that no reader has seen, and
+	 * puts the copy in the mappings in place of the category
+	 * @param categoryLoc the location of the category's image
+	 * @param updated the copy of the category
+	 * @param imageLoc the location of the item's image
+	 * @param text the text associated with the item
+	 * @return the copy
+	 */
+	private synchronized AACCategory putItemInto(String categoryLoc, AACCategory updated,
+			String imageLoc, String text) {
+		updated.addItem(imageLoc, text);
+		if (this.textIndex != null) {
+			this.textIndex.add(categoryLoc, imageLoc, text);
+		} // if
+		try {
+			this.categories.set(categoryLoc, updated);
+		} catch (NullKeyException e) {
+			// There should not be a null key.
+		} // try/catch
+		return updated;
+	} // putItemInto(String, AACCategory, String, String)
+
+	/**
+	 * Gets a category, reading its items first if they have not been
+	 * read
+	 * @param imageLoc the location of the category's image
+	 * @return the category, or null if there is no such category
+	 */
+	private AACCategory category(String imageLoc) {
+		return this.loaded(imageLoc, this.categories.getOrDefault(imageLoc, null));
+	} // category(String)
+
+	/**
+	 * Makes sure that a category's items have been read, using the
+	 * index the mappings have now
+	 * @param imageLoc the location of the category's image
+	 * @param category the category, as it was in the mappings
+	 * @return the category with its items
+	 */
+	private AACCategory loaded(String imageLoc, AACCategory category) {
+		return this.loaded(this.index, imageLoc, category);
+	} // loaded(String, AACCategory)
+
+	/**
+	 * Makes sure that a category's items have been read. If the
+	 * category is a stub, its items are read from the file, or taken
+	 * from the index if they have been read before, and the category
+	 * is replaced by the full one if it is still in the mappings.
+	 * Either way, the result has the items the stub stood for, even if
+	 * the mappings have changed since the stub was taken.
+	 * @param index the index the stub may have come from, or null
+	 * @param imageLoc the location of the category's image
+	 * @param category the category, as it was in the mappings
+	 * @return the category with its items
+	 */
+	private AACCategory loaded(CategoryIndex index, String imageLoc, AACCategory category) {
+		if (index == null || !index.isStub(imageLoc, category)) {
+			return category;
+		} // if
+		AACCategory loaded = index.load(imageLoc);
+		if (this.categories.getOrDefault(imageLoc, null) != category) {
+			// Already replaced, or taken before the mappings changed.
+			return loaded;
+		} // if
+		AACCategory full = loaded;
+		if (this.prefixIndexed) {
+			// The index's copy may be shared, so it is not changed.
+			full = loaded.clone();
+			full.enablePrefixIndex();
+		} // if
+		synchronized (this) {
+			if (this.categories.getOrDefault(imageLoc, null) != category) {
+				return loaded;
+			} // if
 			try {
-				this.categories.set(imageLoc, category);
+				this.categories.set(imageLoc, full);
 			} catch (NullKeyException e) {
 				// There should not be a null key.
 			} // try/catch
-		} else {
-			this.currCategory.addItem(imageLoc, text);
-		} // if/else
-	} // addItem(String, String)
+		} // synchronized
+		return full;
+	} // loaded(CategoryIndex, String, AACCategory)
 
 
+	/**
+	 * Builds an index by prefix of the image locations in every
+	 * category, including categories added later, to speed up
+	 * getImageLocsWithPrefix. Categories are replaced by indexed
+	 * copies rather than changed, since readers may be using them.
+	 */
+	public void enablePrefixIndex() {
+		if (this.prefixIndexed) {
+			return;
+		} // if
+		this.prefixIndexed = true;
+		for (String loc : this.categories.keys()) {
+			AACCategory indexed = this.category(loc).clone();
+			indexed.enablePrefixIndex();
+			try {
+				this.categories.set(loc, indexed);
+			} catch (NullKeyException e) {
+				// There should not be a null key.
+			} // try/catch
+			if (loc.equals(this.currLoc)) {
+				this.currCategory = indexed;
+			} // if
+		} // for-loop
+	} // enablePrefixIndex()
+
+	/**
+	 * Finds every image location that starts with the given prefix,
+	 * across all categories, such as all of the images under
+	 * "img/food/". The images of categories that match come first,
+	 * followed by the matching items of each category in turn.
+	 * @param prefix the prefix of the image locations
+	 * @return the list of matching image locations
+	 */
+	public List<String> getImageLocsWithPrefix(String prefix) {
+		ArrayList<String> result = new ArrayList<>();
+		for (String loc : this.categories.keys()) {
+			if (loc.startsWith(prefix)) {
+				result.add(loc);
+			} // if
+		} // for-loop
+		this.categories.forEach((loc, category) ->
+				this.loaded(loc, category).forEachImageLocWithPrefix(prefix, result::add));
+		return result;
+	} // getImageLocsWithPrefix(String)
+
+	/**
+	 * Finds the symbols, in any category, whose text best matches a
+	 * query, such as "french fries". Categories match by their names.
+	 * The first search builds an index of the text of every symbol
+	 * (reading every category, if they are loaded lazily), which is
+	 * then kept up to date as items are added.
+	 * @param query the words to look for
+	 * @param limit the largest number of results to return
+	 * @return the matching symbols, best first
+	 */
+	public List<TextIndex.Result> search(String query, int limit) {
+		return this.textIndex().search(query, limit);
+	} // search(String, int)
+
+	/**
+	 * Finds the symbols, in any category, whose text best matches a
+	 * query that may be misspelled, such as "strawbery". Each word of
+	 * the query also matches words that are up to two edits away
+	 * (fewer for short words), and closer words score higher.
+	 * @param query the words to look for
+	 * @param limit the largest number of results to return
+	 * @return the matching symbols, best first
+	 */
+	public List<TextIndex.Result> fuzzySearch(String query, int limit) {
+		return this.textIndex().fuzzySearch(query, FUZZY_DISTANCE, limit);
+	} // fuzzySearch(String, int)
+
+	/**
+	 * Gets the index of the text of every symbol, building it if this
+	 * is the first time it is needed
+	 * @return the index
+	 */
+	private synchronized TextIndex textIndex() {
+		if (this.textIndex == null) {
+			TextIndex built = new TextIndex();
+			for (String loc : this.categories.keys()) {
+				built.addCategory(loc, this.category(loc));
+			} // for-loop
+			this.textIndex = built;
+		} // if
+		return this.textIndex;
+	} // textIndex()
+
 	/**
 	 * Gets the name of the current category
 	 * @return returns the current category or the empty string if 
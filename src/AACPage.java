@@ -1,3 +1,4 @@
+import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
@@ -26,6 +27,15 @@ public interface AACPage {
 	 */
 	public String[] getImageLocs();
 	
+	/**
+	 * Returns a read-only view of the images to be displayed on
+	 * the page. Unlike getImageLocs, this does not copy the image
+	 * locations, so it is cheap to call on every navigation
+	 * @return the list of image locations; call this again after
+	 * changing the page to see the changes
+	 */
+	public List<String> getImageLocView();
+	
 	/**
 	 * Returns the name of the current category
 	 * @return the name of the current category
@@ -44,6 +54,17 @@ public interface AACPage {
 	 */
 	public String select(String imageLoc);
 	
+	/**
+	 * Behaves like select, except that an image that is not in the
+	 * current category is reported by returning null rather than by
+	 * throwing an exception. Stray taps are common, so this is the
+	 * cheaper call when a miss is expected.
+	 * @param imageLoc the location where the image is stored
+	 * @return the text to be spoken, the empty string, or null if the
+	 * image provided is not in the current category
+	 */
+	public String trySelect(String imageLoc);
+	
 	
 	/**
 	 * Determines if the provided image is in the set of images that
@@ -0,0 +1,679 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves a set of mappings over HTTP, so that many devices or web
+ * pages can use one AAC without the Swing front end. Each client
+ * creates a session, which keeps its own current category, and then
+ * passes the session's id with every request. All of the sessions share
+ * the mappings, so items added by one client are seen by the others.
+ *
+ * The API, where every response is JSON:
+ *
+ * POST /sessions creates a session: {"session":"1"}, or gives 503 if
+ * there are already as many sessions as the server allows and none of
+ * them has been idle long enough to be ended
+ * DELETE /sessions?session=1 ends a session
+ * GET /images?session=1 lists the images in the session's category:
+ * {"category":"fruit","images":["img/apple.png",...]}; the optional
+ * offset and limit parameters return one page of them
+ * POST /select?session=1&image=loc selects an image: {"text":"apple"},
+ * where the text is empty when a category was selected
+ * POST /reset?session=1 returns the session to the home page
+ * POST /items?session=1&image=loc&text=words adds an item to the
+ * session's category, or a category on the home page
+ * POST /utterance?session=1&image=loc&image=loc... resolves a sequence
+ * of images, starting from the session's category, into a sentence
+ * without moving the session: {"text":"I want apple","images":[{"image":
+ * "loc","category":"one","text":"apple"},...]}, where the text of an
+ * image that was not found is null
+ *
+ * Parameters may be given in the query or in a form-encoded body. Only
+ * image in /utterance may be given more than once. Unknown sessions and
+ * images give 404, and missing, repeated or malformed parameters 400,
+ * as do items whose image contains whitespace or whose text contains a
+ * line break, since they could not be saved.
+ *
+ * A session that has not been used for IDLE_TIMEOUT is ended, and
+ * gives 404 like any unknown session.
+ *
+ * Each request runs on its own virtual thread when the JDK has them
+ * (Java 21 and later), and otherwise on a fixed pool of threads.
+ *
+ * The JDK's HTTP server waits for a delayed acknowledgement before
+ * each small response unless the system property
+ * sun.net.httpserver.nodelay is true, which adds about 40 ms to every
+ * request. main sets it; programs that create an AACServer themselves
+ * should set it before the first server is created, for instance with
+ * -Dsun.net.httpserver.nodelay=true.
+ *
+ * @author Alex Cyphers
+ *
+ */
+public class AACServer implements Closeable {
+
+	/*
+	 * The port the server listens on when none is given.
+	 */
+	static final int DEFAULT_PORT = 8207;
+
+	/*
+	 * The number of threads that handle requests when the JDK does not
+	 * have virtual threads.
+	 */
+	static final int FALLBACK_THREADS = 64;
+
+	/*
+	 * The number of connections that may wait to be accepted.
+	 */
+	static final int BACKLOG = 1024;
+
+	/*
+	 * The most sessions that may be open at once, by default.
+	 */
+	static final int MAX_SESSIONS = 10000;
+
+	/*
+	 * How long a session may go unused before it is ended, in
+	 * milliseconds, by default.
+	 */
+	static final long IDLE_TIMEOUT = 30 * 60 * 1000L;
+
+	/*
+	 * The property that turns off Nagle's algorithm in the JDK's HTTP
+	 * server; see above.
+	 */
+	static final String NODELAY = "sun.net.httpserver.nodelay";
+
+	/**
+	 * A request that cannot be answered, along with the HTTP status
+	 * that says why
+	 */
+	private static class Failure extends Exception {
+		/*
+		 * The version of the class, as for any exception.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/*
+		 * The HTTP status.
+		 */
+		final int status;
+
+		/**
+		 * Creates a failure
+		 * @param status the HTTP status
+		 * @param message what went wrong
+		 */
+		Failure(int status, String message) {
+			super(message);
+			this.status = status;
+		} // Failure(int, String)
+	} // class Failure
+
+	/**
+	 * A session and when it was last used
+	 */
+	private static class Session {
+		/*
+		 * The session.
+		 */
+		final AACSession aac;
+
+		/*
+		 * The value of System.nanoTime when the session was last used.
+		 */
+		volatile long lastUsed;
+
+		/**
+		 * Creates a session that is being used now
+		 * @param aac the session
+		 */
+		Session(AACSession aac) {
+			this.aac = aac;
+			this.lastUsed = System.nanoTime();
+		} // Session(AACSession)
+	} // class Session
+
+	/**
+	 * Answers the requests to one path
+	 */
+	private interface Endpoint {
+		/**
+		 * Answers a request
+		 * @param method the HTTP method
+		 * @param params the values of each parameter of the request, in
+		 * the order they were given
+		 * @return the JSON response
+		 * @throws Failure if the request cannot be answered
+		 */
+		String respond(String method, Map<String, List<String>> params) throws Failure;
+	} // interface Endpoint
+
+	/*
+	 * The mappings being served.
+	 */
+	private final AACMappings mappings;
+
+	/*
+	 * The sessions, by their ids.
+	 */
+	private final ConcurrentHashMap<String, Session> sessions;
+
+	/*
+	 * The most sessions that may be open at once.
+	 */
+	private final int maxSessions;
+
+	/*
+	 * How long a session may go unused before it is ended, in
+	 * nanoseconds.
+	 */
+	private final long idleNanos;
+
+	/*
+	 * The id of the next session.
+	 */
+	private final AtomicLong nextId;
+
+	/*
+	 * What runs the requests.
+	 */
+	private final ExecutorService executor;
+
+	/*
+	 * The HTTP server.
+	 */
+	private final HttpServer server;
+
+	/**
+	 * Starts serving a set of mappings on the loopback address
+	 * @param mappings the mappings to serve
+	 * @param port the port to listen on, or 0 for any free port
+	 * @throws IOException if the server cannot listen on the port
+	 */
+	public AACServer(AACMappings mappings, int port) throws IOException {
+		this(mappings, port, MAX_SESSIONS, IDLE_TIMEOUT);
+	} // AACServer(AACMappings, int)
+
+	/**
+	 * Starts serving a set of mappings on the loopback address, with a
+	 * given limit on the sessions
+	 * @param mappings the mappings to serve
+	 * @param port the port to listen on, or 0 for any free port
+	 * @param maxSessions the most sessions that may be open at once
+	 * @param idleMillis how long a session may go unused before it is
+	 * ended, in milliseconds
+	 * @throws IOException if the server cannot listen on the port
+	 */
+	AACServer(AACMappings mappings, int port, int maxSessions, long idleMillis)
+			throws IOException {
+		this.mappings = mappings;
+		this.sessions = new ConcurrentHashMap<>();
+		this.maxSessions = maxSessions;
+		this.idleNanos = idleMillis * 1000000L;
+		this.nextId = new AtomicLong(1);
+		this.executor = requestExecutor();
+		this.server = HttpServer.create(
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+		this.route("/sessions", this::sessions);
+		this.route("/images", this::images);
+		this.route("/select", this::select);
+		this.route("/reset", this::reset);
+		this.route("/items", this::items);
+		this.route("/utterance", this::utterance);
+		this.server.setExecutor(this.executor);
+		this.server.start();
+	} // AACServer(AACMappings, int, int, long)
+
+	/**
+	 * Makes an executor that runs each task on a new virtual thread if
+	 * the JDK has them, and on a fixed pool of threads otherwise. Virtual
+	 * threads are found by reflection so that the server still compiles
+	 * and runs on Java 17.
+	 * @return the executor
+	 */
+	static ExecutorService requestExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// Virtual threads are missing, or only a preview feature.
+			return Executors.newFixedThreadPool(FALLBACK_THREADS);
+		} // try/catch
+	} // requestExecutor()
+
+	/**
+	 * Gets the port the server is listening on
+	 * @return the port
+	 */
+	public int getPort() {
+		return this.server.getAddress().getPort();
+	} // getPort()
+
+	/**
+	 * Gets the number of open sessions
+	 * @return the number of sessions
+	 */
+	public int sessionCount() {
+		return this.sessions.size();
+	} // sessionCount()
+
+	/**
+	 * Stops the server, waiting briefly for requests in progress
+	 */
+	public void close() {
+		this.server.stop(1);
+		this.executor.shutdown();
+	} // close()
+
+	/**
+	 * Sends the requests to a path to an endpoint
+	 * @param path the path
+	 * @param endpoint the endpoint
+	 */
+	private void route(String path, Endpoint endpoint) {
+		this.server.createContext(path, (exchange) -> this.handle(exchange, endpoint));
+	} // route(String, Endpoint)
+
+	/**
+	 * Answers one request
+	 * @param exchange the request and its response
+	 * @param endpoint what answers it
+	 * @throws IOException if the response cannot be sent
+	 */
+	private void handle(HttpExchange exchange, Endpoint endpoint) throws IOException {
+		try (exchange) {
+			int status = 200;
+			String body;
+			try {
+				body = endpoint.respond(exchange.getRequestMethod(), params(exchange));
+			} catch (Failure e) {
+				status = e.status;
+				body = "{\"error\":" + quote(e.getMessage()) + "}";
+			} catch (RuntimeException e) {
+				status = 500;
+				body = "{\"error\":" + quote(String.valueOf(e)) + "}";
+			} // try/catch
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+			exchange.sendResponseHeaders(status, bytes.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			} // try
+		} // try
+	} // handle(HttpExchange, Endpoint)
+
+	/**
+	 * Reads the parameters of a request from its query and its body
+	 * @param exchange the request
+	 * @return the values of the parameters, by name
+	 * @throws IOException if the body cannot be read
+	 * @throws Failure if the parameters are not properly encoded
+	 */
+	static Map<String, List<String>> params(HttpExchange exchange)
+			throws IOException, Failure {
+		Map<String, List<String>> params = new HashMap<>();
+		decode(exchange.getRequestURI().getRawQuery(), params);
+		try (InputStream in = exchange.getRequestBody()) {
+			byte[] body = in.readAllBytes();
+			if (body.length > 0) {
+				decode(new String(body, StandardCharsets.UTF_8), params);
+			} // if
+		} // try
+		return params;
+	} // params(HttpExchange)
+
+	/**
+	 * Decodes form-encoded parameters, such as a query
+	 * @param encoded the parameters, or null if there are none
+	 * @param params where to put them, after any earlier values of the
+	 * same parameters
+	 * @throws Failure if a parameter has a malformed escape, such as a
+	 * % that is not followed by two hex digits
+	 */
+	static void decode(String encoded, Map<String, List<String>> params) throws Failure {
+		if (encoded == null || encoded.isEmpty()) {
+			return;
+		} // if
+		for (String pair : encoded.split("&")) {
+			int equals = pair.indexOf('=');
+			String name = (equals < 0) ? pair : pair.substring(0, equals);
+			String value = (equals < 0) ? "" : pair.substring(equals + 1);
+			try {
+				params.computeIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8),
+						(key) -> new ArrayList<>())
+						.add(URLDecoder.decode(value, StandardCharsets.UTF_8));
+			} catch (IllegalArgumentException e) {
+				throw new Failure(400, "Malformed parameter: " + pair);
+			} // try/catch
+		} // for-loop
+	} // decode(String, Map)
+
+	/**
+	 * Writes a string as a JSON string
+	 * @param text the string
+	 * @return the JSON string, with quotes
+	 */
+	static String quote(String text) {
+		StringBuilder json = new StringBuilder(text.length() + 2);
+		json.append('"');
+		for (int i = 0; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			if (ch == '"' || ch == '\\') {
+				json.append('\\').append(ch);
+			} else if (ch < ' ') {
+				json.append(String.format("\\u%04x", (int) ch));
+			} else {
+				json.append(ch);
+			} // if/else
+		} // for-loop
+		return json.append('"').toString();
+	} // quote(String)
+
+	/**
+	 * Writes a string as a JSON string, or null as null
+	 * @param text the string, or null
+	 * @return the JSON value
+	 */
+	static String quoteOrNull(String text) {
+		return (text == null) ? "null" : quote(text);
+	} // quoteOrNull(String)
+
+	/**
+	 * Gets a parameter that the request may give once
+	 * @param params the parameters
+	 * @param name the name of the parameter
+	 * @return its value, or null if the request does not have it
+	 * @throws Failure if the request gives it more than once
+	 */
+	private static String optional(Map<String, List<String>> params, String name)
+			throws Failure {
+		List<String> values = params.get(name);
+		if (values == null) {
+			return null;
+		} // if
+		if (values.size() > 1) {
+			throw new Failure(400, "Repeated parameter: " + name);
+		} // if
+		return values.get(0);
+	} // optional(Map, String)
+
+	/**
+	 * Gets a parameter that the request must give once
+	 * @param params the parameters
+	 * @param name the name of the parameter
+	 * @return its value
+	 * @throws Failure if the request does not have it, or gives it more
+	 * than once
+	 */
+	private static String required(Map<String, List<String>> params, String name)
+			throws Failure {
+		String value = optional(params, name);
+		if (value == null) {
+			throw new Failure(400, "Missing parameter: " + name);
+		} // if
+		return value;
+	} // required(Map, String)
+
+	/**
+	 * Gets a whole-number parameter
+	 * @param params the parameters
+	 * @param name the name of the parameter
+	 * @param otherwise the value if the request does not have it
+	 * @return its value
+	 * @throws Failure if it is not a number, or is given more than once
+	 */
+	private static int number(Map<String, List<String>> params, String name, int otherwise)
+			throws Failure {
+		String value = optional(params, name);
+		if (value == null) {
+			return otherwise;
+		} // if
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new Failure(400, "Not a number: " + name);
+		} // try/catch
+	} // number(Map, String, int)
+
+	/**
+	 * Makes sure a request uses a method
+	 * @param method the method the request used
+	 * @param expected the method it must use
+	 * @throws Failure if it used another
+	 */
+	private static void expect(String method, String expected) throws Failure {
+		if (!method.equals(expected)) {
+			throw new Failure(405, "Use " + expected);
+		} // if
+	} // expect(String, String)
+
+	/**
+	 * Gets the session that a request names
+	 * @param params the parameters of the request
+	 * @return the session
+	 * @throws Failure if there is no such session
+	 */
+	private AACSession session(Map<String, List<String>> params) throws Failure {
+		String id = required(params, "session");
+		Session session = this.sessions.get(id);
+		long now = System.nanoTime();
+		if (session != null && now - session.lastUsed > this.idleNanos) {
+			this.sessions.remove(id, session);
+			session = null;
+		} // if
+		if (session == null) {
+			throw new Failure(404, "No such session");
+		} // if
+		session.lastUsed = now;
+		return session.aac;
+	} // session(Map)
+
+	/**
+	 * Ends the sessions that have gone unused for too long
+	 */
+	private void endIdleSessions() {
+		long now = System.nanoTime();
+		this.sessions.values().removeIf((session) -> now - session.lastUsed > this.idleNanos);
+	} // endIdleSessions()
+
+	/**
+	 * Creates or ends a session
+	 * @param method the HTTP method
+	 * @param params the parameters
+	 * @return the new session's id, or an empty object
+	 * @throws Failure if the method is wrong, the session is missing, or
+	 * there are too many sessions
+	 */
+	private String sessions(String method, Map<String, List<String>> params)
+			throws Failure {
+		if (method.equals("DELETE")) {
+			if (this.sessions.remove(required(params, "session")) == null) {
+				throw new Failure(404, "No such session");
+			} // if
+			return "{}";
+		} // if
+		expect(method, "POST");
+		if (this.sessions.size() >= this.maxSessions) {
+			// Only looked for when the sessions are full, so that creating
+			// a session does not take time in proportion to the sessions.
+			this.endIdleSessions();
+			if (this.sessions.size() >= this.maxSessions) {
+				throw new Failure(503, "Too many sessions");
+			} // if
+		} // if
+		String id = Long.toString(this.nextId.getAndIncrement());
+		this.sessions.put(id, new Session(new AACSession(this.mappings)));
+		return "{\"session\":" + quote(id) + "}";
+	} // sessions(String, Map)
+
+	/**
+	 * Lists the images in a session's category
+	 * @param method the HTTP method
+	 * @param params the parameters
+	 * @return the name of the category and its images
+	 * @throws Failure if the method is wrong or the session is missing
+	 */
+	private String images(String method, Map<String, List<String>> params) throws Failure {
+		expect(method, "GET");
+		AACSession session = this.session(params);
+		synchronized (session) {
+			int limit = number(params, "limit", Integer.MAX_VALUE);
+			if (limit < 0) {
+				throw new Failure(400, "Negative limit");
+			} // if
+			session.setOffset(number(params, "offset", 0));
+			List<String> images = session.getPage(limit);
+			StringBuilder json = new StringBuilder();
+			json.append("{\"category\":").append(quote(session.getCategory()))
+					.append(",\"images\":[");
+			for (int i = 0; i < images.size(); i++) {
+				if (i > 0) {
+					json.append(',');
+				} // if
+				json.append(quote(images.get(i)));
+			} // for-loop
+			return json.append("]}").toString();
+		} // synchronized
+	} // images(String, Map)
+
+	/**
+	 * Selects an image in a session's category
+	 * @param method the HTTP method
+	 * @param params the parameters
+	 * @return the text to speak
+	 * @throws Failure if the method is wrong, or the session or image is
+	 * missing
+	 */
+	private String select(String method, Map<String, List<String>> params) throws Failure {
+		expect(method, "POST");
+		AACSession session = this.session(params);
+		String image = required(params, "image");
+		synchronized (session) {
+			try {
+				return "{\"text\":" + quote(session.select(image)) + "}";
+			} catch (NoSuchElementException e) {
+				throw new Failure(404, "No such image: " + image);
+			} // try/catch
+		} // synchronized
+	} // select(String, Map)
+
+	/**
+	 * Returns a session to the home page
+	 * @param method the HTTP method
+	 * @param params the parameters
+	 * @return an empty object
+	 * @throws Failure if the method is wrong or the session is missing
+	 */
+	private String reset(String method, Map<String, List<String>> params) throws Failure {
+		expect(method, "POST");
+		AACSession session = this.session(params);
+		synchronized (session) {
+			session.reset();
+		} // synchronized
+		return "{}";
+	} // reset(String, Map)
+
+	/**
+	 * Adds an item to a session's category
+	 * @param method the HTTP method
+	 * @param params the parameters
+	 * @return an empty object
+	 * @throws Failure if the method is wrong, the session or a
+	 * parameter is missing, or the item could not be saved
+	 */
+	private String items(String method, Map<String, List<String>> params) throws Failure {
+		expect(method, "POST");
+		AACSession session = this.session(params);
+		String image = required(params, "image");
+		String text = required(params, "text");
+		try {
+			// Checked whether or not the mappings have a journal, so that
+			// what is added can always be saved.
+			EditJournal.check(image, text);
+		} catch (IllegalArgumentException e) {
+			throw new Failure(400, e.getMessage());
+		} // try/catch
+		synchronized (session) {
+			session.addItem(image, text);
+		} // synchronized
+		return "{}";
+	} // items(String, Map)
+
+	/**
+	 * Resolves a sequence of images into a sentence
+	 * @param method the HTTP method
+	 * @param params the parameters
+	 * @return the sentence and what each image was resolved to
+	 * @throws Failure if the method is wrong, or the session or images
+	 * are missing
+	 */
+	private String utterance(String method, Map<String, List<String>> params)
+			throws Failure {
+		expect(method, "POST");
+		AACSession session = this.session(params);
+		List<String> images = params.get("image");
+		if (images == null) {
+			throw new Failure(400, "Missing parameter: image");
+		} // if
+		Utterance utterance;
+		synchronized (session) {
+			utterance = session.resolve(images);
+		} // synchronized
+		StringBuilder json = new StringBuilder();
+		json.append("{\"text\":").append(quote(utterance.getText())).append(",\"images\":[");
+		List<Utterance.Resolution> resolutions = utterance.getResolutions();
+		for (int i = 0; i < resolutions.size(); i++) {
+			Utterance.Resolution resolution = resolutions.get(i);
+			if (i > 0) {
+				json.append(',');
+			} // if
+			json.append("{\"image\":").append(quote(resolution.getImageLoc()))
+					.append(",\"category\":").append(quoteOrNull(resolution.getCategory()))
+					.append(",\"text\":").append(quoteOrNull(resolution.getText())).append('}');
+		} // for-loop
+		return json.append("]}").toString();
+	} // utterance(String, Map)
+
+	/**
+	 * Serves a mapping file until the process is stopped
+	 * @param args the mapping file (AACMappings.txt if not given) and
+	 * the port (8207 if not given)
+	 * @throws IOException if the server cannot start
+	 */
+	public static void main(String[] args) throws IOException {
+		String filename = (args.length > 0) ? args[0] : "AACMappings.txt";
+		int port = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+		if (System.getProperty(NODELAY) == null) {
+			// The property is read when the first server is created.
+			System.setProperty(NODELAY, "true");
+		} // if
+		AACMappings mappings = AACMappings.load(filename);
+		AACServer server = new AACServer(mappings, port);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			server.close();
+			mappings.close();
+		}));
+		System.out.println("Serving " + filename + " on http://localhost:" + server.getPort());
+	} // main(String[])
+}
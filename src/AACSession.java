@@ -0,0 +1,195 @@
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * One user's place in a set of mappings: the category they are in and
+ * how far they have paged through it. A session holds nothing but a
+ * reference to the shared mappings, the image location of its category
+ * and its page offset, so one set of mappings can serve thousands of
+ * sessions at once. Each call reads the mappings' current vocabulary,
+ * so sessions see items that other sessions add, and never lock.
+ *
+ * A session is meant to be used by one thread at a time, but any
+ * number of sessions may be used at once by different threads.
+ *
+ * @author Alex Cyphers
+ *
+ */
+public class AACSession implements AACPage {
+
+	/*
+	 * The mappings that the session moves through.
+	 */
+	private final AACMappings mappings;
+
+	/*
+	 * The image location of the current category, or null when the
+	 * current category is the default category.
+	 */
+	private String currLoc;
+
+	/*
+	 * The index of the first image on the current page.
+	 */
+	private int offset;
+
+	/**
+	 * Creates a session that starts at the default category
+	 * @param mappings the mappings to move through
+	 */
+	public AACSession(AACMappings mappings) {
+		this.mappings = mappings;
+	} // AACSession(AACMappings)
+
+	/**
+	 * Gets the image location of the current category
+	 * @return the image location, or null on the default category
+	 */
+	public String getCategoryLoc() {
+		return this.currLoc;
+	} // getCategoryLoc()
+
+	/**
+	 * Gets the index of the first image on the current page
+	 * @return the offset
+	 */
+	public int getOffset() {
+		return this.offset;
+	} // getOffset()
+
+	/**
+	 * Moves to another page of the current category
+	 * @param offset the index of the first image on the page
+	 */
+	public void setOffset(int offset) {
+		this.offset = offset;
+	} // setOffset(int)
+
+	/**
+	 * Gets the images on the current page
+	 * @param pageSize the largest number of images on a page, which may
+	 * be Integer.MAX_VALUE for all of the rest
+	 * @return a read-only view of the images on the page
+	 * @throws IllegalArgumentException if pageSize is negative
+	 */
+	public List<String> getPage(int pageSize) {
+		if (pageSize < 0) {
+			throw new IllegalArgumentException("Negative page size: " + pageSize);
+		} // if
+		List<String> images = this.getImageLocView();
+		int from = Math.min(Math.max(this.offset, 0), images.size());
+		// Added as longs, since pageSize may be as large as an int gets.
+		return images.subList(from, (int) Math.min((long) from + pageSize, images.size()));
+	} // getPage(int)
+
+	/**
+	 * Given the image location selected, moves into the category with
+	 * that image if the session is on the default category, and
+	 * otherwise returns the text of the item
+	 * @param imageLoc the location where the image is stored
+	 * @return the text to be spoken, or the empty string if a category
+	 * was selected
+	 * @throws NoSuchElementException if the image provided is not in the
+	 * current category
+	 */
+	public String select(String imageLoc) {
+		String result = this.trySelect(imageLoc);
+		if (result == null) {
+			throw new NoSuchElementException("Image location not found: " + imageLoc);
+		} // if
+		return result;
+	} // select(String)
+
+	/**
+	 * Behaves like select, but returns null instead of throwing an
+	 * exception when the image provided is not in the current category
+	 * @param imageLoc the location where the image is stored
+	 * @return the text to be spoken, the empty string if a category was
+	 * selected, or null if the image is not in the current category
+	 */
+	public String trySelect(String imageLoc) {
+		Vocabulary vocabulary = this.mappings.vocabulary();
+		if (this.currLoc == null || !vocabulary.hasCategory(this.currLoc)) {
+			if (!vocabulary.hasCategory(imageLoc)) {
+				return null;
+			} // if
+			this.currLoc = imageLoc;
+			this.offset = 0;
+			return "";
+		} else {
+			return vocabulary.trySelect(this.currLoc, imageLoc);
+		} // if/else
+	} // trySelect(String)
+
+	/**
+	 * Resolves a sequence of selected images into the sentence they
+	 * build, starting from the session's category, without moving the
+	 * session
+	 * @param imageLocs the selected images, in order
+	 * @return the sentence and what each image was resolved to
+	 */
+	public Utterance resolve(List<String> imageLocs) {
+		return this.mappings.vocabulary().resolve(this.currLoc, imageLocs);
+	} // resolve(List)
+
+	/**
+	 * Returns to the default category
+	 */
+	public void reset() {
+		this.currLoc = null;
+		this.offset = 0;
+	} // reset()
+
+	/**
+	 * Provides an array of all the images in the current category
+	 * @return the array of images in the current category
+	 */
+	public String[] getImageLocs() {
+		return this.getImageLocView().toArray(new String[0]);
+	} // getImageLocs()
+
+	/**
+	 * Provides a read-only view of the images in the current category,
+	 * without copying them
+	 * @return the list of images in the current category
+	 */
+	public List<String> getImageLocView() {
+		Vocabulary vocabulary = this.mappings.vocabulary();
+		if (this.currLoc != null && !vocabulary.hasCategory(this.currLoc)) {
+			// The category has been removed from the mappings.
+			this.reset();
+		} // if
+		return vocabulary.getImageLocView(this.currLoc);
+	} // getImageLocView()
+
+	/**
+	 * Gets the name of the current category
+	 * @return the name, or the empty string on the default category
+	 */
+	public String getCategory() {
+		String name = this.mappings.vocabulary().getName(this.currLoc);
+		return (name == null) ? "" : name;
+	} // getCategory()
+
+	/**
+	 * Determines if the provided image is in the current category
+	 * @param imageLoc the location of the image
+	 * @return true if it is in the current category, false otherwise
+	 */
+	public boolean hasImage(String imageLoc) {
+		return this.mappings.vocabulary().hasImage(this.currLoc, imageLoc);
+	} // hasImage(String)
+
+	/**
+	 * Adds an item to the current category, or a category if the
+	 * session is on the default category. The item is added to the
+	 * shared mappings, so every session sees it.
+	 * @param imageLoc the location of the image
+	 * @param text the text associated with the image
+	 */
+	public void addItem(String imageLoc, String text) {
+		if (!this.mappings.addItem(this.currLoc, imageLoc, text)) {
+			this.reset();
+		} // if
+	} // addItem(String, String)
+}
@@ -0,0 +1,285 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import edu.grinnell.csc207.util.AssociativeArray;
+import edu.grinnell.csc207.util.NullKeyException;
+import edu.grinnell.csc207.util.PrefixTable;
+
+/**
+ * Builds the categories of a mapping file from its parsed lines. The
+ * items of a category are collected until the next category starts,
+ * so that each AACCategory can be created at the right size and
+ * filled in one step.
+ *
+ * @author Alex Cyphers
+ *
+ */
+public class CategoryBuilder implements MappingsReader.Handler {
+
+	/*
+	 * Blocks of a file smaller than this many bytes are parsed by a
+	 * single task rather than split further.
+	 */
+	static final int GRAIN = 1 << 16;
+
+	/*
+	 * The number of texts remembered for sharing between items. Must be
+	 * a power of two.
+	 */
+	static final int SHARED_TEXTS = 1 << 12;
+
+	/*
+	 * The categories built so far, by the location of their images.
+	 */
+	private AssociativeArray<String, AACCategory> categories;
+
+	/*
+	 * The image location of the category being read, or null if no
+	 * category has been started.
+	 */
+	private String categoryImage;
+
+	/*
+	 * The name of the category being read.
+	 */
+	private String categoryName;
+
+	/*
+	 * The image locations of the items read for that category.
+	 */
+	private ArrayList<String> images;
+
+	/*
+	 * The text of those items.
+	 */
+	private ArrayList<String> texts;
+
+	/*
+	 * Recent texts, by their hash codes, so that items with the same
+	 * text can share one String. A text replaces any other with the same
+	 * slot, so common texts are shared without keeping every text.
+	 */
+	private String[] sharedTexts;
+
+	/*
+	 * The table of image directories that the categories share.
+	 */
+	private PrefixTable directories;
+
+	/**
+	 * Creates a builder with no categories and a new table of image
+	 * directories
+	 */
+	public CategoryBuilder() {
+		this(new PrefixTable());
+	} // CategoryBuilder()
+
+	/**
+	 * Creates a builder with no categories whose categories share a
+	 * table of image directories
+	 * @param directories the table of image directories
+	 */
+	public CategoryBuilder(PrefixTable directories) {
+		this.directories = directories;
+		this.categories = new AssociativeArray<>();
+		this.images = new ArrayList<>();
+		this.texts = new ArrayList<>();
+		this.sharedTexts = new String[SHARED_TEXTS];
+	} // CategoryBuilder(PrefixTable)
+
+	/**
+	 * Finishes the current category and starts a new one
+	 * @param imageLoc the location of the category's image
+	 * @param name the name of the category
+	 */
+	public void category(String imageLoc, String name) {
+		this.flush();
+		this.categoryImage = imageLoc;
+		this.categoryName = name;
+	} // category(String, String)
+
+	/**
+	 * Adds an item to the current category. Items that come before
+	 * any category are ignored.
+	 * @param imageLoc the location of the item's image
+	 * @param text the text the item should speak
+	 */
+	public void item(String imageLoc, String text) {
+		if (this.categoryImage != null) {
+			this.images.add(imageLoc);
+			this.texts.add(this.share(text));
+		} // if
+	} // item(String, String)
+
+	/**
+	 * Gets a String equal to a text that an earlier item used, if one
+	 * is remembered, so that the items share it
+	 * @param text the text
+	 * @return the earlier String, or text
+	 */
+	private String share(String text) {
+		int slot = text.hashCode() & (SHARED_TEXTS - 1);
+		String shared = this.sharedTexts[slot];
+		if (text.equals(shared)) {
+			return shared;
+		} // if
+		this.sharedTexts[slot] = text;
+		return text;
+	} // share(String)
+
+	/**
+	 * Finishes the current category and returns all of the categories
+	 * @return the categories, in the order they were read
+	 */
+	public AssociativeArray<String, AACCategory> finish() {
+		this.flush();
+		return this.categories;
+	} // finish()
+
+	/**
+	 * Adds the current category, if any, sized for its items, and clears
+	 * the lists of items for the next category
+	 */
+	private void flush() {
+		if (this.categoryImage != null) {
+			AACCategory category = new AACCategory(this.categoryName, this.images.size(),
+					this.directories);
+			category.addItems(this.images.toArray(new String[this.images.size()]),
+					this.texts.toArray(new String[this.texts.size()]));
+			try {
+				this.categories.set(this.categoryImage, category);
+			} catch (NullKeyException e) {
+				// Should not recieve a null key.
+			} // try/catch
+		} // if
+		this.categoryImage = null;
+		this.images.clear();
+		this.texts.clear();
+	} // flush()
+
+	/**
+	 * Builds the categories of a whole mapping file on the common
+	 * fork-join pool. The file is split into blocks at category lines,
+	 * each block is parsed by its own task, and the results are joined
+	 * in file order, so the categories are the same as if the file had
+	 * been read from start to end. The categories share one new table of
+	 * image directories.
+	 * @param buffer a buffer holding the file
+	 * @return the categories, in the order they were read
+	 */
+	public static AssociativeArray<String, AACCategory> build(ByteBuffer buffer) {
+		return build(buffer, new PrefixTable());
+	} // build(ByteBuffer)
+
+	/**
+	 * Builds the categories of a whole mapping file in parallel, as
+	 * build(ByteBuffer) does, sharing a given table of image directories
+	 * @param buffer a buffer holding the file
+	 * @param directories the table of image directories
+	 * @return the categories, in the order they were read
+	 */
+	public static AssociativeArray<String, AACCategory> build(ByteBuffer buffer,
+			PrefixTable directories) {
+		return ForkJoinPool.commonPool().invoke(
+				new BuildTask(buffer, 0, buffer.limit(), GRAIN, directories));
+	} // build(ByteBuffer, PrefixTable)
+
+	/**
+	 * Builds the categories of a whole mapping file, in parallel, with
+	 * blocks of about the given size
+	 * @param buffer a buffer holding the file
+	 * @param grain the size below which a block is not split
+	 * @return the categories, in the order they were read
+	 */
+	static AssociativeArray<String, AACCategory> build(ByteBuffer buffer, int grain) {
+		return ForkJoinPool.commonPool().invoke(
+				new BuildTask(buffer, 0, buffer.limit(), grain, new PrefixTable()));
+	} // build(ByteBuffer, int)
+
+	/**
+	 * Builds the categories in one block of a mapping file, splitting
+	 * the block in two at a category line if it is large.
+	 */
+	private static class BuildTask extends RecursiveTask<AssociativeArray<String, AACCategory>> {
+
+		/*
+		 * The version of the class, which is serializable only because
+		 * ForkJoinTask is; tasks are never serialized.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/*
+		 * The buffer holding the file.
+		 */
+		private final ByteBuffer buffer;
+
+		/*
+		 * The offset of the first byte of the block, which starts a line.
+		 */
+		private final int from;
+
+		/*
+		 * The offset just past the end of the block.
+		 */
+		private final int to;
+
+		/*
+		 * The size below which the block is parsed without splitting.
+		 */
+		private final int grain;
+
+		/*
+		 * The table of image directories, which every task shares.
+		 */
+		private final PrefixTable directories;
+
+		/**
+		 * Creates a task for a block of a file
+		 * @param buffer the buffer holding the file
+		 * @param from the start of the block
+		 * @param to the end of the block
+		 * @param grain the size below which the block is not split
+		 * @param directories the table of image directories
+		 */
+		BuildTask(ByteBuffer buffer, int from, int to, int grain, PrefixTable directories) {
+			this.buffer = buffer;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+			this.directories = directories;
+		} // BuildTask(ByteBuffer, int, int, int, PrefixTable)
+
+		/**
+		 * Builds the categories in the block
+		 * @return the categories, in the order they were read
+		 */
+		protected AssociativeArray<String, AACCategory> compute() {
+			int mid = (this.to - this.from < this.grain) ? this.to
+					: MappingsReader.nextCategory(this.buffer,
+							this.from + (this.to - this.from) / 2, this.to);
+			if (mid <= this.from || mid >= this.to) {
+				CategoryBuilder builder = new CategoryBuilder(this.directories);
+				new MappingsReader().parse(this.buffer, this.from, this.to, builder);
+				return builder.finish();
+			} // if
+
+			BuildTask left = new BuildTask(this.buffer, this.from, mid, this.grain,
+					this.directories);
+			left.fork();
+			AssociativeArray<String, AACCategory> right =
+					new BuildTask(this.buffer, mid, this.to, this.grain,
+							this.directories).compute();
+			AssociativeArray<String, AACCategory> categories = left.join();
+			right.forEach((imageLoc, category) -> {
+				try {
+					categories.set(imageLoc, category);
+				} catch (NullKeyException e) {
+					// Should not recieve a null key.
+				} // try/catch
+			});
+			return categories;
+		} // compute()
+	} // class BuildTask
+}
@@ -0,0 +1,181 @@
+import java.nio.ByteBuffer;
+
+import edu.grinnell.csc207.util.AssociativeArray;
+import edu.grinnell.csc207.util.NullKeyException;
+import edu.grinnell.csc207.util.PrefixTable;
+import edu.grinnell.csc207.util.StringAssociativeArray;
+
+/**
+ * An index of where each category of a mapping file is, so that the
+ * items of a category can be read only when they are needed. Building
+ * the index reads just the category lines and creates an empty stub
+ * for each category; the items of a category are parsed from its
+ * byte range the first time load is asked for it.
+ *
+ * Apart from remembering the categories it has read, so that each is
+ * parsed only once, the index is never changed once it is built, so it
+ * may be shared by several sets of mappings and used by several
+ * threads.
+ *
+ * @author Alex Cyphers
+ *
+ */
+public class CategoryIndex {
+
+	/**
+	 * Where a category is in the file, along with the stub that stands
+	 * in for it until it is read
+	 */
+	private static class Entry {
+		/*
+		 * The stub.
+		 */
+		final AACCategory stub;
+
+		/*
+		 * The offset of the category's line.
+		 */
+		final int from;
+
+		/*
+		 * The offset just past its last item.
+		 */
+		final int to;
+
+		/*
+		 * The category with its items, or null if it has not been read.
+		 * Guarded by the entry.
+		 */
+		AACCategory loaded;
+
+		/**
+		 * Creates an entry
+		 * @param stub the stub for the category
+		 * @param from the offset of the category's line
+		 * @param to the offset just past its last item
+		 */
+		Entry(AACCategory stub, int from, int to) {
+			this.stub = stub;
+			this.from = from;
+			this.to = to;
+		} // Entry(AACCategory, int, int)
+	} // class Entry
+
+	/*
+	 * The contents of the mapping file.
+	 */
+	private ByteBuffer buffer;
+
+	/*
+	 * Where each category is, by the location of its image.
+	 */
+	private StringAssociativeArray<Entry> entries;
+
+	/*
+	 * The stubs, in the order of the file.
+	 */
+	private AssociativeArray<String, AACCategory> stubs;
+
+	/*
+	 * The table of image directories that the categories share.
+	 */
+	private PrefixTable directories;
+
+	/**
+	 * Builds the index of a mapping file, with a new table of image
+	 * directories
+	 * @param buffer the contents of the file, which must not change
+	 * while the index is in use
+	 */
+	public CategoryIndex(ByteBuffer buffer) {
+		this(buffer, new PrefixTable());
+	} // CategoryIndex(ByteBuffer)
+
+	/**
+	 * Builds the index of a mapping file whose categories share a table
+	 * of image directories
+	 * @param buffer the contents of the file, which must not change
+	 * while the index is in use
+	 * @param directories the table of image directories
+	 */
+	public CategoryIndex(ByteBuffer buffer, PrefixTable directories) {
+		this.buffer = buffer;
+		this.entries = new StringAssociativeArray<>();
+		this.stubs = new AssociativeArray<>();
+		this.directories = directories;
+		MappingsReader reader = new MappingsReader();
+		String[] header = new String[2];
+		MappingsReader.Handler handler = new MappingsReader.Handler() {
+			public void category(String imageLoc, String name) {
+				header[0] = imageLoc;
+				header[1] = name;
+			} // category(String, String)
+
+			public void item(String imageLoc, String text) {
+				// Only category lines are read.
+			} // item(String, String)
+		};
+
+		int limit = buffer.limit();
+		int from = MappingsReader.nextCategory(buffer, 0, limit);
+		while (from < limit) {
+			int lineEnd = MappingsReader.lineEnd(buffer, from, limit);
+			int to = MappingsReader.nextCategory(buffer, Math.min(lineEnd + 1, limit), limit);
+			reader.parseLine(buffer, from, lineEnd, handler);
+			// As when the whole file is read, a category that appears
+			// again replaces the earlier one but keeps its place.
+			AACCategory stub = new AACCategory(header[1], this.directories);
+			try {
+				this.entries.set(header[0], new Entry(stub, from, to));
+				this.stubs.set(header[0], stub);
+			} catch (NullKeyException e) {
+				// Should not recieve a null key.
+			} // try/catch
+			from = to;
+		} // while
+	} // CategoryIndex(ByteBuffer, PrefixTable)
+
+	/**
+	 * Gets the stubs of the categories, in the order of the file. The
+	 * caller may keep the array but should not change it.
+	 * @return the stubs, by the location of their images
+	 */
+	public AssociativeArray<String, AACCategory> stubs() {
+		return this.stubs;
+	} // stubs()
+
+	/**
+	 * Determines whether a category is the stub for the category at an
+	 * image location
+	 * @param imageLoc the location of the category's image
+	 * @param category the category
+	 * @return true if category is the stub, and false otherwise
+	 */
+	public boolean isStub(String imageLoc, AACCategory category) {
+		Entry entry = this.entries.getOrDefault(imageLoc, null);
+		return entry != null && entry.stub == category;
+	} // isStub(String, AACCategory)
+
+	/**
+	 * Reads a category and its items from the file. The category is
+	 * read only the first time; later calls, from any thread, give the
+	 * same category, so callers should change a clone of it rather than
+	 * the category itself.
+	 * @param imageLoc the location of the category's image
+	 * @return the category, or null if the file has no such category
+	 */
+	public AACCategory load(String imageLoc) {
+		Entry entry = this.entries.getOrDefault(imageLoc, null);
+		if (entry == null) {
+			return null;
+		} // if
+		synchronized (entry) {
+			if (entry.loaded == null) {
+				CategoryBuilder builder = new CategoryBuilder(this.directories);
+				new MappingsReader().parse(this.buffer, entry.from, entry.to, builder);
+				entry.loaded = builder.finish().getOrDefault(imageLoc, null);
+			} // if
+			return entry.loaded;
+		} // synchronized
+	} // load(String)
+}
@@ -0,0 +1,386 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only journal of the items added to a set of mappings
+ * since its mapping file was last written, kept next to the file with
+ * ".journal" added to its name. Recording an edit costs time in
+ * proportion to the edit, not to the vocabulary. Edits are collected
+ * in memory and written and forced to disk in batches, or whenever
+ * sync is called.
+ *
+ * The journal is a text file. Its first line is "#" followed by the
+ * size and modification time of the mapping file it belongs to, and
+ * each later line is an edit: "* loc name" for a new category, or
+ * "+ category loc text" for an item added to a category. A journal
+ * that belongs to some other version of the mapping file (for
+ * instance, one whose file was edited by hand) is not replayed, since
+ * its edits may no longer make sense; if it has any edits, it is kept
+ * next to the journal, with ".bak" added to its name, replacing any
+ * earlier one, and a new journal is started. A last line without a newline is the remains of an
+ * interrupted write and is also discarded. Since fields are separated
+ * by spaces and edits by newlines, image locations may not contain
+ * whitespace and names and texts may not contain line breaks; see
+ * check.
+ *
+ * @author Alex Cyphers
+ *
+ */
+public class EditJournal implements Closeable {
+
+	/*
+	 * What is added to the name of a mapping file to get the name of
+	 * its journal.
+	 */
+	public static final String SUFFIX = ".journal";
+
+	/*
+	 * What is added to the name of a journal to get the name of the
+	 * copy kept when it is not replayed.
+	 */
+	public static final String BACKUP_SUFFIX = ".bak";
+
+	/*
+	 * The number of edits that are collected before they are written
+	 * and forced to disk.
+	 */
+	static final int BATCH_SIZE = 64;
+
+	/**
+	 * Receives the edits in a journal as it is replayed
+	 */
+	public interface Handler {
+		/**
+		 * Called for an edit that added a category
+		 * @param imageLoc the location of the category's image
+		 * @param name the name of the category
+		 */
+		void category(String imageLoc, String name);
+
+		/**
+		 * Called for an edit that added an item to a category
+		 * @param category the location of the category's image
+		 * @param imageLoc the location of the item's image
+		 * @param text the text the item should speak
+		 */
+		void item(String category, String imageLoc, String text);
+	} // interface Handler
+
+	/*
+	 * The mapping file that the journal belongs to.
+	 */
+	private Path base;
+
+	/*
+	 * The journal file, open for appending.
+	 */
+	private FileChannel channel;
+
+	/*
+	 * The edits that have not been written yet.
+	 */
+	private StringBuilder pending;
+
+	/*
+	 * The number of edits in pending.
+	 */
+	private int pendingEdits;
+
+	/*
+	 * The number of edits in the journal, written or not.
+	 */
+	private int edits;
+
+	/**
+	 * Creates a journal that appends to an open file
+	 * @param base the mapping file that the journal belongs to
+	 * @param channel the journal file
+	 * @param edits the number of edits already in the file
+	 */
+	private EditJournal(Path base, FileChannel channel, int edits) {
+		this.base = base;
+		this.channel = channel;
+		this.pending = new StringBuilder();
+		this.edits = edits;
+	} // EditJournal(Path, FileChannel, int)
+
+	/**
+	 * Gets the path of the journal of a mapping file
+	 * @param filename the name of the mapping file
+	 * @return the path of its journal
+	 */
+	public static Path journalPath(String filename) {
+		return Paths.get(filename + SUFFIX);
+	} // journalPath(String)
+
+	/**
+	 * Gets the path of the copy of a journal that was not replayed
+	 * because it belonged to another version of its mapping file
+	 * @param filename the name of the mapping file
+	 * @return the path of the copy
+	 */
+	public static Path backupPath(String filename) {
+		return Paths.get(filename + SUFFIX + BACKUP_SUFFIX);
+	} // backupPath(String)
+
+	/**
+	 * Opens the journal of a mapping file, replaying the edits in it if
+	 * it belongs to the file as it is now, and otherwise keeping a copy
+	 * of it (if it has edits) and starting a new journal
+	 * @param filename the name of the mapping file
+	 * @param handler what to do with each edit in the journal
+	 * @return the journal, ready for new edits
+	 * @throws IOException if the journal cannot be read or written
+	 */
+	public static EditJournal open(String filename, Handler handler) throws IOException {
+		Path base = Paths.get(filename);
+		FileChannel channel = FileChannel.open(journalPath(filename),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			ByteBuffer buffer = readAll(channel);
+			int complete = buffer.limit();
+			while (complete > 0 && buffer.get(complete - 1) != '\n') {
+				complete--;
+			} // while
+			String[] lines = new String(buffer.array(), 0, complete, StandardCharsets.UTF_8)
+					.split("\n");
+
+			EditJournal journal = new EditJournal(base, channel, 0);
+			if (lines[0].equals(stamp(base))) {
+				for (int i = 1; i < lines.length; i++) {
+					journal.replay(lines[i], handler);
+				} // for
+				channel.truncate(complete);
+				channel.position(complete);
+			} else {
+				if (lines.length > 1) {
+					Files.write(backupPath(filename), buffer.array());
+				} // if
+				journal.restart();
+			} // if/else
+			return journal;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		} // try/catch
+	} // open(String, Handler)
+
+	/**
+	 * Reads the whole of a journal file
+	 * @param channel the journal file
+	 * @return its contents
+	 * @throws IOException if it cannot be read
+	 */
+	private static ByteBuffer readAll(FileChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+		while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+			// Keep reading until the buffer is full.
+		} // while
+		return buffer;
+	} // readAll(FileChannel)
+
+	/**
+	 * Gets the line that identifies the version of a mapping file that
+	 * a journal belongs to
+	 * @param base the mapping file
+	 * @return the line, without a newline
+	 * @throws IOException if the file cannot be examined
+	 */
+	static String stamp(Path base) throws IOException {
+		return "# " + Files.size(base) + " " + Files.getLastModifiedTime(base).toMillis();
+	} // stamp(Path)
+
+	/**
+	 * Replays one edit
+	 * @param line the edit
+	 * @param handler what to do with the edit
+	 */
+	private void replay(String line, Handler handler) {
+		if (line.startsWith("* ")) {
+			String[] fields = line.substring(2).split(" ", 2);
+			handler.category(fields[0], (fields.length > 1) ? fields[1] : "");
+			this.edits++;
+		} else if (line.startsWith("+ ")) {
+			String[] fields = line.substring(2).split(" ", 3);
+			if (fields.length > 1) {
+				handler.item(fields[0], fields[1], (fields.length > 2) ? fields[2] : "");
+				this.edits++;
+			} // if
+		} // if/else
+	} // replay(String, Handler)
+
+	/**
+	 * Checks that an image and its name or text can be written as part
+	 * of one line and read back as they were, in the journal or in a
+	 * mapping file, which has the same layout
+	 * @param imageLoc the location of the image
+	 * @param text the name or text that goes with the image
+	 * @throws IllegalArgumentException if the location contains
+	 * whitespace or the text contains a line break
+	 */
+	public static void check(String imageLoc, String text) {
+		for (int i = 0; i < imageLoc.length(); i++) {
+			if (Character.isWhitespace(imageLoc.charAt(i))) {
+				throw new IllegalArgumentException("Image location contains whitespace: "
+						+ imageLoc);
+			} // if
+		} // for
+		if (text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+			throw new IllegalArgumentException("Text of " + imageLoc
+					+ " contains a line break");
+		} // if
+	} // check(String, String)
+
+	/**
+	 * Records that a category was added
+	 * @param imageLoc the location of the category's image
+	 * @param name the name of the category
+	 * @throws IllegalArgumentException if the edit cannot be recorded
+	 * as one line; see check
+	 * @throws IOException if a batch of edits cannot be written
+	 */
+	public void category(String imageLoc, String name) throws IOException {
+		check(imageLoc, name);
+		this.pending.append("* ").append(imageLoc).append(' ').append(name).append('\n');
+		this.added();
+	} // category(String, String)
+
+	/**
+	 * Records that an item was added to a category
+	 * @param category the location of the category's image
+	 * @param imageLoc the location of the item's image
+	 * @param text the text the item should speak
+	 * @throws IllegalArgumentException if the edit cannot be recorded
+	 * as one line; see check
+	 * @throws IOException if a batch of edits cannot be written
+	 */
+	public void item(String category, String imageLoc, String text) throws IOException {
+		check(category, "");
+		check(imageLoc, text);
+		this.pending.append("+ ").append(category).append(' ').append(imageLoc)
+				.append(' ').append(text).append('\n');
+		this.added();
+	} // item(String, String, String)
+
+	/**
+	 * Counts an edit that was just added to pending, and writes the
+	 * batch if it is full
+	 * @throws IOException if the batch cannot be written
+	 */
+	private void added() throws IOException {
+		this.edits++;
+		if (++this.pendingEdits >= BATCH_SIZE) {
+			this.sync();
+		} // if
+	} // added()
+
+	/**
+	 * Writes any edits that have not been written and forces them to
+	 * disk
+	 * @throws IOException if they cannot be written
+	 */
+	public void sync() throws IOException {
+		if (this.pendingEdits == 0) {
+			return;
+		} // if
+		ByteBuffer bytes = StandardCharsets.UTF_8.encode(this.pending.toString());
+		while (bytes.hasRemaining()) {
+			this.channel.write(bytes);
+		} // while
+		this.channel.force(false);
+		this.pending.setLength(0);
+		this.pendingEdits = 0;
+	} // sync()
+
+	/**
+	 * Empties the journal, for instance after its edits have been
+	 * written into the mapping file, so that it belongs to the mapping
+	 * file as it is now
+	 * @throws IOException if the journal cannot be written
+	 */
+	public void restart() throws IOException {
+		this.pending.setLength(0);
+		this.pendingEdits = 0;
+		this.edits = 0;
+		this.channel.truncate(0);
+		this.channel.position(0);
+		this.channel.write(StandardCharsets.UTF_8.encode(stamp(this.base) + "\n"));
+		this.channel.force(true);
+	} // restart()
+
+	/**
+	 * Moves the journal onto the mapping file as it is now, keeping its
+	 * edits, for instance after someone else changed the file. Each
+	 * edit is passed to handler, in order, so that it can be applied to
+	 * the new contents of the file, and is kept in the journal, so that
+	 * loading the file applies it again. The moved journal is written
+	 * to a new file and forced to disk before it replaces the old one,
+	 * so a crash leaves one journal or the other, never neither.
+	 * @param handler what to do with each edit in the journal
+	 * @throws IOException if the journal cannot be read or written
+	 */
+	public void rebase(Handler handler) throws IOException {
+		this.sync();
+		ByteBuffer buffer = readAll(this.channel);
+		String[] lines = new String(buffer.array(), 0, buffer.limit(), StandardCharsets.UTF_8)
+				.split("\n");
+		StringBuilder kept = new StringBuilder(stamp(this.base)).append('\n');
+		this.edits = 0;
+		for (int i = 1; i < lines.length; i++) {
+			int before = this.edits;
+			this.replay(lines[i], handler);
+			if (this.edits > before) {
+				kept.append(lines[i]).append('\n');
+			} // if
+		} // for
+
+		Path journal = journalPath(this.base.toString());
+		Path temp = Files.createTempFile(journal.toAbsolutePath().getParent(),
+				journal.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				ByteBuffer bytes = StandardCharsets.UTF_8.encode(kept.toString());
+				while (bytes.hasRemaining()) {
+					out.write(bytes);
+				} // while
+				out.force(true);
+			} // try
+			Files.move(temp, journal, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		} // try/finally
+		this.channel.close();
+		this.channel = FileChannel.open(journal, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.channel.position(this.channel.size());
+	} // rebase(Handler)
+
+	/**
+	 * Gets the number of edits in the journal
+	 * @return the number of edits
+	 */
+	public int size() {
+		return this.edits;
+	} // size()
+
+	/**
+	 * Writes any edits that have not been written and closes the journal
+	 * @throws IOException if the edits cannot be written
+	 */
+	public void close() throws IOException {
+		try {
+			this.sync();
+		} finally {
+			this.channel.close();
+		} // try/finally
+	} // close()
+}
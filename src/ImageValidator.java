@@ -0,0 +1,250 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Checks that every image a vocabulary refers to exists, can be read
+ * and can be decoded, so that broken images are found when the
+ * mappings are loaded rather than when someone opens their category.
+ * The images are checked in the background by a small, fixed number of
+ * threads, and the result is a summary of the problems found.
+ *
+ * An image is decodable if an image reader recognizes its format and
+ * can read its size; the pixels are not decoded, which would take far
+ * longer and find few more problems.
+ *
+ * @author Alex Cyphers
+ *
+ */
+public class ImageValidator {
+
+	/*
+	 * The number of threads that check images by default. Checking is
+	 * mostly waiting on the disk, so a few threads help even on one
+	 * processor, but many would only compete for the disk.
+	 */
+	static final int DEFAULT_THREADS = 4;
+
+	/**
+	 * What is wrong with an image
+	 */
+	public enum Problem {
+		/** There is no file at the image's location. */
+		MISSING,
+		/** The file cannot be read. */
+		UNREADABLE,
+		/** The file is not an image in a format that can be decoded. */
+		UNDECODABLE
+	} // enum Problem
+
+	/**
+	 * The result of checking the images of a vocabulary
+	 */
+	public static class Report {
+		/*
+		 * The number of distinct images checked.
+		 */
+		private final int checked;
+
+		/*
+		 * The images that have each problem, by Problem.ordinal.
+		 */
+		private final List<List<String>> problems;
+
+		/**
+		 * Creates a report
+		 * @param checked the number of images checked
+		 * @param problems the images that have each problem
+		 */
+		Report(int checked, List<List<String>> problems) {
+			this.checked = checked;
+			this.problems = problems;
+		} // Report(int, List)
+
+		/**
+		 * Gets the number of distinct images checked
+		 * @return the number of images
+		 */
+		public int getChecked() {
+			return this.checked;
+		} // getChecked()
+
+		/**
+		 * Gets the images that have a problem
+		 * @param problem the problem
+		 * @return the locations of those images, in the order of the
+		 * vocabulary
+		 */
+		public List<String> getImages(Problem problem) {
+			return this.problems.get(problem.ordinal());
+		} // getImages(Problem)
+
+		/**
+		 * Determines whether every image is fine
+		 * @return true if no image has a problem, and false otherwise
+		 */
+		public boolean isClean() {
+			for (List<String> images : this.problems) {
+				if (!images.isEmpty()) {
+					return false;
+				} // if
+			} // for-loop
+			return true;
+		} // isClean()
+
+		/**
+		 * Summarizes the report, listing the images with each problem
+		 * @return the summary
+		 */
+		public String toString() {
+			StringBuilder summary = new StringBuilder();
+			summary.append("Checked ").append(this.checked).append(" images");
+			if (this.isClean()) {
+				return summary.append(": no problems found").toString();
+			} // if
+			for (Problem problem : Problem.values()) {
+				List<String> images = this.getImages(problem);
+				if (!images.isEmpty()) {
+					summary.append("\n").append(images.size()).append(' ')
+							.append(problem.name().toLowerCase()).append(':');
+					for (String image : images) {
+						summary.append("\n  ").append(image);
+					} // for-loop
+				} // if
+			} // for-loop
+			return summary.toString();
+		} // toString()
+	} // class Report
+
+	/**
+	 * Checks the images of a vocabulary in the background, with the
+	 * default number of threads
+	 * @param vocabulary the vocabulary
+	 * @return the report, once every image has been checked
+	 */
+	public static CompletableFuture<Report> validate(Vocabulary vocabulary) {
+		return validate(vocabulary, DEFAULT_THREADS);
+	} // validate(Vocabulary)
+
+	/**
+	 * Checks the images of a vocabulary in the background. The images of
+	 * the categories and their items are gathered and checked on a pool
+	 * of threads made for the purpose, which is shut down once the report
+	 * is done. The threads are daemons, so an unfinished check does not
+	 * keep the program running.
+	 * @param vocabulary the vocabulary
+	 * @param threads the number of threads that check images
+	 * @return the report, once every image has been checked
+	 */
+	public static CompletableFuture<Report> validate(Vocabulary vocabulary, int threads) {
+		ExecutorService pool = Executors.newFixedThreadPool(threads, (task) -> {
+			Thread thread = new Thread(task, "ImageValidator");
+			thread.setDaemon(true);
+			return thread;
+		});
+		CompletableFuture<Report> report = CompletableFuture
+				.supplyAsync(() -> images(vocabulary), pool)
+				.thenCompose((images) -> check(images, threads, pool));
+		report.whenComplete((result, failure) -> pool.shutdown());
+		return report;
+	} // validate(Vocabulary, int)
+
+	/**
+	 * Gathers the distinct images of a vocabulary
+	 * @param vocabulary the vocabulary
+	 * @return the images of its categories and their items, in order
+	 */
+	static String[] images(Vocabulary vocabulary) {
+		LinkedHashSet<String> images = new LinkedHashSet<>();
+		for (String category : vocabulary.getImageLocView(null)) {
+			images.add(category);
+			images.addAll(vocabulary.getImageLocView(category));
+		} // for-loop
+		return images.toArray(new String[images.size()]);
+	} // images(Vocabulary)
+
+	/**
+	 * Checks images on a pool, each thread taking the next unchecked
+	 * image until there are none left
+	 * @param images the images
+	 * @param threads the number of threads to use
+	 * @param pool the pool
+	 * @return the report, once every image has been checked
+	 */
+	static CompletableFuture<Report> check(String[] images, int threads, ExecutorService pool) {
+		Problem[] found = new Problem[images.length];
+		AtomicInteger next = new AtomicInteger();
+		CompletableFuture<?>[] workers = new CompletableFuture<?>[threads];
+		for (int t = 0; t < threads; t++) {
+			workers[t] = CompletableFuture.runAsync(() -> {
+				for (int i = next.getAndIncrement(); i < images.length; i = next.getAndIncrement()) {
+					found[i] = check(Paths.get(images[i]));
+				} // for-loop
+			}, pool);
+		} // for-loop
+		return CompletableFuture.allOf(workers).thenApply((done) -> {
+			List<List<String>> problems = new ArrayList<>();
+			for (int p = 0; p < Problem.values().length; p++) {
+				problems.add(new ArrayList<>());
+			} // for-loop
+			for (int i = 0; i < images.length; i++) {
+				if (found[i] != null) {
+					problems.get(found[i].ordinal()).add(images[i]);
+				} // if
+			} // for-loop
+			for (int p = 0; p < problems.size(); p++) {
+				problems.set(p, Collections.unmodifiableList(problems.get(p)));
+			} // for-loop
+			return new Report(images.length, Collections.unmodifiableList(problems));
+		});
+	} // check(String[], int, ExecutorService)
+
+	/**
+	 * Checks one image
+	 * @param image the location of the image
+	 * @return what is wrong with it, or null if nothing is
+	 */
+	static Problem check(Path image) {
+		if (!Files.isRegularFile(image)) {
+			return Problem.MISSING;
+		} // if
+		if (!Files.isReadable(image)) {
+			return Problem.UNREADABLE;
+		} // if
+		try (ImageInputStream in = ImageIO.createImageInputStream(image.toFile())) {
+			if (in == null) {
+				return Problem.UNREADABLE;
+			} // if
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+			if (!readers.hasNext()) {
+				return Problem.UNDECODABLE;
+			} // if
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(in);
+				reader.getWidth(0);
+				reader.getHeight(0);
+			} finally {
+				reader.dispose();
+			} // try/finally
+			return null;
+		} catch (IOException | RuntimeException e) {
+			// The format was recognized, but the image is damaged.
+			return Problem.UNDECODABLE;
+		} // try/catch
+	} // check(Path)
+}
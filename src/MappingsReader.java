@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads AAC mapping files a byte at a time, without regular
+ * expressions or an intermediate String per line. Each line is split
+ * at its first space while it is still bytes, and only the two fields
+ * are decoded from UTF-8. This is safe because the bytes of a space,
+ * '>', and a newline never occur inside a multi-byte UTF-8 character.
+ *
+ * Small files are read into memory with a FileChannel; large ones are
+ * memory-mapped.
+ *
+ * @author Alex Cyphers
+ *
+ */
+public class MappingsReader {
+
+	/*
+	 * Files at least this large are memory-mapped rather than read.
+	 */
+	static final long MAP_THRESHOLD = 1 << 20;
+
+	/**
+	 * Receives the lines of a mapping file as they are parsed
+	 */
+	public interface Handler {
+		/**
+		 * Called for a line that starts a category
+		 * @param imageLoc the location of the category's image
+		 * @param name the name of the category
+		 */
+		void category(String imageLoc, String name);
+
+		/**
+		 * Called for a line (starting with >) that adds an item to
+		 * the most recent category
+		 * @param imageLoc the location of the item's image
+		 * @param text the text the item should speak
+		 */
+		void item(String imageLoc, String text);
+	} // interface Handler
+
+	/*
+	 * The buffer lines are copied into when they cannot be decoded in
+	 * place.
+	 */
+	private byte[] scratch = new byte[256];
+
+	/**
+	 * Reads the contents of a mapping file into a buffer
+	 * @param filename the name of the file
+	 * @return a buffer holding the whole file, positioned at its start
+	 * @throws IOException if the file cannot be read
+	 */
+	public static ByteBuffer load(String filename) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(filename),
+				StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size >= MAP_THRESHOLD) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			} // if
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				// Keep reading until the buffer is full.
+			} // while
+			buffer.flip();
+			return buffer;
+		} // try
+	} // load(String)
+
+	/**
+	 * Parses a whole mapping file
+	 * @param filename the name of the file
+	 * @param handler what to do with each line
+	 * @throws IOException if the file cannot be read
+	 */
+	public static void read(String filename, Handler handler) throws IOException {
+		ByteBuffer buffer = load(filename);
+		new MappingsReader().parse(buffer, 0, buffer.limit(), handler);
+	} // read(String, Handler)
+
+	/**
+	 * Parses the lines in part of a buffer holding a mapping file
+	 * @param buffer the buffer
+	 * @param from the offset of the first byte to parse, which must be
+	 * at the start of a line
+	 * @param to the offset just past the last byte to parse
+	 * @param handler what to do with each line
+	 */
+	public void parse(ByteBuffer buffer, int from, int to, Handler handler) {
+		int start = from;
+		while (start < to) {
+			int end = lineEnd(buffer, start, to);
+			this.parseLine(buffer, start, end, handler);
+			start = end + 1;
+		} // while
+	} // parse(ByteBuffer, int, int, Handler)
+
+	/**
+	 * Finds the end of the line that starts at an offset
+	 * @param buffer the buffer
+	 * @param start the offset of the start of the line
+	 * @param to the offset just past the last byte we may look at
+	 * @return the offset of the newline that ends the line, or to
+	 */
+	public static int lineEnd(ByteBuffer buffer, int start, int to) {
+		int end = start;
+		while (end < to && buffer.get(end) != '\n') {
+			end++;
+		} // while
+		return end;
+	} // lineEnd(ByteBuffer, int, int)
+
+	/**
+	 * Finds the first line at or after an offset that starts a
+	 * category, so that a file can be split into blocks that each hold
+	 * whole categories. If the offset is in the middle of a line, the
+	 * search starts at the next line.
+	 * @param buffer the buffer
+	 * @param offset where to start looking
+	 * @param to the offset just past the last byte we may look at
+	 * @return the offset of the start of the category line, or to if
+	 * there is none
+	 */
+	public static int nextCategory(ByteBuffer buffer, int offset, int to) {
+		int start = offset;
+		if (start > 0 && start < to && buffer.get(start - 1) != '\n') {
+			start = lineEnd(buffer, start, to) + 1;
+		} // if
+		while (start < to) {
+			byte first = buffer.get(start);
+			if (first != '>' && first != '\n' && first != '\r') {
+				return start;
+			} // if
+			start = lineEnd(buffer, start, to) + 1;
+		} // while
+		return to;
+	} // nextCategory(ByteBuffer, int, int)
+
+	/**
+	 * Parses a single line
+	 * @param buffer the buffer
+	 * @param start the offset of the start of the line
+	 * @param end the offset just past its end, not counting the newline
+	 * @param handler what to do with the line
+	 */
+	void parseLine(ByteBuffer buffer, int start, int end, Handler handler) {
+		if (end > start && buffer.get(end - 1) == '\r') {
+			end--;
+		} // if
+		if (start == end) {
+			return;
+		} // if
+
+		boolean isItem = buffer.get(start) == '>';
+		if (isItem) {
+			start++;
+		} // if
+		int space = start;
+		while (space < end && buffer.get(space) != ' ') {
+			space++;
+		} // while
+
+		String imageLoc = this.decode(buffer, start, space);
+		String text = (space < end) ? this.decode(buffer, space + 1, end) : "";
+		if (isItem) {
+			handler.item(imageLoc, text);
+		} else {
+			handler.category(imageLoc, text);
+		} // if/else
+	} // parseLine(ByteBuffer, int, int, Handler)
+
+	/**
+	 * Decodes part of a buffer from UTF-8
+	 * @param buffer the buffer
+	 * @param start the offset of the first byte
+	 * @param end the offset just past the last byte
+	 * @return the decoded string
+	 */
+	String decode(ByteBuffer buffer, int start, int end) {
+		int length = end - start;
+		if (buffer.hasArray()) {
+			return new String(buffer.array(), buffer.arrayOffset() + start, length,
+					StandardCharsets.UTF_8);
+		} // if
+		if (length > this.scratch.length) {
+			this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+		} // if
+		buffer.get(start, this.scratch, 0, length);
+		return new String(this.scratch, 0, length, StandardCharsets.UTF_8);
+	} // decode(ByteBuffer, int, int)
+}
@@ -0,0 +1,329 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import edu.grinnell.csc207.util.AssociativeArray;
+import edu.grinnell.csc207.util.NullKeyException;
+import edu.grinnell.csc207.util.PrefixTable;
+import edu.grinnell.csc207.util.StringAssociativeArray;
+
+/**
+ * Reads and writes binary snapshots of the categories in a mapping
+ * file, so that a vocabulary that has not changed can be loaded
+ * without parsing its text. The snapshot of a file is kept next to
+ * it, with ".snap" added to its name, and records the size,
+ * modification time, and CRC-32 of the text it was made from. As with
+ * the stamp of an EditJournal, a snapshot is used if the text still
+ * has that size and that modification time, so checking it does not
+ * read the text. The time is taken before the text is read, so an
+ * edit made while it is read is never mistaken for what was read.
+ * File system clocks are coarse, though, so an edit that keeps the
+ * size may keep the time as well; where that matters, set the VERIFY
+ * property to "true" (or pass verify to read), and the text is read
+ * and its checksum compared as well.
+ *
+ * A snapshot holds, in order and big-endian:
+ * a header (magic number, version, modification time, size, checksum,
+ * and the numbers of strings, categories, and items);
+ * a table of categories (image location, name, and first item);
+ * a table of items (image location and text);
+ * the offsets of the strings in the string data, plus its end;
+ * and the string data, in UTF-8.
+ * Locations, names, and texts are indices into the strings, and each
+ * distinct string is stored only once.
+ *
+ * @author Alex Cyphers
+ *
+ */
+public class MappingsSnapshot {
+
+	/*
+	 * The first four bytes of every snapshot ("AACS").
+	 */
+	static final int MAGIC = 0x41414353;
+
+	/*
+	 * The version of the format. Snapshots of other versions are
+	 * ignored.
+	 */
+	static final int VERSION = 1;
+
+	/*
+	 * The size of the header, in bytes.
+	 */
+	static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 4 + 4 + 4;
+
+	/*
+	 * What is added to the name of a mapping file to get the name of
+	 * its snapshot.
+	 */
+	public static final String SUFFIX = ".snap";
+
+	/*
+	 * The property that makes read compare the checksum of the text as
+	 * well as its size and modification time; see above.
+	 */
+	public static final String VERIFY = "aac.snapshot.verify";
+
+	/**
+	 * Gets the path of the snapshot of a mapping file
+	 * @param filename the name of the mapping file
+	 * @return the path of its snapshot
+	 */
+	public static Path snapshotPath(String filename) {
+		return Paths.get(filename + SUFFIX);
+	} // snapshotPath(String)
+
+	/**
+	 * Computes the checksum of the contents of a file
+	 * @param contents the contents
+	 * @return the CRC-32 of the contents
+	 */
+	static long checksum(ByteBuffer contents) {
+		CRC32 crc = new CRC32();
+		crc.update(contents.duplicate().position(0));
+		return crc.getValue();
+	} // checksum(ByteBuffer)
+
+	/**
+	 * Writes the snapshot of a mapping file. The snapshot is written
+	 * to a temporary file that then replaces the old snapshot, so a
+	 * reader never sees a partly written one.
+	 * @param filename the name of the mapping file
+	 * @param modified the modification time of the file, in
+	 * milliseconds, taken before contents were read
+	 * @param contents the contents of the file that the categories were
+	 * read from
+	 * @param categories the categories of the file
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public static void write(String filename, long modified, ByteBuffer contents,
+			AssociativeArray<String, AACCategory> categories) throws IOException {
+		// Number the distinct strings and lay out the tables.
+		StringAssociativeArray<Integer> ids = new StringAssociativeArray<>();
+		byte[][] strings = new byte[16][];
+		int[] categoryTable = new int[3 * categories.size()];
+		int[] itemTable = new int[16];
+		int stringCount = 0;
+		int itemCount = 0;
+		int dataSize = 0;
+		for (int c = 0; c < categories.size(); c++) {
+			String loc = categories.keys().get(c);
+			AACCategory category = categories.getOrDefault(loc, null);
+			// Iterating rebuilds each image location without keeping it.
+			List<String> itemLocs = category.getImageLocView();
+			String[] fields = new String[2 + 2 * itemLocs.size()];
+			fields[0] = loc;
+			fields[1] = category.getCategory();
+			int field = 2;
+			for (String itemLoc : itemLocs) {
+				fields[field++] = itemLoc;
+				fields[field++] = category.trySelect(itemLoc);
+			} // for
+
+			int[] fieldIds = new int[fields.length];
+			for (int f = 0; f < fields.length; f++) {
+				Integer id = ids.getOrDefault(fields[f], null);
+				if (id == null) {
+					id = stringCount;
+					if (stringCount == strings.length) {
+						byte[][] bigger = new byte[strings.length * 2][];
+						System.arraycopy(strings, 0, bigger, 0, stringCount);
+						strings = bigger;
+					} // if
+					strings[stringCount++] = fields[f].getBytes(StandardCharsets.UTF_8);
+					dataSize += strings[id].length;
+					try {
+						ids.set(fields[f], id);
+					} catch (NullKeyException e) {
+						// Should not recieve a null key.
+					} // try/catch
+				} // if
+				fieldIds[f] = id;
+			} // for
+
+			categoryTable[3 * c] = fieldIds[0];
+			categoryTable[3 * c + 1] = fieldIds[1];
+			categoryTable[3 * c + 2] = itemCount;
+			if (2 * (itemCount + itemLocs.size()) > itemTable.length) {
+				int[] bigger = new int[Math.max(itemTable.length * 2,
+						2 * (itemCount + itemLocs.size()))];
+				System.arraycopy(itemTable, 0, bigger, 0, 2 * itemCount);
+				itemTable = bigger;
+			} // if
+			System.arraycopy(fieldIds, 2, itemTable, 2 * itemCount, fieldIds.length - 2);
+			itemCount += itemLocs.size();
+		} // for
+
+		// Fill in the snapshot.
+		ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE
+				+ 4 * (categoryTable.length + 2 * itemCount + stringCount + 1)
+				+ dataSize);
+		out.putInt(MAGIC).putInt(VERSION);
+		out.putLong(modified).putLong(contents.limit()).putLong(checksum(contents));
+		out.putInt(stringCount).putInt(categories.size()).putInt(itemCount);
+		out.asIntBuffer().put(categoryTable).put(itemTable, 0, 2 * itemCount);
+		out.position(out.position() + 4 * (categoryTable.length + 2 * itemCount));
+		int offset = 0;
+		for (int s = 0; s < stringCount; s++) {
+			out.putInt(offset);
+			offset += strings[s].length;
+		} // for
+		out.putInt(offset);
+		for (int s = 0; s < stringCount; s++) {
+			out.put(strings[s]);
+		} // for
+		out.flip();
+
+		Path snapshot = snapshotPath(filename);
+		Path temp = Files.createTempFile(snapshot.toAbsolutePath().getParent(),
+				snapshot.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				while (out.hasRemaining()) {
+					channel.write(out);
+				} // while
+			} // try
+			Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		} // try/finally
+	} // write(String, long, ByteBuffer, AssociativeArray)
+
+	/**
+	 * Reads the categories of a mapping file from its snapshot, if it
+	 * has an up-to-date one, with a new table of image directories
+	 * @param filename the name of the mapping file
+	 * @return the categories, in the order they appear in the file, or
+	 * null if there is no snapshot, it is out of date, or it is not a
+	 * snapshot that we can read
+	 * @throws IOException if the mapping file or its snapshot cannot be
+	 * read
+	 */
+	public static AssociativeArray<String, AACCategory> read(String filename)
+			throws IOException {
+		return read(filename, new PrefixTable());
+	} // read(String)
+
+	/**
+	 * Reads the categories of a mapping file from its snapshot, if it
+	 * has an up-to-date one, comparing the checksum of the text only if
+	 * the VERIFY property is "true"
+	 * @param filename the name of the mapping file
+	 * @param directories the table of image directories that the
+	 * categories share
+	 * @return the categories, in the order they appear in the file, or
+	 * null if there is no snapshot, it is out of date, or it is not a
+	 * snapshot that we can read
+	 * @throws IOException if the mapping file or its snapshot cannot be
+	 * read
+	 */
+	public static AssociativeArray<String, AACCategory> read(String filename,
+			PrefixTable directories) throws IOException {
+		return read(filename, directories, Boolean.getBoolean(VERIFY));
+	} // read(String, PrefixTable)
+
+	/**
+	 * Reads the categories of a mapping file from its snapshot, if it
+	 * has an up-to-date one
+	 * @param filename the name of the mapping file
+	 * @param directories the table of image directories that the
+	 * categories share
+	 * @param verify whether to read the text and compare its checksum,
+	 * rather than trusting its size and modification time
+	 * @return the categories, in the order they appear in the file, or
+	 * null if there is no snapshot, it is out of date, or it is not a
+	 * snapshot that we can read
+	 * @throws IOException if the mapping file or its snapshot cannot be
+	 * read
+	 */
+	public static AssociativeArray<String, AACCategory> read(String filename,
+			PrefixTable directories, boolean verify) throws IOException {
+		Path snapshot = snapshotPath(filename);
+		if (!Files.exists(snapshot)) {
+			return null;
+		} // if
+		ByteBuffer in;
+		try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+			in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} // try
+
+		try {
+			if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+				return null;
+			} // if
+			long modified = in.getLong();
+			long size = in.getLong();
+			long checksum = in.getLong();
+			Path text = Paths.get(filename);
+			if (Files.size(text) != size
+					|| Files.getLastModifiedTime(text).toMillis() != modified) {
+				return null;
+			} // if
+			if (verify) {
+				ByteBuffer contents = MappingsReader.load(filename);
+				if (contents.limit() != size || checksum(contents) != checksum) {
+					return null;
+				} // if
+			} // if
+
+			int stringCount = in.getInt();
+			int categoryCount = in.getInt();
+			int itemCount = in.getInt();
+			if (stringCount < 0 || categoryCount < 0 || itemCount < 0
+					|| 4L * (3L * categoryCount + 2L * itemCount + stringCount + 1)
+							> in.remaining()) {
+				return null;
+			} // if
+			int[] categoryTable = new int[3 * categoryCount];
+			int[] itemTable = new int[2 * itemCount];
+			int[] offsets = new int[stringCount + 1];
+			in.asIntBuffer().get(categoryTable).get(itemTable).get(offsets);
+			in.position(in.position()
+					+ 4 * (categoryTable.length + itemTable.length + offsets.length));
+			if (offsets[stringCount] < 0 || offsets[stringCount] > in.remaining()) {
+				return null;
+			} // if
+			byte[] data = new byte[offsets[stringCount]];
+			in.get(data);
+
+			String[] strings = new String[stringCount];
+			for (int s = 0; s < stringCount; s++) {
+				strings[s] = new String(data, offsets[s], offsets[s + 1] - offsets[s],
+						StandardCharsets.UTF_8);
+			} // for
+
+			AssociativeArray<String, AACCategory> categories =
+					new AssociativeArray<>(categoryCount);
+			for (int c = 0; c < categoryCount; c++) {
+				int first = categoryTable[3 * c + 2];
+				int end = (c + 1 < categoryCount) ? categoryTable[3 * c + 5] : itemCount;
+				String[] locs = new String[end - first];
+				String[] texts = new String[end - first];
+				for (int i = first; i < end; i++) {
+					locs[i - first] = strings[itemTable[2 * i]];
+					texts[i - first] = strings[itemTable[2 * i + 1]];
+				} // for
+				AACCategory category = new AACCategory(strings[categoryTable[3 * c + 1]],
+						locs.length, directories);
+				category.addItems(locs, texts);
+				categories.set(strings[categoryTable[3 * c]], category);
+			} // for
+			return categories;
+		} catch (BufferUnderflowException | IndexOutOfBoundsException
+				| NegativeArraySizeException | NullKeyException e) {
+			// A damaged snapshot is treated as a missing one.
+			return null;
+		} // try/catch
+	} // read(String, PrefixTable, boolean)
+}
@@ -0,0 +1,144 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.Executor;
+
+import edu.grinnell.csc207.util.AssociativeArray;
+
+/**
+ * Watches a mapping file and reloads a set of mappings when the file
+ * changes, so that edits made while the AAC is running show up without
+ * a restart. The file is parsed on a background thread, and the new
+ * categories are handed to AACMappings.reload on an executor chosen by
+ * the caller (for instance, the Swing event thread), which applies only
+ * the changes.
+ *
+ * @author Alex Cyphers
+ *
+ */
+public class MappingsWatcher implements Closeable {
+
+	/*
+	 * How long to wait after a change before reading the file, since
+	 * editors often write a file in several steps.
+	 */
+	static final long SETTLE_MILLIS = 100;
+
+	/*
+	 * The mappings to reload.
+	 */
+	private final AACMappings mappings;
+
+	/*
+	 * The mapping file.
+	 */
+	private final Path file;
+
+	/*
+	 * Where reload is called.
+	 */
+	private final Executor executor;
+
+	/*
+	 * What to do after a reload that changed something, or null.
+	 */
+	private final Runnable onChange;
+
+	/*
+	 * The watch service for the file's directory.
+	 */
+	private final WatchService service;
+
+	/*
+	 * The thread that waits for changes.
+	 */
+	private final Thread thread;
+
+	/**
+	 * Starts watching a mapping file
+	 * @param mappings the mappings to reload when the file changes
+	 * @param filename the name of the mapping file
+	 * @param executor where to call mappings.reload and onChange
+	 * @param onChange what to do after a reload that changed the
+	 * mappings (such as redrawing the screen), or null
+	 * @throws IOException if the file's directory cannot be watched
+	 */
+	public MappingsWatcher(AACMappings mappings, String filename, Executor executor,
+			Runnable onChange) throws IOException {
+		this.mappings = mappings;
+		this.file = Paths.get(filename).toAbsolutePath();
+		this.executor = executor;
+		this.onChange = onChange;
+		this.service = FileSystems.getDefault().newWatchService();
+		this.file.getParent().register(this.service, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+		this.thread = new Thread(this::watch, "MappingsWatcher " + filename);
+		this.thread.setDaemon(true);
+		this.thread.start();
+	} // MappingsWatcher(AACMappings, String, Executor, Runnable)
+
+	/**
+	 * Waits for changes to the file until the watcher is closed
+	 */
+	private void watch() {
+		try {
+			while (true) {
+				WatchKey key = this.service.take();
+				boolean changed = false;
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW
+							|| this.file.getFileName().equals(event.context())) {
+						changed = true;
+					} // if
+				} // for-loop
+				key.reset();
+				if (changed) {
+					Thread.sleep(SETTLE_MILLIS);
+					for (WatchKey more = this.service.poll(); more != null;
+							more = this.service.poll()) {
+						more.pollEvents();
+						more.reset();
+					} // for-loop
+					this.reload();
+				} // if
+			} // while
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// The watcher was closed.
+		} // try/catch
+	} // watch()
+
+	/**
+	 * Reads the file and passes its categories to the mappings
+	 */
+	void reload() {
+		AssociativeArray<String, AACCategory> fresh;
+		try {
+			fresh = CategoryBuilder.build(MappingsReader.load(this.file.toString()));
+		} catch (IOException e) {
+			// The file may be gone for a moment while it is replaced; its
+			// return is another change.
+			return;
+		} // try/catch
+		this.executor.execute(() -> {
+			if (this.mappings.reload(fresh) > 0 && this.onChange != null) {
+				this.onChange.run();
+			} // if
+		});
+	} // reload()
+
+	/**
+	 * Stops watching the file
+	 * @throws IOException if the watch service cannot be closed
+	 */
+	public void close() throws IOException {
+		this.service.close();
+		this.thread.interrupt();
+	} // close()
+}
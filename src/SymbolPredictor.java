@@ -0,0 +1,399 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.grinnell.csc207.util.NullKeyException;
+import edu.grinnell.csc207.util.StringAssociativeArray;
+
+/**
+ * Predicts which symbols a user is likely to select next from the
+ * symbols they have selected so far. It counts, for each symbol, the
+ * symbols selected right after it (bigrams), as well as how often each
+ * symbol is selected at all (unigrams), and predicts from the counts
+ * for the last symbol selected, backed off to the overall counts.
+ *
+ * Memory is bounded: each symbol keeps counts for at most SLOTS
+ * followers, replacing the least counted when a new one arrives (as in
+ * the Space-Saving algorithm), and at most MAX_CONTEXTS symbols keep
+ * counts at all, with the one least recently used given up for a new
+ * one. Counts decay, so that recent habits outweigh old ones: each
+ * selection counts a little more than the one before, which has the
+ * same effect as shrinking all of the old counts. Recording a
+ * selection and predicting both take constant time.
+ *
+ * Symbols are identified by the image location of their category and
+ * their own image location, which may contain any character; see key.
+ *
+ * @author Alex Cyphers
+ *
+ */
+public class SymbolPredictor {
+
+	/*
+	 * The number of followers counted for each symbol.
+	 */
+	static final int SLOTS = 8;
+
+	/*
+	 * The number of symbols that keep counts of their followers.
+	 */
+	static final int MAX_CONTEXTS = 4096;
+
+	/*
+	 * How much more each selection counts than the one before it. With
+	 * this rate, a selection counts half as much as one made about 700
+	 * selections later.
+	 */
+	static final double GROWTH = 1.001;
+
+	/*
+	 * The weight at which all counts are scaled back down, so that they
+	 * stay well within the precision of a double.
+	 */
+	static final double RESCALE_AT = 1e12;
+
+	/*
+	 * How much the overall counts count, relative to the counts for the
+	 * last symbol.
+	 */
+	static final double BACKOFF = 0.25;
+
+	/**
+	 * A symbol that is likely to be selected next
+	 */
+	public static class Prediction {
+		/*
+		 * The image location of the symbol's category.
+		 */
+		private final String category;
+
+		/*
+		 * The image location of the symbol.
+		 */
+		private final String imageLoc;
+
+		/*
+		 * How likely the symbol is, relative to the other predictions.
+		 */
+		private final double weight;
+
+		/**
+		 * Creates a prediction
+		 * @param category the image location of the symbol's category
+		 * @param imageLoc the image location of the symbol
+		 * @param weight how likely the symbol is
+		 */
+		Prediction(String category, String imageLoc, double weight) {
+			this.category = category;
+			this.imageLoc = imageLoc;
+			this.weight = weight;
+		} // Prediction(String, String, double)
+
+		/**
+		 * Gets the image location of the symbol's category
+		 * @return the image location
+		 */
+		public String getCategory() {
+			return this.category;
+		} // getCategory()
+
+		/**
+		 * Gets the image location of the symbol
+		 * @return the image location
+		 */
+		public String getImageLoc() {
+			return this.imageLoc;
+		} // getImageLoc()
+
+		/**
+		 * Gets how likely the symbol is, relative to the other
+		 * predictions
+		 * @return the weight
+		 */
+		public double getWeight() {
+			return this.weight;
+		} // getWeight()
+
+		/**
+		 * Describes the prediction
+		 * @return the category and image location
+		 */
+		public String toString() {
+			return this.category + " " + this.imageLoc;
+		} // toString()
+	} // class Prediction
+
+	/**
+	 * The counts of the symbols that followed one symbol (or of all
+	 * symbols)
+	 */
+	private static class Counts {
+		/*
+		 * The keys of the symbols counted.
+		 */
+		final String[] keys = new String[SLOTS];
+
+		/*
+		 * Their counts.
+		 */
+		final double[] weights = new double[SLOTS];
+
+		/*
+		 * The sum of the counts.
+		 */
+		double total;
+
+		/*
+		 * Whether the counts have been used since the clock hand last
+		 * passed them.
+		 */
+		boolean recent;
+
+		/**
+		 * Copies the counts
+		 * @return the copy
+		 */
+		Counts copy() {
+			Counts copy = new Counts();
+			System.arraycopy(this.keys, 0, copy.keys, 0, SLOTS);
+			System.arraycopy(this.weights, 0, copy.weights, 0, SLOTS);
+			copy.total = this.total;
+			copy.recent = this.recent;
+			return copy;
+		} // copy()
+
+		/**
+		 * Counts a symbol
+		 * @param key the symbol's key
+		 * @param weight how much it counts
+		 */
+		void add(String key, double weight) {
+			int min = 0;
+			for (int i = 0; i < SLOTS; i++) {
+				if (key.equals(this.keys[i]) || this.keys[i] == null) {
+					this.keys[i] = key;
+					this.weights[i] += weight;
+					this.total += weight;
+					return;
+				} // if
+				if (this.weights[i] < this.weights[min]) {
+					min = i;
+				} // if
+			} // for-loop
+			// Replace the least counted symbol, which may have been
+			// counted as many times as its count.
+			this.keys[min] = key;
+			this.weights[min] += weight;
+			this.total += weight;
+		} // add(String, double)
+
+		/**
+		 * Scales the counts down
+		 * @param factor what to multiply them by
+		 */
+		void scale(double factor) {
+			for (int i = 0; i < SLOTS; i++) {
+				this.weights[i] *= factor;
+			} // for-loop
+			this.total *= factor;
+		} // scale(double)
+	} // class Counts
+
+	/*
+	 * The counts of the symbols that followed each symbol, by its key.
+	 */
+	private StringAssociativeArray<Counts> contexts;
+
+	/*
+	 * The keys of the symbols in contexts, in a ring that the clock
+	 * hand sweeps to find one to give up.
+	 */
+	private String[] ring;
+
+	/*
+	 * The position of the clock hand in the ring.
+	 */
+	private int hand;
+
+	/*
+	 * The counts of all symbols.
+	 */
+	private Counts overall;
+
+	/*
+	 * The key of the last symbol selected, or null if there is none.
+	 */
+	private String last;
+
+	/*
+	 * How much the next selection counts.
+	 */
+	private double weight;
+
+	/**
+	 * Creates a predictor that has not seen any selections
+	 */
+	public SymbolPredictor() {
+		this.contexts = new StringAssociativeArray<>(MAX_CONTEXTS);
+		this.ring = new String[MAX_CONTEXTS];
+		this.overall = new Counts();
+		this.weight = 1;
+	} // SymbolPredictor()
+
+	/**
+	 * Creates a copy of the predictor, which learns from its own
+	 * selections from then on without affecting this one
+	 * @return the copy
+	 */
+	public synchronized SymbolPredictor clone() {
+		SymbolPredictor copy = new SymbolPredictor();
+		copy.contexts = this.contexts.clone();
+		for (String key : this.contexts.keys()) {
+			try {
+				copy.contexts.set(key, this.contexts.getOrDefault(key, null).copy());
+			} catch (NullKeyException e) {
+				// Keys in the contexts are never null.
+			} // try/catch
+		} // for-loop
+		copy.ring = this.ring.clone();
+		copy.hand = this.hand;
+		copy.overall = this.overall.copy();
+		copy.last = this.last;
+		copy.weight = this.weight;
+		return copy;
+	} // clone()
+
+	/**
+	 * Records that a symbol was selected
+	 * @param category the image location of the symbol's category
+	 * @param imageLoc the image location of the symbol
+	 */
+	public synchronized void observe(String category, String imageLoc) {
+		String key = key(category, imageLoc);
+		if (this.last != null) {
+			this.context(this.last).add(key, this.weight);
+		} // if
+		this.overall.add(key, this.weight);
+		this.last = key;
+
+		this.weight *= GROWTH;
+		if (this.weight >= RESCALE_AT) {
+			double factor = 1 / this.weight;
+			this.contexts.forEach((k, counts) -> counts.scale(factor));
+			this.overall.scale(factor);
+			this.weight = 1;
+		} // if
+	} // observe(String, String)
+
+	/**
+	 * Forgets the last symbol selected, so that the next selection is
+	 * not counted as following it (for instance, at the start of a new
+	 * sentence)
+	 */
+	public synchronized void breakSequence() {
+		this.last = null;
+	} // breakSequence()
+
+	/**
+	 * Predicts the symbols most likely to be selected next
+	 * @param limit the largest number of predictions to make
+	 * @return the predictions, most likely first
+	 */
+	public synchronized List<Prediction> predict(int limit) {
+		String[] keys = new String[2 * SLOTS];
+		double[] weights = new double[2 * SLOTS];
+		int count = 0;
+		Counts context = (this.last == null) ? null : this.contexts.getOrDefault(this.last, null);
+		if (context != null && context.total > 0) {
+			context.recent = true;
+			for (int i = 0; i < SLOTS && context.keys[i] != null; i++) {
+				keys[count] = context.keys[i];
+				weights[count++] = context.weights[i] / context.total;
+			} // for-loop
+		} // if
+		if (this.overall.total > 0) {
+			for (int i = 0; i < SLOTS && this.overall.keys[i] != null; i++) {
+				double w = BACKOFF * this.overall.weights[i] / this.overall.total;
+				int j = 0;
+				while (j < count && !keys[j].equals(this.overall.keys[i])) {
+					j++;
+				} // while
+				if (j == count) {
+					keys[count++] = this.overall.keys[i];
+				} // if
+				weights[j] += w;
+			} // for-loop
+		} // if
+
+		ArrayList<Prediction> predictions = new ArrayList<>();
+		boolean[] taken = new boolean[count];
+		while (predictions.size() < limit) {
+			int best = -1;
+			for (int i = 0; i < count; i++) {
+				if (!taken[i] && (best < 0 || weights[i] > weights[best])) {
+					best = i;
+				} // if
+			} // for-loop
+			if (best < 0) {
+				break;
+			} // if
+			taken[best] = true;
+			int colon = keys[best].indexOf(':');
+			int end = colon + 1 + Integer.parseInt(keys[best], 0, colon, 10);
+			predictions.add(new Prediction(keys[best].substring(colon + 1, end),
+					keys[best].substring(end), weights[best]));
+		} // while
+		return predictions;
+	} // predict(int)
+
+	/**
+	 * Gets the key of a symbol: the length of its category's image
+	 * location, a colon, that location, and then its own image location.
+	 * Since the length says where the category ends, the key can be
+	 * split again whatever characters the locations contain.
+	 * @param category the image location of the symbol's category
+	 * @param imageLoc the image location of the symbol
+	 * @return the key
+	 */
+	static String key(String category, String imageLoc) {
+		return category.length() + ":" + category + imageLoc;
+	} // key(String, String)
+
+	/**
+	 * Gets the counts of the followers of a symbol, making room for them
+	 * if there are none
+	 * @param key the symbol's key
+	 * @return the counts
+	 */
+	private Counts context(String key) {
+		Counts counts = this.contexts.getOrDefault(key, null);
+		if (counts != null) {
+			counts.recent = true;
+			return counts;
+		} // if
+		if (this.contexts.size() == MAX_CONTEXTS) {
+			// Give up the first symbol the hand finds that has not been
+			// used since it last passed.
+			while (true) {
+				Counts victim = this.contexts.getOrDefault(this.ring[this.hand], null);
+				if (!victim.recent) {
+					this.contexts.remove(this.ring[this.hand]);
+					break;
+				} // if
+				victim.recent = false;
+				this.hand = (this.hand + 1) % MAX_CONTEXTS;
+			} // while
+		} else {
+			this.hand = this.contexts.size();
+		} // if/else
+		counts = new Counts();
+		counts.recent = true;
+		try {
+			this.contexts.set(key, counts);
+		} catch (NullKeyException e) {
+			// Should not recieve a null key.
+		} // try/catch
+		this.ring[this.hand] = key;
+		this.hand = (this.hand + 1) % MAX_CONTEXTS;
+		return counts;
+	} // context(String)
+}
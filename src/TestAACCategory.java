@@ -5,6 +5,9 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
 
 
@@ -156,4 +159,111 @@ public class TestAACCategory {
     assertTrue(containsString(abc, "imageC"), "imageLocs contains imageC");
   } // testImageLocs()
 
+  /**
+   * Can a category hold many items and still find each one, including
+   * after some are replaced?
+   */
+  @Test
+  void testManyItems() {
+    AACCategory category = new AACCategory("testManyItems");
+    for (int i = 0; i < 1000; i++) {
+      category.addItem("image" + i, "text" + i);
+    } // for
+    for (int i = 0; i < 1000; i += 3) {
+      category.addItem("image" + i, "new text" + i);
+    } // for
+
+    String[] locs = category.getImageLocs();
+    assertEquals(1000, locs.length, "1000 distinct images");
+    for (int i = 0; i < 1000; i++) {
+      assertEquals("image" + i, locs[i], "images stay in insertion order");
+      String expected = (i % 3 == 0) ? "new text" + i : "text" + i;
+      assertEquals(expected, category.select("image" + i));
+    } // for
+    assertFalse(category.hasImage("image1000"), "No extra image");
+  } // testManyItems()
+
+  /**
+   * Make sure that image locations, which are stored with their
+   * directories shared, come back as they went in.
+   */
+  @Test
+  void testSharedDirectories() {
+    String[] locs = {"img/food/apple.png", "img/food/banana.png", "img/clothes/hat.png",
+        "nodirectory.png", "img/\u00e9moji/\u00e7af\u00e9.png",
+        "img/\u65e5\u672c/\u5bff\u53f8.png", "img/food/",
+        "/root.png", "img/food/banana.png.bak"};
+    AACCategory category = new AACCategory("testSharedDirectories");
+    for (int i = 0; i < locs.length; i++) {
+      category.addItem(locs[i], "item" + i);
+    } // for
+    assertArrayEquals(locs, category.getImageLocs(), "Locations survive");
+    assertEquals(locs.length, category.getImageLocView().size(), "View size");
+    for (int i = 0; i < locs.length; i++) {
+      assertEquals("item" + i, category.select(locs[i]), "Select " + locs[i]);
+      assertEquals(locs[i], category.getImageLocView().get(i), "View " + i);
+    } // for
+    assertFalse(category.hasImage("img/food/banana.pn"), "Shorter");
+    assertFalse(category.hasImage("img/food/banana.pngg"), "Longer");
+    assertFalse(category.hasImage("img/fooe/banana.png"), "Other directory");
+    assertFalse(category.hasImage("img/food"), "Directory without slash");
+
+    StringBuilder found = new StringBuilder();
+    category.forEachImageLocWithPrefix("img/food/ban", (loc) -> found.append(loc).append(';'));
+    assertEquals("img/food/banana.png;img/food/banana.png.bak;", found.toString(),
+        "Prefix within the name");
+    found.setLength(0);
+    category.forEachImageLocWithPrefix("img/", (loc) -> found.append('x'));
+    assertEquals(7, found.length(), "Prefix of the directory");
+
+    AACCategory copy = category.clone();
+    copy.addItem("img/food/cherry.png", "cherry");
+    assertEquals("cherry", copy.select("img/food/cherry.png"), "Copy gets new items");
+    assertFalse(category.hasImage("img/food/cherry.png"), "Original unchanged");
+  } // testSharedDirectories()
+
+  /**
+   * Do copies share their items but not their changes, whether an item
+   * is new, replaces an item the copy shares, or replaces an item added
+   * since, and do the items stay in order as the additions are merged?
+   */
+  @Test
+  void testCopies() {
+    AACCategory original = new AACCategory("testCopies");
+    original.addItem("img/a.png", "apple");
+    original.addItem("img/b.png", "banana");
+    AACCategory copy = original.clone();
+    copy.addItem("img/c.png", "cherry");
+    copy.addItem("img/c.png", "cranberry");
+    copy.addItem("img/a.png", "avocado");
+    List<String> view = copy.getImageLocView();
+
+    assertArrayEquals(new String[] {"img/a.png", "img/b.png"}, original.getImageLocs(),
+        "Original keeps its items");
+    assertEquals("apple", original.select("img/a.png"), "Original keeps its text");
+    assertFalse(original.hasImage("img/c.png"), "Original has no addition");
+    assertArrayEquals(new String[] {"img/a.png", "img/b.png", "img/c.png"},
+        copy.getImageLocs(), "Additions come last");
+    assertEquals(List.of("img/a.png", "img/b.png", "img/c.png"), view, "View of the copy");
+    assertEquals("cranberry", copy.select("img/c.png"), "Addition replaced");
+    assertEquals("avocado", copy.select("img/a.png"), "Shared item replaced");
+    StringBuilder found = new StringBuilder();
+    copy.forEachImageLocWithPrefix("img/c", (loc) -> found.append(loc));
+    assertEquals("img/c.png", found.toString(), "Additions found by prefix");
+
+    AACCategory last = copy;
+    List<AACCategory> versions = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      versions.add(last);
+      last = last.clone();
+      last.addItem("img/d" + i + ".png", "d" + i);
+    } // for
+    String[] locs = last.getImageLocs();
+    assertEquals(203, locs.length, "Every item kept through the merges");
+    for (int i = 0; i < 200; i++) {
+      assertEquals("img/d" + i + ".png", locs[3 + i], "Still in order");
+      assertEquals("d" + i, last.select(locs[3 + i]), "Text of " + locs[3 + i]);
+      assertEquals(3 + i, versions.get(i).getImageLocView().size(), "Old copy unchanged");
+    } // for
+  } // testCopies()
 } // class TestAACCategory
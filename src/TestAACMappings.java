@@ -1,14 +1,35 @@
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeAll;
 
+import javax.imageio.ImageIO;
+
+import java.awt.image.BufferedImage;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import edu.grinnell.csc207.util.AssociativeArray;
+import edu.grinnell.csc207.util.PrefixTable;
 
 import java.io.IOException;
 import java.io.File;
@@ -463,4 +484,1083 @@ public class TestAACMappings {
     assertEquals(4, mappings.getImageLocs().length, "4 toppings");
     assertEquals("pepperoni", mappings.select("p"), "selecting topping p");
   } // testAdd()
+
+  /**
+   * Does the image location view agree with getImageLocs, stay as it
+   * was when the mappings change, and show the changes when asked for
+   * again?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testImageLocView() throws IOException {
+    AACMappings mappings = new AACMappings(configFile(TEST_CONFIG));
+
+    assertArrayEquals(mappings.getImageLocs(),
+        mappings.getImageLocView().toArray(new String[0]),
+        "top-level view matches top-level locations");
+
+    assertEquals("", mappings.select("one"), "selecting one");
+    List<String> fruits = mappings.getImageLocView();
+    assertArrayEquals(new String[] {"a", "b", "c"},
+        fruits.toArray(new String[0]), "view of the fruits");
+    mappings.addItem("d", "date");
+    assertEquals(3, fruits.size(), "old view is unchanged");
+    fruits = mappings.getImageLocView();
+    assertEquals(4, fruits.size(), "new view sees the new fruit");
+    assertEquals("d", fruits.get(3), "new fruit comes last");
+    assertTrue(fruits.contains("b"), "view contains b");
+  } // testImageLocView()
+
+  /**
+   * Does trySelect report misses with null and otherwise behave like
+   * select?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testTrySelect() throws IOException {
+    AACMappings mappings = new AACMappings(configFile(TEST_CONFIG));
+
+    assertNull(mappings.trySelect("a"), "a is not a category");
+    assertEquals("", mappings.getCategory(), "still at the top level");
+    assertEquals("", mappings.trySelect("two"), "two is a category");
+    assertEquals("clothes", mappings.getCategory(), "selected two");
+    assertEquals("dress", mappings.trySelect("d"), "d is for dress");
+    assertNull(mappings.trySelect("a"), "a is not a type of clothes");
+    assertNull(mappings.trySelect(null), "null is nothing");
+    assertEquals("clothes", mappings.getCategory(), "still in two");
+  } // testTrySelect()
+
+  /**
+   * Do snapshots keep the state at the time they were taken, and can
+   * we restore them to undo changes?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testSnapshotRestore() throws IOException {
+    AACMappings mappings = new AACMappings(configFile(TEST_CONFIG));
+    AACMappings before = mappings.snapshot();
+
+    mappings.addItem("four", "toys");
+    assertEquals("", mappings.select("one"), "selecting one");
+    mappings.addItem("d", "date");
+    mappings.addItem("a", "apricot");
+    assertEquals("apricot", mappings.select("a"), "a is now for apricot");
+
+    assertEquals(3, before.getImageLocs().length,
+        "snapshot has three categories");
+    assertEquals("", before.select("one"), "selecting one in the snapshot");
+    assertEquals("apple", before.select("a"), "snapshot still has apple");
+    assertNull(before.trySelect("d"), "snapshot has no date");
+
+    mappings.restore(before);
+    assertEquals("fruit", mappings.getCategory(), "still in category one");
+    assertEquals("apple", mappings.select("a"), "a is for apple again");
+    assertNull(mappings.trySelect("d"), "date is gone");
+    mappings.reset();
+    assertEquals(3, mappings.getImageLocs().length, "toys are gone");
+  } // testSnapshotRestore()
+
+  /**
+   * Does a snapshot learn from its own selections without changing the
+   * predictions of the mappings it was taken from?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testSnapshotPredictor() throws IOException {
+    AACMappings mappings = new AACMappings(configFile(TEST_CONFIG));
+    mappings.select("one");
+    mappings.select("a");
+    mappings.select("b");
+    AACMappings snapshot = mappings.snapshot();
+    assertEquals("b", snapshot.predict(1).get(0).getImageLoc(),
+        "snapshot starts with what the mappings learned");
+
+    snapshot.select("two");
+    for (int i = 0; i < 5; i++) {
+      snapshot.select("e");
+    } // for
+    assertEquals("e", snapshot.predict(1).get(0).getImageLoc(), "snapshot learns");
+    for (SymbolPredictor.Prediction prediction : mappings.predict(10)) {
+      assertNotEquals("e", prediction.getImageLoc(), "mappings did not learn");
+    } // for
+  } // testSnapshotPredictor()
+
+  /**
+   * Does restoring leave the mapping file and its journal alone until
+   * the mappings are compacted?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testRestoreWithJournal() throws IOException {
+    String filename = configFile(TEST_CONFIG);
+    EditJournal.journalPath(filename).toFile().deleteOnExit();
+    AACMappings mappings = AACMappings.load(filename);
+    AACMappings before = mappings.snapshot();
+    mappings.addItem("one", "d", "date");
+    mappings.save();
+    String contents = Files.readString(Path.of(filename));
+
+    mappings.restore(before);
+    assertEquals(contents, Files.readString(Path.of(filename)), "file untouched");
+    AACMappings loaded = AACMappings.load(filename);
+    loaded.select("one");
+    assertEquals("date", loaded.trySelect("d"), "not saved yet");
+    loaded.close();
+
+    mappings.compact();
+    loaded = AACMappings.load(filename);
+    loaded.select("one");
+    assertNull(loaded.trySelect("d"), "saved once compacted");
+    loaded.close();
+    mappings.close();
+  } // testRestoreWithJournal()
+
+  /**
+   * Can we find image locations by prefix across categories, with and
+   * without the prefix index?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testImageLocsWithPrefix() throws IOException {
+    AACMappings mappings = new AACMappings(configFile(
+        "img/food/plate.png food\n"
+        + ">img/food/apple.png apple\n"
+        + ">img/food/pizza.png pizza\n"
+        + ">img/misc/fork.png fork\n"
+        + "img/clothing/hanger.png clothing\n"
+        + ">img/clothing/cap.png cap\n"
+        + ">img/food/bib.png bib\n"));
+
+    for (int pass = 0; pass < 2; pass++) {
+      List<String> food = mappings.getImageLocsWithPrefix("img/food/");
+      assertEquals(4, food.size(), "four food images");
+      assertEquals("img/food/plate.png", food.get(0), "category first");
+      assertTrue(food.contains("img/food/apple.png"), "apple is food");
+      assertTrue(food.contains("img/food/pizza.png"), "pizza is food");
+      assertTrue(food.contains("img/food/bib.png"), "bib is under food");
+      assertEquals(7, mappings.getImageLocsWithPrefix("").size(),
+          "everything has the empty prefix");
+      assertEquals(0, mappings.getImageLocsWithPrefix("img/toys").size(),
+          "no toys");
+      mappings.enablePrefixIndex();
+    } // for
+
+    assertEquals("", mappings.select("img/food/plate.png"), "select food");
+    mappings.addItem("img/food/fries.png", "fries");
+    assertEquals(5, mappings.getImageLocsWithPrefix("img/food/").size(),
+        "the index sees new items");
+  } // testImageLocsWithPrefix()
+
+  /**
+   * Do we read files with Windows line endings, blank lines, and
+   * non-ASCII text?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testLineEndingsAndUnicode() throws IOException {
+    Path file = Files.createTempFile(tempDir, "", "");
+    file.toFile().deleteOnExit();
+    Files.writeString(file, "img/food/plate.png comida\r\n"
+        + "\r\n"
+        + ">img/food/cafe.png caf\u00e9 con leche\r\n"
+        + ">img/food/pi.png \u03c0\r\n"
+        + "img/misc/bare.png\n", StandardCharsets.UTF_8);
+    AACMappings mappings = new AACMappings(file.toString());
+    assertTrue(containsString(mappings.getImageLocs(), "img/misc/bare.png"),
+        "category without name");
+    assertEquals("", mappings.select("img/food/plate.png"), "select food");
+    assertEquals("caf\u00e9 con leche", mappings.select("img/food/cafe.png"),
+        "spaces and accents survive");
+    assertEquals("\u03c0", mappings.select("img/food/pi.png"), "pi");
+    assertEquals(2, mappings.getImageLocs().length, "no empty items");
+  } // testLineEndingsAndUnicode()
+
+  /**
+   * Does building the categories in parallel give the same categories,
+   * in the same order, as reading the file from start to end?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testParallelLoad() throws IOException {
+    StringBuilder contents = new StringBuilder(">img/stray.png ignored\n");
+    for (int c = 0; c < 300; c++) {
+      contents.append("img/cat" + (c % 250) + ".png category " + c + "\n");
+      for (int i = 0; i < c % 7; i++) {
+        contents.append(">img/cat" + c + "/item" + i + ".png item " + i + "\n");
+      } // for
+      contents.append((c % 5 == 0) ? "\r\n" : "");
+    } // for
+    String filename = configFile(contents.toString());
+    ByteBuffer buffer = MappingsReader.load(filename);
+
+    CategoryBuilder builder = new CategoryBuilder();
+    new MappingsReader().parse(buffer, 0, buffer.limit(), builder);
+    AssociativeArray<String, AACCategory> expected = builder.finish();
+    AssociativeArray<String, AACCategory> actual =
+        CategoryBuilder.build(buffer, 64);
+
+    assertEquals(250, actual.size(), "duplicate categories are merged");
+    assertEquals(expected.keys(), actual.keys(), "same order");
+    expected.forEach((loc, category) -> {
+      AACCategory other = actual.getOrDefault(loc, null);
+      assertEquals(category.getCategory(), other.getCategory(), loc);
+      assertArrayEquals(category.getImageLocs(), other.getImageLocs(), loc);
+    });
+
+    AACMappings sequential = new AACMappings(filename, false);
+    AACMappings parallel = new AACMappings(filename, true);
+    assertArrayEquals(sequential.getImageLocs(), parallel.getImageLocs(),
+        "same categories");
+  } // testParallelLoad()
+
+  /**
+   * Does AACMappings.load write a snapshot, use it while the text is
+   * unchanged, and ignore it once the text changes or it is damaged?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testSnapshot() throws IOException {
+    String filename = configFile(
+        "img/food/plate.png food\n"
+        + ">img/food/apple.png apple\n"
+        + ">img/food/pie.png apple pie\n"
+        + "img/clothing/hanger.png clothing\n"
+        + ">img/clothing/cap.png apple\n");
+    Path snapshot = MappingsSnapshot.snapshotPath(filename);
+    snapshot.toFile().deleteOnExit();
+
+    AACMappings parsed = AACMappings.load(filename);
+    assertTrue(Files.exists(snapshot), "snapshot written");
+    AACMappings loaded = AACMappings.load(filename);
+    assertNotNull(MappingsSnapshot.read(filename), "snapshot is fresh");
+    assertArrayEquals(parsed.getImageLocs(), loaded.getImageLocs(),
+        "same categories");
+    assertEquals("", loaded.select("img/food/plate.png"), "select food");
+    assertArrayEquals(new String[] {"img/food/apple.png", "img/food/pie.png"},
+        loaded.getImageLocs(), "same items");
+    assertEquals("apple pie", loaded.select("img/food/pie.png"), "same text");
+
+    FileTime time = Files.getLastModifiedTime(Path.of(filename));
+    String text = Files.readString(Path.of(filename));
+    Files.writeString(Path.of(filename), text.replace("apple pie", "apple pot"));
+    Files.setLastModifiedTime(Path.of(filename), time);
+    assertNotNull(MappingsSnapshot.read(filename), "same size and time are trusted");
+    assertNull(MappingsSnapshot.read(filename, new PrefixTable(), true),
+        "full check finds new text");
+    Files.setLastModifiedTime(Path.of(filename), FileTime.fromMillis(time.toMillis() + 2000));
+    assertNull(MappingsSnapshot.read(filename), "same size, new time");
+
+    Files.writeString(Path.of(filename), "img/toys/ball.png toys\n");
+    assertNull(MappingsSnapshot.read(filename), "snapshot is stale");
+    assertArrayEquals(new String[] {"img/toys/ball.png"},
+        AACMappings.load(filename).getImageLocs(), "new text is used");
+    assertNotNull(MappingsSnapshot.read(filename), "snapshot rewritten");
+
+    Files.write(snapshot, new byte[] {'A', 'A', 'C', 'S', 0, 0, 0, 1, 7});
+    assertNull(MappingsSnapshot.read(filename), "damaged snapshot");
+    assertArrayEquals(new String[] {"img/toys/ball.png"},
+        AACMappings.load(filename).getImageLocs(), "text is used");
+
+    // A string table that claims more data than the snapshot holds.
+    ByteBuffer damaged = ByteBuffer.wrap(Files.readAllBytes(snapshot));
+    int strings = damaged.getInt(MappingsSnapshot.HEADER_SIZE - 12);
+    int tables = 4 * (3 * damaged.getInt(MappingsSnapshot.HEADER_SIZE - 8)
+        + 2 * damaged.getInt(MappingsSnapshot.HEADER_SIZE - 4));
+    damaged.putInt(MappingsSnapshot.HEADER_SIZE + tables + 4 * strings, Integer.MAX_VALUE - 8);
+    Files.write(snapshot, damaged.array());
+    assertNull(MappingsSnapshot.read(filename), "string data past the end");
+    assertArrayEquals(new String[] {"img/toys/ball.png"},
+        AACMappings.load(filename).getImageLocs(), "text is used");
+  } // testSnapshot()
+
+  /**
+   * Does writeToFile write the mappings in the format that they are
+   * read in?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testWriteToFile() throws IOException {
+    AACMappings mappings = new AACMappings(configFile(TEST_CONFIG));
+    mappings.select("two");
+    mappings.addItem("s", "sock");
+    String filename = configFile("");
+    mappings.writeToFile(filename);
+
+    AACMappings copy = new AACMappings(filename);
+    assertArrayEquals(mappings.snapshot().getImageLocs(), copy.getImageLocs(),
+        "same categories");
+    assertEquals("", copy.select("two"), "clothes");
+    assertEquals("extra ear rings", copy.select("e"), "old text");
+    assertTrue(containsString(copy.getImageLocs(), "s"), "new item written");
+    assertEquals("sock", copy.select("s"), "its text");
+  } // testWriteToFile()
+
+  /**
+   * Are added items saved in the journal, replayed on load, and written
+   * into the mapping file when it is compacted?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testJournal() throws IOException {
+    String filename = configFile(TEST_CONFIG);
+    Path journal = EditJournal.journalPath(filename);
+    journal.toFile().deleteOnExit();
+    MappingsSnapshot.snapshotPath(filename).toFile().deleteOnExit();
+
+    AACMappings mappings = AACMappings.load(filename);
+    mappings.addItem("img/toys/ball.png", "toys");
+    mappings.select("img/toys/ball.png");
+    mappings.addItem("img/toys/kite.png", "flying kite");
+    mappings.save();
+    mappings.close();
+    long baseSize = Files.size(Path.of(filename));
+
+    AACMappings reloaded = AACMappings.load(filename);
+    assertEquals("", reloaded.select("img/toys/ball.png"), "toys replayed");
+    assertEquals("flying kite", reloaded.select("img/toys/kite.png"),
+        "item replayed");
+    assertEquals(baseSize, Files.size(Path.of(filename)), "base untouched");
+
+    // A torn last edit is ignored.
+    reloaded.close();
+    Files.writeString(journal, "+ img/toys/ball.png img/toys/top",
+        StandardOpenOption.APPEND);
+    reloaded = AACMappings.load(filename);
+    reloaded.select("img/toys/ball.png");
+    assertEquals(1, reloaded.getImageLocs().length, "torn edit dropped");
+
+    reloaded.compact();
+    reloaded.addItem("img/toys/yoyo.png", "yoyo");
+    reloaded.close();
+    AACMappings compacted = new AACMappings(filename);
+    compacted.select("img/toys/ball.png");
+    assertArrayEquals(new String[] {"img/toys/kite.png"},
+        compacted.getImageLocs(), "compacted into the file");
+    compacted = AACMappings.load(filename);
+    compacted.select("img/toys/ball.png");
+    assertEquals(2, compacted.getImageLocs().length, "journal after compact");
+    compacted.close();
+    assertFalse(Files.exists(EditJournal.backupPath(filename)), "nothing set aside");
+
+    // A journal that belongs to another version of the file is not
+    // replayed, but is kept.
+    String edits = Files.readString(journal);
+    Path backup = EditJournal.backupPath(filename);
+    backup.toFile().deleteOnExit();
+    Files.writeString(Path.of(filename), "img/food/plate.png food\n",
+        StandardOpenOption.APPEND);
+    AACMappings edited = AACMappings.load(filename);
+    edited.select("img/toys/ball.png");
+    assertEquals(1, edited.getImageLocs().length, "stale journal not replayed");
+    assertEquals(edits, Files.readString(backup), "stale journal kept");
+    edited.close();
+  } // testJournal()
+
+  /**
+   * Does replaying a long journal keep the order of the items added to
+   * each category, without changing categories that snapshots taken
+   * after loading still hold?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testJournalReplay() throws IOException {
+    String filename = configFile(TEST_CONFIG);
+    EditJournal.journalPath(filename).toFile().deleteOnExit();
+    AACMappings mappings = AACMappings.load(filename);
+    for (int i = 0; i < 100; i++) {
+      mappings.addItem("one", "fruit" + i + ".png", "fruit " + i);
+      mappings.addItem("two", "clothes" + i + ".png", "clothes " + i);
+    } // for
+    mappings.close();
+
+    AACMappings replayed = AACMappings.load(filename);
+    AACMappings before = replayed.snapshot();
+    replayed.select("one");
+    String[] fruits = replayed.getImageLocs();
+    assertEquals(103, fruits.length, "fruits replayed");
+    assertEquals("fruit0.png", fruits[3], "in order");
+    assertEquals("fruit99.png", fruits[102], "in order");
+    assertEquals("fruit 42", replayed.select("fruit42.png"), "text replayed");
+    replayed.reset();
+    replayed.select("two");
+    assertEquals("clothes 7", replayed.select("clothes7.png"), "other category");
+    replayed.addItem("one", "fig.png", "fig");
+    before.select("one");
+    assertEquals(103, before.getImageLocs().length, "snapshot unchanged");
+    replayed.close();
+  } // testJournalReplay()
+
+  /**
+   * Are edits that could not be read back as they were written, such
+   * as text with a newline that would look like a second edit,
+   * rejected before they change the mappings, the journal, or the
+   * mapping file?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testJournalInjection() throws IOException {
+    String filename = configFile(TEST_CONFIG);
+    EditJournal.journalPath(filename).toFile().deleteOnExit();
+    AACMappings mappings = AACMappings.load(filename);
+    String[][] edits = new String[][] {
+        {"one", "x.png", "hi\n* img/evil.png evil"},
+        {"one", "x.png", "hi\r\n+ one img/evil.png evil"},
+        {"one", "x y.png", "hi"},
+        {"one", "x\ty.png", "hi"},
+        {null, "img/evil.png", "evil\n+ one x.png hi"},
+    };
+    for (String[] edit : edits) {
+      try {
+        mappings.addItem(edit[0], edit[1], edit[2]);
+        fail("addItem(" + edit[0] + ", \"" + edit[1] + "\", ...) was accepted");
+      } catch (IllegalArgumentException e) {
+        // We expected an exception
+      } // try/catch
+    } // for
+    mappings.addItem("one", "x.png", "hi there");
+    mappings.save();
+    mappings.close();
+
+    AACMappings reloaded = AACMappings.load(filename);
+    assertArrayEquals(new String[] {"one", "two", "three"},
+        reloaded.getImageLocs(), "no category injected");
+    reloaded.select("one");
+    assertArrayEquals(new String[] {"a", "b", "c", "x.png"},
+        reloaded.getImageLocs(), "only the valid item");
+    assertEquals("hi there", reloaded.select("x.png"), "its text");
+    reloaded.compact();
+    reloaded.close();
+    assertEquals(TEST_CONFIG.split("\n").length + 1,
+        Files.readAllLines(Path.of(filename)).size(), "one line per mapping");
+
+    // Mappings without a journal find out when they are written.
+    AACMappings unsaved = new AACMappings(configFile(TEST_CONFIG));
+    unsaved.addItem("one", "x.png", "hi\n* img/evil.png evil");
+    try {
+      unsaved.writeToFile(configFile(""));
+      fail("writeToFile wrote a line break");
+    } catch (IllegalArgumentException e) {
+      // We expected an exception
+    } // try/catch
+  } // testJournalInjection()
+
+  /**
+   * Do lazily loaded mappings read a category only when it is needed,
+   * and otherwise behave like mappings that were read all at once?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testLazyLoad() throws IOException {
+    String filename = configFile(TEST_CONFIG + "two more clothes\n>z zipper\n");
+    EditJournal.journalPath(filename).toFile().deleteOnExit();
+
+    CategoryIndex index = new CategoryIndex(MappingsReader.load(filename));
+    assertArrayEquals(new String[] {"one", "two", "three"},
+        index.stubs().keyStrings(), "stubs in file order");
+    AACCategory stub = index.stubs().getOrDefault("two", null);
+    assertEquals("more clothes", stub.getCategory(), "later category wins");
+    assertEquals(0, stub.getImageLocs().length, "stubs have no items");
+    assertTrue(index.isStub("two", stub), "it is the stub");
+    assertArrayEquals(new String[] {"z"}, index.load("two").getImageLocs(),
+        "items read on demand");
+    assertTrue(index.load("two") == index.load("two"), "items read once");
+
+    AACMappings eager = new AACMappings(filename);
+    AACMappings lazy = AACMappings.loadLazily(filename);
+    AACMappings before = lazy.snapshot();
+    Vocabulary words = lazy.vocabulary();
+    assertArrayEquals(eager.getImageLocs(), lazy.getImageLocs(), "same home");
+    assertEquals(eager.getImageLocsWithPrefix("").size(),
+        lazy.getImageLocsWithPrefix("").size(), "same images");
+    assertEquals("", lazy.select("one"), "select a stub");
+    assertArrayEquals(new String[] {"a", "b", "c"}, lazy.getImageLocs(),
+        "items of the stub");
+    assertEquals("banana", lazy.select("b"), "text of an item");
+    lazy.addItem("d", "date");
+    lazy.reset();
+    assertEquals("", lazy.select("three"), "select another stub");
+    assertEquals("igloo", lazy.select("i"), "its text");
+
+    before.select("one");
+    assertEquals(3, before.getImageLocs().length, "snapshot reads lazily too");
+    assertEquals(List.of("a", "b", "c"), words.getImageLocView("one"),
+        "vocabulary does not see later items");
+    lazy.compact();
+    assertEquals(List.of("z"), words.getImageLocView("two"),
+        "vocabulary reads its stubs after the index is dropped");
+    lazy.close();
+
+    AACMappings replayed = AACMappings.loadLazily(filename);
+    replayed.select("one");
+    assertEquals("date", replayed.select("d"), "journal replayed on a stub");
+    replayed.close();
+  } // testLazyLoad()
+
+  /**
+   * Does reload apply only what changed, keeping unchanged categories
+   * and the current category?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testReload() throws IOException {
+    String filename = configFile(TEST_CONFIG);
+    AACMappings mappings = new AACMappings(filename);
+    AACMappings before = mappings.snapshot();
+    mappings.select("two");
+    String[] clothes = mappings.getImageLocs();
+
+    Files.writeString(Path.of(filename), TEST_CONFIG
+        .replace(">b banana\n", ">b blueberry\n")
+        .replace("three miscellaneous\n>h hamper\n>i igloo\n", "")
+        + "four toys\n>k kite\n");
+    CategoryBuilder builder = new CategoryBuilder();
+    MappingsReader.read(filename, builder);
+    assertEquals(1 + 3 + 2, mappings.reload(builder.finish()),
+        "banana, three and its items, four and its item");
+    assertArrayEquals(clothes, mappings.getImageLocs(), "still in clothes");
+    assertEquals("extra ear rings", mappings.select("e"), "clothes unchanged");
+    mappings.reset();
+    assertArrayEquals(new String[] {"one", "two", "four"},
+        mappings.getImageLocs(), "categories changed");
+    mappings.select("one");
+    assertEquals("blueberry", mappings.select("b"), "text changed");
+
+    builder = new CategoryBuilder();
+    MappingsReader.read(filename, builder);
+    assertEquals(0, mappings.reload(builder.finish()), "nothing changed");
+
+    builder = new CategoryBuilder();
+    MappingsReader.read(configFile("one fruit\n>a apple\n"), builder);
+    before.select("three");
+    assertTrue(before.reload(builder.finish()) > 0, "most things changed");
+    assertEquals("", before.getCategory(), "current category is gone");
+  } // testReload()
+
+  /**
+   * Does reload keep the items added since the file was last written,
+   * both in the mappings and when the file is loaded again?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testReloadKeepsAdditions() throws IOException {
+    String filename = configFile(TEST_CONFIG);
+    EditJournal.journalPath(filename).toFile().deleteOnExit();
+    AACMappings mappings = AACMappings.load(filename);
+    mappings.addItem("one", "d", "date");
+    mappings.addItem(null, "four", "toys");
+    mappings.addItem("four", "k", "kite");
+
+    Files.writeString(Path.of(filename), TEST_CONFIG.replace(">b banana\n", ">b blueberry\n"));
+    CategoryBuilder builder = new CategoryBuilder();
+    MappingsReader.read(filename, builder);
+    assertEquals(1, mappings.reload(builder.finish()), "only banana changed");
+    Path journal = EditJournal.journalPath(filename);
+    try (Stream<Path> files = Files.list(journal.toAbsolutePath().getParent())) {
+      assertFalse(files.anyMatch((file) -> file.getFileName().toString()
+          .startsWith(journal.getFileName() + ".") && file.toString().endsWith(".tmp")),
+          "moved journal replaced the old one");
+    } // try
+    assertArrayEquals(new String[] {"one", "two", "three", "four"},
+        mappings.getImageLocs(), "added category kept");
+    mappings.select("one");
+    assertEquals("blueberry", mappings.select("b"), "text changed");
+    assertEquals("date", mappings.select("d"), "added item kept");
+    mappings.reset();
+    mappings.select("four");
+    assertEquals("kite", mappings.select("k"), "item of the added category kept");
+    mappings.close();
+
+    AACMappings loaded = AACMappings.load(filename);
+    loaded.select("one");
+    assertEquals("blueberry", loaded.select("b"), "changed file loaded");
+    assertEquals("date", loaded.select("d"), "journal kept");
+    loaded.reset();
+    loaded.select("four");
+    assertEquals("kite", loaded.select("k"), "journal kept");
+    loaded.close();
+  } // testReloadKeepsAdditions()
+
+  /**
+   * Does reload apply changes to categories of lazily loaded mappings
+   * whose items have not been read yet?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testReloadUnloadedCategory() throws IOException {
+    String filename = configFile(TEST_CONFIG);
+    EditJournal.journalPath(filename).toFile().deleteOnExit();
+    AACMappings mappings = AACMappings.loadLazily(filename);
+    mappings.select("one");
+    assertEquals("banana", mappings.select("b"), "one is read");
+    mappings.reset();
+
+    Files.writeString(Path.of(filename), TEST_CONFIG.replace(">i igloo\n", ">i icicle\n"));
+    CategoryBuilder builder = new CategoryBuilder();
+    MappingsReader.read(filename, builder);
+    assertEquals(2, mappings.reload(builder.finish()),
+        "one change for each unread category");
+    mappings.select("three");
+    assertEquals("icicle", mappings.select("i"), "unread category changed");
+    mappings.reset();
+    mappings.select("one");
+    assertEquals("banana", mappings.select("b"), "read category unchanged");
+    mappings.close();
+  } // testReloadUnloadedCategory()
+
+  /**
+   * Does a MappingsWatcher notice when the file changes?
+   *
+   * @throws Exception
+   *   If an IO operation fails or the test is interrupted.
+   */
+  @Test
+  public void testWatcher() throws Exception {
+    String filename = configFile(TEST_CONFIG);
+    AACMappings mappings = new AACMappings(filename);
+    CountDownLatch reloaded = new CountDownLatch(1);
+    MappingsWatcher watcher = new MappingsWatcher(mappings, filename,
+        Runnable::run, reloaded::countDown);
+    try {
+      Files.writeString(Path.of(filename), TEST_CONFIG + "four toys\n");
+      assertTrue(reloaded.await(30, TimeUnit.SECONDS), "reloaded");
+    } finally {
+      watcher.close();
+    } // try/finally
+    assertEquals(4, mappings.getImageLocs().length, "new category");
+  } // testWatcher()
+
+  /**
+   * Can we find symbols anywhere by their text, and does the index
+   * keep up with new items?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testSearch() throws IOException {
+    AACMappings mappings = new AACMappings(configFile(TEST_CONFIG
+        + "four food\n>ff french fries\n>fr fried egg\n>ft French toast\n"));
+
+    List<TextIndex.Result> results = mappings.search("french fries", 10);
+    assertEquals("ff", results.get(0).getImageLoc(), "both words first");
+    assertEquals("four", results.get(0).getCategory(), "in food");
+    assertEquals("ft", results.get(1).getImageLoc(), "one word next");
+    assertEquals(2, results.size(), "fried is not fries");
+    assertEquals(4, mappings.search("fr", 10).size(),
+        "prefix of last word, including the fruit category");
+    assertEquals("extra ear rings",
+        mappings.search("EAR", 10).get(0).getText(), "any case");
+    assertEquals("two", mappings.search("clothes", 10).get(0).getImageLoc(),
+        "categories by name");
+    assertEquals(1, mappings.search("e", 1).size(), "limit");
+    assertEquals(0, mappings.search("zebra", 10).size(), "no zebras");
+
+    mappings.select("one");
+    mappings.addItem("z", "zebra crackers");
+    mappings.addItem("a", "green apple");
+    assertEquals("z", mappings.search("zebra", 10).get(0).getImageLoc(),
+        "new item found");
+    assertEquals(1, mappings.search("apple", 10).size(), "no old text");
+    mappings.reset();
+    mappings.addItem("one", "fruit salad");
+    assertEquals(0, mappings.search("zebra", 10).size(),
+        "replaced category forgets its items");
+  } // testSearch()
+
+  /**
+   * Can we find symbols whose text is misspelled in the query?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testFuzzySearch() throws IOException {
+    AACMappings mappings = new AACMappings(configFile(TEST_CONFIG
+        + "four weather\n>rb rainbows\n>rn rain boots\n>sb strawberry\n"));
+
+    assertEquals("sb", mappings.fuzzySearch("strawbery", 5).get(0).getImageLoc(),
+        "one missing letter");
+    assertEquals("rb", mappings.fuzzySearch("rainbots", 5).get(0).getImageLoc(),
+        "one wrong letter");
+    assertEquals("four", mappings.fuzzySearch("waether", 5).get(0).getImageLoc(),
+        "swapped letters in a category name");
+    List<TextIndex.Result> results = mappings.fuzzySearch("rain boots", 5);
+    assertEquals("rn", results.get(0).getImageLoc(), "exact words first");
+    assertEquals(0, mappings.fuzzySearch("xyzzy", 5).size(), "too far");
+    assertEquals(0, mappings.fuzzySearch("ab", 5).size(), "short words exact");
+
+    mappings.select("four");
+    mappings.addItem("um", "umbrella");
+    assertEquals("um", mappings.fuzzySearch("umbrela", 5).get(0).getImageLoc(),
+        "new words are found");
+  } // testFuzzySearch()
+
+  /**
+   * Does a fuzzy search still work after the index drops the removed
+   * symbols, including words that only they had?
+   */
+  @Test
+  public void testFuzzySearchAfterCompaction() {
+    TextIndex index = new TextIndex();
+    for (int i = 0; i < 2000; i++) {
+      index.add("fruit", "f" + i, (i <= 1000) ? "pineapple " + i : "papaya " + i);
+    } // for
+    assertEquals("f0", index.fuzzySearch("pineaple", 2, 1).get(0).getImageLoc(),
+        "found before removal");
+    for (int i = 0; i <= 1000; i++) {
+      index.remove("fruit", "f" + i);
+    } // for
+    assertEquals(999, index.size(), "symbols removed");
+    assertEquals(0, index.fuzzySearch("pineaple", 2, 5).size(), "word is gone");
+    assertEquals("f1001", index.fuzzySearch("papya", 2, 1).get(0).getImageLoc(),
+        "other words still found");
+    index.add("fruit", "pa", "pineapple again");
+    assertEquals("pa", index.fuzzySearch("pineaple", 2, 1).get(0).getImageLoc(),
+        "word found again once it is added back");
+  } // testFuzzySearchAfterCompaction()
+
+  /**
+   * Make sure that the items that usually follow the last item
+   * selected are predicted, that old habits give way to new ones, and
+   * that the predictor's memory stays bounded.
+   */
+  @Test
+  public void testPredict() throws IOException {
+    AACMappings mappings = new AACMappings(configFile(TEST_CONFIG));
+    assertEquals(0, mappings.predict(3).size(), "nothing selected yet");
+
+    mappings.select("one");
+    for (int i = 0; i < 5; i++) {
+      mappings.select("a");
+      mappings.select("b");
+    } // for
+    mappings.select("a");
+    List<SymbolPredictor.Prediction> predictions = mappings.predict(3);
+    assertEquals("b", predictions.get(0).getImageLoc(), "b follows a");
+    assertEquals("one", predictions.get(0).getCategory(), "category of b");
+    assertEquals(2, predictions.size(), "only items seen are predicted");
+
+    mappings.reset();
+    assertEquals("banana", mappings.selectPrediction("one", "b"), "select a prediction");
+    assertEquals("fruit", mappings.getCategory(), "moved to the category");
+    assertEquals("a", mappings.predict(1).get(0).getImageLoc(), "a follows b");
+
+    // Habits change.
+    for (int i = 0; i < 20; i++) {
+      mappings.select("b");
+      mappings.select("c");
+    } // for
+    mappings.select("a");
+    mappings.select("b");
+    assertEquals("c", mappings.predict(1).get(0).getImageLoc(), "c now follows b");
+
+    // Items that are gone are not predicted.
+    mappings.reload(CategoryBuilder.build(MappingsReader.load(configFile(
+        TEST_CONFIG.replace(">c cherry\n", "")))));
+    for (SymbolPredictor.Prediction prediction : mappings.predict(3)) {
+      assertNotEquals("c", prediction.getImageLoc(), "removed item");
+    } // for
+
+    SymbolPredictor predictor = new SymbolPredictor();
+    for (int i = 0; i < 3 * SymbolPredictor.MAX_CONTEXTS; i++) {
+      predictor.observe("cat", "item" + i);
+    } // for
+    predictor.observe("cat", "x");
+    predictor.observe("cat", "y");
+    predictor.observe("cat", "x");
+    assertEquals("y", predictor.predict(1).get(0).getImageLoc(), "y follows x");
+
+    // Locations may contain spaces and the characters of keys.
+    predictor = new SymbolPredictor();
+    predictor.observe("my cat", "x y");
+    predictor.observe("1:a b", "2:z");
+    predictor.observe("my cat", "x y");
+    SymbolPredictor.Prediction next = predictor.predict(1).get(0);
+    assertEquals("1:a b", next.getCategory(), "category with a space");
+    assertEquals("2:z", next.getImageLoc(), "image after such a category");
+  } // testPredict()
+
+  /**
+   * Make sure that sessions over the same mappings move independently,
+   * share additions, and can be used from many threads at once.
+   */
+  @Test
+  public void testSessions() throws Exception {
+    AACMappings mappings = new AACMappings(configFile(TEST_CONFIG));
+    AACSession first = new AACSession(mappings);
+    AACSession second = new AACSession(mappings);
+
+    assertEquals("", first.select("one"), "first enters fruit");
+    assertEquals("", second.select("two"), "second enters clothes");
+    assertEquals("fruit", first.getCategory(), "first category");
+    assertEquals("clothes", second.getCategory(), "second category");
+    assertEquals("apple", first.select("a"), "first selects");
+    assertNull(first.trySelect("d"), "d is not in fruit");
+    assertEquals("dress", second.select("d"), "second selects");
+    assertEquals("", mappings.getCategory(), "mappings stay home");
+
+    Vocabulary before = mappings.vocabulary();
+    assertTrue(before == mappings.vocabulary(), "vocabulary is reused");
+    first.addItem("k", "kiwi");
+    second.reset();
+    second.select("one");
+    assertEquals("kiwi", second.select("k"), "shared addition");
+    assertNull(before.trySelect("one", "k"), "old vocabulary unchanged");
+    first.setOffset(2);
+    assertEquals(List.of("c", "k"), first.getPage(2), "second page");
+    first.setOffset(1);
+    assertEquals(List.of("b", "c", "k"), first.getPage(Integer.MAX_VALUE),
+        "the rest, without overflowing");
+    assertEquals(List.of(), first.getPage(0), "empty page");
+    try {
+      List<String> page = first.getPage(-1);
+      fail("getPage(-1) returned " + page);
+    } catch (IllegalArgumentException e) {
+      // We expected an exception
+    } // try/catch
+    first.reset();
+    assertEquals(3, first.getImageLocs().length, "home again");
+
+    // Many sessions at once, each adding to its own category.
+    int threads = 8;
+    int each = 200;
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      int id = t;
+      workers[t] = new Thread(() -> {
+        AACSession session = new AACSession(mappings);
+        session.addItem("cat" + id, "category " + id);
+        session.select("cat" + id);
+        for (int i = 0; i < each; i++) {
+          session.addItem("x" + i, "item " + i);
+          session.select("x" + i);
+          session.select("x" + (i / 2));
+        } // for
+      });
+      workers[t].start();
+    } // for
+    for (Thread worker : workers) {
+      worker.join();
+    } // for
+    for (int t = 0; t < threads; t++) {
+      assertEquals(each, mappings.vocabulary().getImageLocView("cat" + t).size(),
+          "no items lost in cat" + t);
+    } // for
+  } // testSessions()
+
+  /**
+   * Make sure that a sequence of images is resolved into a sentence
+   * across categories without moving the current category.
+   */
+  @Test
+  public void testResolve() throws IOException {
+    AACMappings mappings = new AACMappings(configFile(TEST_CONFIG));
+    mappings.select("three");
+
+    Utterance utterance = mappings.resolve(List.of("one", "a", "c", "two", "g", "i"));
+    assertEquals("apple cherry gloves", utterance.getText(), "sentence");
+    assertEquals(false, utterance.isComplete(), "i is not in clothes");
+    List<Utterance.Resolution> resolutions = utterance.getResolutions();
+    assertEquals(6, resolutions.size(), "one resolution per image");
+    assertEquals("", resolutions.get(0).getText(), "a category");
+    assertNull(resolutions.get(0).getCategory(), "categories are on the home page");
+    assertEquals("one", resolutions.get(1).getCategory(), "a in fruit");
+    assertEquals("two", resolutions.get(4).getCategory(), "g in clothes");
+    assertNull(resolutions.get(5).getText(), "i not found");
+    assertEquals("miscellaneous", mappings.getCategory(), "cursor did not move");
+    assertEquals("hamper", mappings.select("h"), "still in miscellaneous");
+
+    assertEquals("", mappings.resolve(List.of("a")).getText(), "items need a category");
+    AACSession session = new AACSession(mappings);
+    session.select("one");
+    assertEquals("banana", session.resolve(List.of("b")).getText(), "from the session");
+    assertTrue(session.resolve(List.of("b", "three", "h")).isComplete(), "complete");
+    assertEquals("fruit", session.getCategory(), "session did not move");
+  } // testResolve()
+
+  /**
+   * Make sure that the HTTP server answers each endpoint, keeps
+   * sessions apart, and reports errors with the right status.
+   */
+  @Test
+  public void testServer() throws Exception {
+    AACMappings mappings = new AACMappings(configFile(TEST_CONFIG));
+    try (AACServer server = new AACServer(mappings, 0)) {
+      String base = "http://localhost:" + server.getPort();
+      HttpClient http = HttpClient.newHttpClient();
+
+      HttpResponse<String> created = send(http, "POST", base + "/sessions", null);
+      assertEquals(200, created.statusCode(), "create a session");
+      String session = created.body().replaceAll("\\D", "");
+      String query = "?session=" + session;
+      assertEquals("{\"category\":\"\",\"images\":[\"one\",\"two\",\"three\"]}",
+          send(http, "GET", base + "/images" + query, null).body(), "home page");
+      assertEquals("{\"text\":\"\"}",
+          send(http, "POST", base + "/select" + query + "&image=one", null).body(),
+          "enter a category");
+      assertEquals("{\"text\":\"apple\"}",
+          send(http, "POST", base + "/select" + query + "&image=a", null).body(),
+          "select an item");
+      assertEquals(404, send(http, "POST", base + "/select" + query + "&image=d",
+          null).statusCode(), "item in another category");
+      assertEquals(200, send(http, "POST", base + "/items" + query,
+          "image=k&text=kiwi+%22fruit%22").statusCode(), "add an item");
+      assertEquals(400, send(http, "POST", base + "/items" + query,
+          "image=k+2&text=kiwi").statusCode(), "image with a space");
+      assertEquals(400, send(http, "POST", base + "/items" + query,
+          "image=k2&text=kiwi%0D%0A%3Eevil+evil").statusCode(), "text with a line break");
+      assertEquals(400, send(http, "POST", base + "/items" + query,
+          "image=k2&text=kiwi&text=evil").statusCode(), "repeated text");
+      assertEquals(400, send(http, "POST", base + "/items" + query,
+          "image=k2&image=k3&text=kiwi").statusCode(), "repeated image");
+      assertEquals("{\"category\":\"fruit\",\"images\":[\"c\",\"k\"]}",
+          send(http, "GET", base + "/images" + query + "&offset=2&limit=5", null).body(),
+          "a page of the category");
+      assertEquals("{\"category\":\"fruit\",\"images\":[\"b\",\"c\",\"k\"]}",
+          send(http, "GET", base + "/images" + query + "&offset=1", null).body(),
+          "the rest of the category");
+      assertEquals(400, send(http, "GET", base + "/images" + query + "&limit=-1",
+          null).statusCode(), "negative limit");
+      assertEquals("kiwi \"fruit\"", mappings.vocabulary().trySelect("one", "k"),
+          "the item is shared");
+
+      assertEquals("{\"text\":\"cherry dress\",\"images\":["
+          + "{\"image\":\"c\",\"category\":\"one\",\"text\":\"cherry\"},"
+          + "{\"image\":\"two\",\"category\":null,\"text\":\"\"},"
+          + "{\"image\":\"d\",\"category\":\"two\",\"text\":\"dress\"},"
+          + "{\"image\":\"z\",\"category\":null,\"text\":null}]}",
+          send(http, "POST", base + "/utterance" + query,
+              "image=c&image=two&image=d&image=z").body(), "resolve a sentence");
+      assertEquals("{\"text\":\"\",\"images\":["
+          + "{\"image\":\"c\\u000ad\",\"category\":null,\"text\":null}]}",
+          send(http, "POST", base + "/utterance" + query, "image=c%0Ad").body(),
+          "an encoded newline stays in its image");
+
+      assertEquals(400, send(http, "GET", base + "/images", null).statusCode(),
+          "missing session");
+      assertEquals(400, send(http, "POST", base + "/select" + query,
+          "image=%zz").statusCode(), "malformed escape");
+      assertEquals(400, send(http, "POST", base + "/items" + query,
+          "image=k3&text=50%").statusCode(), "unfinished escape");
+      assertEquals(405, send(http, "GET", base + "/reset" + query, null).statusCode(),
+          "wrong method");
+      assertEquals(200, send(http, "POST", base + "/reset" + query, null).statusCode(),
+          "reset");
+      assertEquals(200, send(http, "DELETE", base + "/sessions" + query, null).statusCode(),
+          "end the session");
+      assertEquals(404, send(http, "GET", base + "/images" + query, null).statusCode(),
+          "ended session");
+      assertEquals(0, server.sessionCount(), "no sessions left");
+    } // try
+  } // testServer()
+
+  /**
+   * Make sure that the HTTP server refuses sessions past its limit, and
+   * ends sessions that have gone unused.
+   */
+  @Test
+  public void testServerSessionLimit() throws Exception {
+    AACMappings mappings = new AACMappings(configFile(TEST_CONFIG));
+    try (AACServer server = new AACServer(mappings, 0, 2, 200)) {
+      String base = "http://localhost:" + server.getPort();
+      HttpClient http = HttpClient.newHttpClient();
+
+      String first = send(http, "POST", base + "/sessions", null).body().replaceAll("\\D", "");
+      assertEquals(200, send(http, "POST", base + "/sessions", null).statusCode(),
+          "second session");
+      assertEquals(503, send(http, "POST", base + "/sessions", null).statusCode(),
+          "too many sessions");
+      assertEquals(2, server.sessionCount(), "refused session not kept");
+
+      Thread.sleep(300);
+      assertEquals(200, send(http, "POST", base + "/sessions", null).statusCode(),
+          "idle sessions make room");
+      assertEquals(1, server.sessionCount(), "idle sessions removed");
+      assertEquals(404, send(http, "GET", base + "/images?session=" + first, null).statusCode(),
+          "idle session ended");
+    } // try
+  } // testServerSessionLimit()
+
+  /**
+   * Make sure that image validation finds missing and undecodable
+   * images, checks each image once, and does not block the caller.
+   */
+  @Test
+  public void testValidateImages() throws Exception {
+    Path dir = Files.createTempDirectory("TestAACMappings");
+    dir.toFile().deleteOnExit();
+    Path good = dir.resolve("good.png");
+    ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "png", good.toFile());
+    Path bad = dir.resolve("bad.png");
+    Files.writeString(bad, "not an image");
+    Path missing = dir.resolve("missing.png");
+    good.toFile().deleteOnExit();
+    bad.toFile().deleteOnExit();
+
+    AACMappings mappings = new AACMappings(configFile(good + " things\n"
+        + ">" + good + " good\n>" + bad + " bad\n>" + missing + " missing\n"
+        + dir.resolve("empty.png") + " empty\n"));
+    CompletableFuture<ImageValidator.Report> pending = mappings.validateImages();
+    assertEquals("", mappings.getCategory(), "the caller goes on");
+    ImageValidator.Report report = pending.get(30, TimeUnit.SECONDS);
+    assertEquals(4, report.getChecked(), "each distinct image once");
+    assertEquals(List.of(missing.toString(), dir.resolve("empty.png").toString()),
+        report.getImages(ImageValidator.Problem.MISSING), "missing images");
+    assertEquals(List.of(bad.toString()),
+        report.getImages(ImageValidator.Problem.UNDECODABLE), "undecodable images");
+    assertFalse(report.isClean(), "problems found");
+    assertTrue(report.toString().contains("2 missing"), "summary");
+
+    AACMappings fine = new AACMappings(configFile(good + " things\n>" + good + " good\n"));
+    assertTrue(fine.validateImages().get(30, TimeUnit.SECONDS).isClean(), "all good");
+  } // testValidateImages()
+
+  /**
+   * Send a request to the server.
+   */
+  static HttpResponse<String> send(HttpClient http, String method, String uri, String form)
+      throws Exception {
+    HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(uri));
+    if (form == null) {
+      request.method(method, HttpRequest.BodyPublishers.noBody());
+    } else {
+      request.header("Content-Type", "application/x-www-form-urlencoded")
+          .method(method, HttpRequest.BodyPublishers.ofString(form));
+    } // if/else
+    return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+  } // send(HttpClient, String, String, String)
 } // class TestAACMappings
@@ -0,0 +1,536 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import edu.grinnell.csc207.util.NGramIndex;
+import edu.grinnell.csc207.util.NullKeyException;
+import edu.grinnell.csc207.util.StringAssociativeArray;
+
+/**
+ * An inverted index from the words of the spoken text of symbols to
+ * the symbols, so that a symbol can be found by what it says without
+ * visiting every category. Categories are indexed by their names and
+ * items by their text. The index is kept up to date as symbols are
+ * added, replaced, and removed.
+ *
+ * Words are the runs of letters and digits in a text, in lower case.
+ * A search scores each symbol by the words of the query that it
+ * contains: two points for each word it contains exactly, and one
+ * point if it only has a word that starts with the last word of the
+ * query (which has usually not been finished when searching as the
+ * user types). Symbols with more points come first, then those with
+ * shorter text, then those that were added first. A fuzzy search also
+ * matches words that are a few edits away, using an index of the
+ * words by their bigrams.
+ *
+ * @author Alex Cyphers
+ *
+ */
+public class TextIndex {
+
+	/*
+	 * Once the index has more removed symbols than live ones, and at
+	 * least this many symbols in all, it is rebuilt without them.
+	 */
+	static final int COMPACT_MINIMUM = 1024;
+
+	/**
+	 * A symbol found by a search
+	 */
+	public static class Result {
+		/*
+		 * The image location of the symbol's category, or "" for a
+		 * category on the home page.
+		 */
+		private final String category;
+
+		/*
+		 * The image location of the symbol.
+		 */
+		private final String imageLoc;
+
+		/*
+		 * The symbol's text, or the name of the category.
+		 */
+		private final String text;
+
+		/*
+		 * The symbol's score.
+		 */
+		private final int score;
+
+		/**
+		 * Creates a result
+		 * @param category the image location of the symbol's category
+		 * @param imageLoc the image location of the symbol
+		 * @param text the symbol's text
+		 * @param score the symbol's score
+		 */
+		Result(String category, String imageLoc, String text, int score) {
+			this.category = category;
+			this.imageLoc = imageLoc;
+			this.text = text;
+			this.score = score;
+		} // Result(String, String, String, int)
+
+		/**
+		 * Gets the image location of the symbol's category
+		 * @return the image location, or "" for a category
+		 */
+		public String getCategory() {
+			return this.category;
+		} // getCategory()
+
+		/**
+		 * Gets the image location of the symbol
+		 * @return the image location
+		 */
+		public String getImageLoc() {
+			return this.imageLoc;
+		} // getImageLoc()
+
+		/**
+		 * Gets the text of the symbol
+		 * @return the text, or the name of a category
+		 */
+		public String getText() {
+			return this.text;
+		} // getText()
+
+		/**
+		 * Gets the score of the symbol
+		 * @return the score
+		 */
+		public int getScore() {
+			return this.score;
+		} // getScore()
+
+		/**
+		 * Describes the result
+		 * @return the category, image location, and text
+		 */
+		public String toString() {
+			return this.category + " " + this.imageLoc + " " + this.text;
+		} // toString()
+	} // class Result
+
+	/**
+	 * The symbols that contain a word, as a growable array of ids
+	 */
+	private static class Postings {
+		/*
+		 * The ids, in the order they were added.
+		 */
+		int[] ids = new int[4];
+
+		/*
+		 * The number of ids.
+		 */
+		int size;
+
+		/**
+		 * Adds an id
+		 * @param id the id
+		 */
+		void add(int id) {
+			if (this.size == this.ids.length) {
+				int[] bigger = new int[this.size * 2];
+				System.arraycopy(this.ids, 0, bigger, 0, this.size);
+				this.ids = bigger;
+			} // if
+			this.ids[this.size++] = id;
+		} // add(int)
+	} // class Postings
+
+	/*
+	 * The postings of each word, with a prefix index for the last word
+	 * of a query.
+	 */
+	private StringAssociativeArray<Postings> words;
+
+	/*
+	 * The words of the index, for finding words close to a misspelled
+	 * one, or null if no fuzzy search has needed it yet.
+	 */
+	private NGramIndex fuzzy;
+
+	/*
+	 * The id of each symbol, by its category and image location
+	 * separated by a space.
+	 */
+	private StringAssociativeArray<Integer> ids;
+
+	/*
+	 * The categories of the symbols, by id.
+	 */
+	private String[] categories;
+
+	/*
+	 * The image locations of the symbols, by id.
+	 */
+	private String[] imageLocs;
+
+	/*
+	 * The texts of the symbols, by id, or null for symbols that have
+	 * been removed.
+	 */
+	private String[] texts;
+
+	/*
+	 * The number of ids handed out.
+	 */
+	private int count;
+
+	/*
+	 * The number of symbols that have not been removed.
+	 */
+	private int live;
+
+	/*
+	 * The score of each symbol during a search.
+	 */
+	private int[] scores;
+
+	/*
+	 * The last query word (plus one) that scored each symbol during a
+	 * search, so that no word scores a symbol twice.
+	 */
+	private int[] scoredBy;
+
+	/*
+	 * The ids of the symbols that scored during a search.
+	 */
+	private int[] touched;
+
+	/*
+	 * The number of those ids.
+	 */
+	private int touchedCount;
+
+	/**
+	 * Creates an empty index
+	 */
+	public TextIndex() {
+		this.words = new StringAssociativeArray<>();
+		this.words.enablePrefixIndex();
+		this.ids = new StringAssociativeArray<>();
+		this.categories = new String[16];
+		this.imageLocs = new String[16];
+		this.texts = new String[16];
+		this.scores = new int[16];
+		this.scoredBy = new int[16];
+		this.touched = new int[16];
+	} // TextIndex()
+
+	/**
+	 * Splits a text into words
+	 * @param text the text
+	 * @return the runs of letters and digits in the text, in lower case
+	 */
+	public static List<String> words(String text) {
+		ArrayList<String> words = new ArrayList<>();
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (inWord && start < 0) {
+				start = i;
+			} else if (!inWord && start >= 0) {
+				words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+				start = -1;
+			} // if/else
+		} // for-loop
+		return words;
+	} // words(String)
+
+	/**
+	 * Adds a symbol, replacing any symbol with the same category and
+	 * image location
+	 * @param category the image location of the category, or "" for a
+	 * category on the home page
+	 * @param imageLoc the image location of the symbol
+	 * @param text the symbol's text, or the name of the category
+	 */
+	public synchronized void add(String category, String imageLoc, String text) {
+		String key = category + " " + imageLoc;
+		this.kill(this.ids.getOrDefault(key, -1));
+		if (this.count == this.texts.length) {
+			this.grow();
+		} // if
+		int id = this.count++;
+		this.categories[id] = category;
+		this.imageLocs[id] = imageLoc;
+		this.texts[id] = text;
+		this.live++;
+		try {
+			this.ids.set(key, id);
+			List<String> words = words(text);
+			for (int i = 0; i < words.size(); i++) {
+				if (words.indexOf(words.get(i)) < i) {
+					continue;
+				} // if
+				Postings postings = this.words.getOrDefault(words.get(i), null);
+				if (postings == null) {
+					postings = new Postings();
+					this.words.set(words.get(i), postings);
+					if (this.fuzzy != null) {
+						this.fuzzy.add(words.get(i));
+					} // if
+				} // if
+				postings.add(id);
+			} // for-loop
+		} catch (NullKeyException e) {
+			// Should not recieve a null key.
+		} // try/catch
+		this.compactIfSparse();
+	} // add(String, String, String)
+
+	/**
+	 * Adds a category and all of its items, replacing any that were
+	 * there
+	 * @param imageLoc the image location of the category
+	 * @param category the category
+	 */
+	public synchronized void addCategory(String imageLoc, AACCategory category) {
+		this.add("", imageLoc, category.getCategory());
+		for (String item : category.getImageLocView()) {
+			this.add(imageLoc, item, category.trySelect(item));
+		} // for-loop
+	} // addCategory(String, AACCategory)
+
+	/**
+	 * Removes a symbol, if it is in the index
+	 * @param category the image location of the category, or "" for a
+	 * category on the home page
+	 * @param imageLoc the image location of the symbol
+	 */
+	public synchronized void remove(String category, String imageLoc) {
+		String key = category + " " + imageLoc;
+		this.kill(this.ids.getOrDefault(key, -1));
+		this.ids.remove(key);
+		this.compactIfSparse();
+	} // remove(String, String)
+
+	/**
+	 * Removes a category and all of its items
+	 * @param imageLoc the image location of the category
+	 * @param category the category
+	 */
+	public synchronized void removeCategory(String imageLoc, AACCategory category) {
+		this.remove("", imageLoc);
+		for (String item : category.getImageLocView()) {
+			this.remove(imageLoc, item);
+		} // for-loop
+	} // removeCategory(String, AACCategory)
+
+	/**
+	 * Gets the number of symbols in the index
+	 * @return the number of symbols
+	 */
+	public synchronized int size() {
+		return this.live;
+	} // size()
+
+	/**
+	 * Finds the symbols that best match a query
+	 * @param query the words to look for
+	 * @param limit the largest number of results to return
+	 * @return the symbols that contain at least one word of the query
+	 * (or a word that starts with its last word), best first
+	 */
+	public synchronized List<Result> search(String query, int limit) {
+		List<String> words = words(query);
+		for (int i = 0; i < words.size(); i++) {
+			int word = i + 1;
+			Postings postings = this.words.getOrDefault(words.get(i), null);
+			if (postings != null) {
+				this.score(postings, word, 2);
+			} // if
+			if (i == words.size() - 1) {
+				String last = words.get(i);
+				this.words.forEachWithPrefix(last, (other) -> {
+					if (!other.equals(last)) {
+						this.score(this.words.getOrDefault(other, null), word, 1);
+					} // if
+				});
+			} // if
+		} // for-loop
+		return this.results(limit);
+	} // search(String, int)
+
+	/**
+	 * Finds the symbols that best match a query that may be misspelled.
+	 * Each word of the query matches the words of the index that are
+	 * within a few edits of it: none for words of one or two letters,
+	 * one for words of up to five letters, and two for longer words,
+	 * but never more than maxDistance. A matching word scores
+	 * maxDistance + 1 points, less one for each edit.
+	 * @param query the words to look for
+	 * @param maxDistance the largest number of edits to allow
+	 * @param limit the largest number of results to return
+	 * @return the symbols that contain a word that matches a word of the
+	 * query, best first
+	 */
+	public synchronized List<Result> fuzzySearch(String query, int maxDistance, int limit) {
+		if (this.fuzzy == null) {
+			this.fuzzy = new NGramIndex();
+			for (String word : this.words.keys()) {
+				this.fuzzy.add(word);
+			} // for-loop
+		} // if
+		List<String> words = words(query);
+		ArrayList<String> matches = new ArrayList<>();
+		ArrayList<Integer> distances = new ArrayList<>();
+		for (int i = 0; i < words.size(); i++) {
+			String word = words.get(i);
+			int allowed = (word.length() <= 2) ? 0 : (word.length() <= 5) ? 1 : 2;
+			matches.clear();
+			distances.clear();
+			this.fuzzy.forEachWithin(word, Math.min(allowed, maxDistance), (match, distance) -> {
+				matches.add(match);
+				distances.add(distance);
+			});
+			// Closer words score first, since a word scores a symbol only once.
+			for (int distance = 0; distance <= maxDistance; distance++) {
+				for (int m = 0; m < matches.size(); m++) {
+					Postings postings = this.words.getOrDefault(matches.get(m), null);
+					if (distances.get(m) == distance && postings != null) {
+						this.score(postings, i + 1, maxDistance + 1 - distance);
+					} // if
+				} // for-loop
+			} // for-loop
+		} // for-loop
+		return this.results(limit);
+	} // fuzzySearch(String, int, int)
+
+	/**
+	 * Collects the best symbols scored by a search and clears the scores
+	 * for the next search
+	 * @param limit the largest number of results to return
+	 * @return the symbols that scored, best first
+	 */
+	private List<Result> results(int limit) {
+		// Keep the best ids found so far in order, best first.
+		int[] best = new int[Math.max(0, Math.min(limit, this.touchedCount))];
+		int found = 0;
+		for (int t = 0; t < this.touchedCount; t++) {
+			int id = this.touched[t];
+			if (found == best.length && (found == 0 || !this.better(id, best[found - 1]))) {
+				continue;
+			} // if
+			int i = (found < best.length) ? found++ : found - 1;
+			while (i > 0 && this.better(id, best[i - 1])) {
+				best[i] = best[i - 1];
+				i--;
+			} // while
+			best[i] = id;
+		} // for-loop
+
+		ArrayList<Result> results = new ArrayList<>(found);
+		for (int i = 0; i < found; i++) {
+			results.add(new Result(this.categories[best[i]], this.imageLocs[best[i]],
+					this.texts[best[i]], this.scores[best[i]]));
+		} // for-loop
+
+		for (int t = 0; t < this.touchedCount; t++) {
+			this.scores[this.touched[t]] = 0;
+			this.scoredBy[this.touched[t]] = 0;
+		} // for-loop
+		this.touchedCount = 0;
+		return results;
+	} // results(int)
+
+	/**
+	 * Determines whether one symbol ranks above another in the current
+	 * search
+	 * @param a the id of one symbol
+	 * @param b the id of the other
+	 * @return true if a ranks above b, and false otherwise
+	 */
+	private boolean better(int a, int b) {
+		if (this.scores[a] != this.scores[b]) {
+			return this.scores[a] > this.scores[b];
+		} else if (this.texts[a].length() != this.texts[b].length()) {
+			return this.texts[a].length() < this.texts[b].length();
+		} else {
+			return a < b;
+		} // if/else
+	} // better(int, int)
+
+	/**
+	 * Adds points to the live symbols in some postings that have not
+	 * yet been scored by a query word
+	 * @param postings the postings
+	 * @param word the number of the query word, starting at 1
+	 * @param points the points to add
+	 */
+	private void score(Postings postings, int word, int points) {
+		for (int p = 0; p < postings.size; p++) {
+			int id = postings.ids[p];
+			if (this.texts[id] == null || this.scoredBy[id] == word) {
+				continue;
+			} // if
+			if (this.scores[id] == 0) {
+				if (this.touchedCount == this.touched.length) {
+					int[] bigger = new int[this.touched.length * 2];
+					System.arraycopy(this.touched, 0, bigger, 0, this.touchedCount);
+					this.touched = bigger;
+				} // if
+				this.touched[this.touchedCount++] = id;
+			} // if
+			this.scoredBy[id] = word;
+			this.scores[id] += points;
+		} // for-loop
+	} // score(Postings, int, int)
+
+	/**
+	 * Marks a symbol as removed
+	 * @param id the id of the symbol, or -1 for none
+	 */
+	private void kill(int id) {
+		if (id >= 0 && this.texts[id] != null) {
+			this.texts[id] = null;
+			this.live--;
+		} // if
+	} // kill(int)
+
+	/**
+	 * Doubles the room for symbols
+	 */
+	private void grow() {
+		int capacity = this.texts.length * 2;
+		this.categories = Arrays.copyOf(this.categories, capacity);
+		this.imageLocs = Arrays.copyOf(this.imageLocs, capacity);
+		this.texts = Arrays.copyOf(this.texts, capacity);
+		this.scores = Arrays.copyOf(this.scores, capacity);
+		this.scoredBy = Arrays.copyOf(this.scoredBy, capacity);
+	} // grow()
+
+	/**
+	 * Rebuilds the index without the symbols that have been removed, if
+	 * they outnumber the others. Words that only removed symbols had are
+	 * dropped, so the words for fuzzy searches are found again the next
+	 * time they are needed.
+	 */
+	private void compactIfSparse() {
+		if (this.count - this.live <= this.live || this.count < COMPACT_MINIMUM) {
+			return;
+		} // if
+		TextIndex fresh = new TextIndex();
+		for (int id = 0; id < this.count; id++) {
+			if (this.texts[id] != null) {
+				fresh.add(this.categories[id], this.imageLocs[id], this.texts[id]);
+			} // if
+		} // for-loop
+		this.words = fresh.words;
+		this.fuzzy = null;
+		this.ids = fresh.ids;
+		this.categories = fresh.categories;
+		this.imageLocs = fresh.imageLocs;
+		this.texts = fresh.texts;
+		this.count = fresh.count;
+		this.live = fresh.live;
+		this.scores = fresh.scores;
+		this.scoredBy = fresh.scoredBy;
+	} // compactIfSparse()
+}
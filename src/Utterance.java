@@ -0,0 +1,141 @@
+import java.util.List;
+
+/**
+ * A sentence built from a sequence of selected images, along with what
+ * each image was resolved to. Selecting a category's image moves into
+ * that category, as a tap does, and selecting an item adds its text to
+ * the sentence.
+ *
+ * @author Alex Cyphers
+ *
+ */
+public class Utterance {
+
+	/**
+	 * What one image in the sequence was resolved to
+	 */
+	public static class Resolution {
+		/*
+		 * The location of the image.
+		 */
+		private final String imageLoc;
+
+		/*
+		 * The image location of the category the item was found in, or
+		 * null if the image is a category or was not found.
+		 */
+		private final String category;
+
+		/*
+		 * The text of the item, the empty string for a category, or null
+		 * if the image was not found.
+		 */
+		private final String text;
+
+		/**
+		 * Creates a resolution
+		 * @param imageLoc the location of the image
+		 * @param category the image location of the category the item was
+		 * found in, or null
+		 * @param text the text of the item, the empty string for a
+		 * category, or null if the image was not found
+		 */
+		Resolution(String imageLoc, String category, String text) {
+			this.imageLoc = imageLoc;
+			this.category = category;
+			this.text = text;
+		} // Resolution(String, String, String)
+
+		/**
+		 * Gets the location of the image
+		 * @return the location
+		 */
+		public String getImageLoc() {
+			return this.imageLoc;
+		} // getImageLoc()
+
+		/**
+		 * Gets the image location of the category the item was found in
+		 * @return the category's image location, or null if the image is a
+		 * category or was not found
+		 */
+		public String getCategory() {
+			return this.category;
+		} // getCategory()
+
+		/**
+		 * Gets the text of the item
+		 * @return the text, the empty string for a category, or null if the
+		 * image was not found
+		 */
+		public String getText() {
+			return this.text;
+		} // getText()
+
+		/**
+		 * Determines whether the image was found
+		 * @return true if it was, and false otherwise
+		 */
+		public boolean isResolved() {
+			return this.text != null;
+		} // isResolved()
+	} // class Resolution
+
+	/*
+	 * The text of the items, separated by spaces.
+	 */
+	private final String text;
+
+	/*
+	 * What each image was resolved to, in order.
+	 */
+	private final List<Resolution> resolutions;
+
+	/**
+	 * Creates an utterance
+	 * @param text the text of the items, separated by spaces
+	 * @param resolutions what each image was resolved to
+	 */
+	Utterance(String text, List<Resolution> resolutions) {
+		this.text = text;
+		this.resolutions = resolutions;
+	} // Utterance(String, List)
+
+	/**
+	 * Gets the sentence
+	 * @return the text of the items, separated by spaces
+	 */
+	public String getText() {
+		return this.text;
+	} // getText()
+
+	/**
+	 * Gets what each image was resolved to
+	 * @return a read-only list of the resolutions, in the order of the
+	 * images
+	 */
+	public List<Resolution> getResolutions() {
+		return this.resolutions;
+	} // getResolutions()
+
+	/**
+	 * Determines whether every image was found
+	 * @return true if every image was found, and false otherwise
+	 */
+	public boolean isComplete() {
+		for (Resolution resolution : this.resolutions) {
+			if (!resolution.isResolved()) {
+				return false;
+			} // if
+		} // for-loop
+		return true;
+	} // isComplete()
+
+	/**
+	 * Gets the sentence
+	 * @return the text of the items
+	 */
+	public String toString() {
+		return this.text;
+	} // toString()
+}
@@ -0,0 +1,192 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.grinnell.csc207.util.PersistentAssociativeArray;
+
+/**
+ * The categories and items of a set of mappings as they were at one
+ * moment, without any notion of which category a user is in. A
+ * vocabulary never changes once it is made, so any number of threads
+ * and sessions may share one without locking; each user's place in it
+ * is kept in an AACSession instead. Changes to the mappings produce a
+ * new vocabulary, which shares all but the changed categories with the
+ * old one.
+ *
+ * Categories are identified by the locations of their images, and the
+ * default (home) category by null.
+ *
+ * @author Alex Cyphers
+ *
+ */
+public class Vocabulary {
+
+	/*
+	 * The categories, by the location of their images.
+	 */
+	private final PersistentAssociativeArray<String, AACCategory> categories;
+
+	/*
+	 * Reads the items of a category that has not been read yet, given
+	 * its image location and the category as it is in categories. The
+	 * items are those the category had when the vocabulary was made,
+	 * however the mappings have changed since.
+	 */
+	private final Loader loader;
+
+	/**
+	 * Reads the items of a category that was loaded lazily
+	 */
+	interface Loader {
+		/**
+		 * Gets a category with its items, reading them at most once
+		 * @param imageLoc the location of the category's image
+		 * @param category the category, which may be a stub
+		 * @return the category with the items the stub stands for
+		 */
+		AACCategory loaded(String imageLoc, AACCategory category);
+	} // interface Loader
+
+	/**
+	 * Creates a vocabulary over a set of categories
+	 * @param categories the categories, which are never changed
+	 * @param loader what reads the items of categories that have not
+	 * been read
+	 */
+	Vocabulary(PersistentAssociativeArray<String, AACCategory> categories, Loader loader) {
+		this.categories = categories;
+		this.loader = loader;
+	} // Vocabulary(PersistentAssociativeArray, Loader)
+
+	/**
+	 * Determines whether the vocabulary was made from a set of
+	 * categories
+	 * @param categories the categories
+	 * @return true if it was, and false otherwise
+	 */
+	boolean isOver(PersistentAssociativeArray<String, AACCategory> categories) {
+		return this.categories == categories;
+	} // isOver(PersistentAssociativeArray)
+
+	/**
+	 * Gets a category
+	 * @param imageLoc the location of the category's image
+	 * @return the category, or null if there is no such category
+	 */
+	private AACCategory category(String imageLoc) {
+		return this.loader.loaded(imageLoc, this.categories.getOrDefault(imageLoc, null));
+	} // category(String)
+
+	/**
+	 * Determines whether there is a category
+	 * @param category the location of the category's image
+	 * @return true if there is such a category, and false otherwise
+	 */
+	public boolean hasCategory(String category) {
+		return category != null && this.categories.hasKey(category);
+	} // hasCategory(String)
+
+	/**
+	 * Gets the name of a category
+	 * @param category the location of the category's image, or null for
+	 * the default category
+	 * @return the name of the category, the empty string for the default
+	 * category, or null if there is no such category
+	 */
+	public String getName(String category) {
+		if (category == null) {
+			return "";
+		} // if
+		AACCategory found = this.categories.getOrDefault(category, null);
+		return (found == null) ? null : found.getCategory();
+	} // getName(String)
+
+	/**
+	 * Provides a read-only view of the images in a category
+	 * @param category the location of the category's image, or null for
+	 * the default category, whose images are the categories
+	 * @return the images in the category; if there is no such category,
+	 * an empty list
+	 */
+	public List<String> getImageLocView(String category) {
+		if (category == null) {
+			return this.categories.keys();
+		} // if
+		AACCategory found = this.category(category);
+		return (found == null) ? List.of() : found.getImageLocView();
+	} // getImageLocView(String)
+
+	/**
+	 * Gets the text of an item in a category
+	 * @param category the location of the category's image
+	 * @param imageLoc the location of the item's image
+	 * @return the text associated with the item, or null if there is no
+	 * such item
+	 */
+	public String trySelect(String category, String imageLoc) {
+		AACCategory found = (category == null) ? null : this.category(category);
+		return (found == null) ? null : found.trySelect(imageLoc);
+	} // trySelect(String, String)
+
+	/**
+	 * Determines whether an image is in a category
+	 * @param category the location of the category's image, or null for
+	 * the default category
+	 * @param imageLoc the location of the image
+	 * @return true if the image is in the category, and false otherwise
+	 */
+	public boolean hasImage(String category, String imageLoc) {
+		if (category == null) {
+			return this.hasCategory(imageLoc);
+		} // if
+		AACCategory found = this.category(category);
+		return found != null && found.hasImage(imageLoc);
+	} // hasImage(String, String)
+
+	/**
+	 * Resolves a sequence of selected images into a sentence in one
+	 * pass, as if each were tapped in turn, without moving anyone's
+	 * current category. An image that is an item of the category the
+	 * sequence is in adds the item's text to the sentence; otherwise,
+	 * an image that is a category moves the sequence into it. Images
+	 * that are neither are reported as not found and skipped.
+	 * @param category the image location of the category to start in,
+	 * or null to start on the default category
+	 * @param imageLocs the selected images, in order
+	 * @return the sentence and what each image was resolved to
+	 */
+	public Utterance resolve(String category, List<String> imageLocs) {
+		StringBuilder text = new StringBuilder();
+		List<Utterance.Resolution> resolutions = new ArrayList<>(imageLocs.size());
+		AACCategory current = (category == null) ? null : this.category(category);
+		String currentLoc = (current == null) ? null : category;
+		for (String imageLoc : imageLocs) {
+			String found = (current == null) ? null : current.trySelect(imageLoc);
+			if (found != null) {
+				if (text.length() > 0 && !found.isEmpty()) {
+					text.append(' ');
+				} // if
+				text.append(found);
+				resolutions.add(new Utterance.Resolution(imageLoc, currentLoc, found));
+			} else {
+				AACCategory next = (imageLoc == null) ? null : this.category(imageLoc);
+				if (next != null) {
+					current = next;
+					currentLoc = imageLoc;
+					resolutions.add(new Utterance.Resolution(imageLoc, null, ""));
+				} else {
+					resolutions.add(new Utterance.Resolution(imageLoc, null, null));
+				} // if/else
+			} // if/else
+		} // for-loop
+		return new Utterance(text.toString(), Collections.unmodifiableList(resolutions));
+	} // resolve(String, List)
+
+	/**
+	 * Gets the number of categories
+	 * @return the number of categories
+	 */
+	public int size() {
+		return this.categories.size();
+	} // size()
+}
@@ -2,6 +2,16 @@ package edu.grinnell.csc207.util;
 
 import static java.lang.reflect.Array.newInstance;
 
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.BiConsumer;
+
 /**
  * A basic implementation of Associative Arrays with keys of type K
  * and values of type V. Associative Arrays store key/value pairs
@@ -13,29 +23,22 @@ import static java.lang.reflect.Array.newInstance;
  * @author Alex Cyphers
  * @author Samuel A. Rebelsky
  */
-public class AssociativeArray<K, V> {
-  // +-----------+---------------------------------------------------
-  // | Constants |
-  // +-----------+
-
-  /**
-   * The default capacity of the initial array.
-   */
-  static final int DEFAULT_CAPACITY = 16;
-
+public class AssociativeArray<K, V> extends OrderedHashTable {
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
 
   /**
-   * The size of the associative array (the number of key/value pairs).
+   * The array of key/value pairs. Removed pairs leave a null
+   * tombstone behind until the array is next compacted.
    */
-  int size;
+  public KVPair<K, V>[] pairs;
 
   /**
-   * The array of key/value pairs.
+   * The read-only view of the keys, created the first time keys() is
+   * called.
    */
-  public KVPair<K, V>[] pairs;
+  List<K> keyView;
 
   // +--------------+------------------------------------------------
   // | Constructors |
@@ -44,13 +47,24 @@ public class AssociativeArray<K, V> {
   /**
    * Create a new, empty associative array.
    */
-  @SuppressWarnings({ "unchecked" })
   public AssociativeArray() {
+    this(DEFAULT_CAPACITY);
+  } // AssociativeArray()
+
+  /**
+   * Create a new, empty associative array with room for a given number
+   * of pairs, so that filling it does not require expanding it.
+   *
+   * @param capacity
+   *   The expected number of pairs.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public AssociativeArray(int capacity) {
+    super(Math.max(capacity, 1));
     // Creating new arrays is sometimes a PITN.
     this.pairs = (KVPair<K, V>[]) newInstance((new KVPair<K, V>()).getClass(),
-        DEFAULT_CAPACITY);
-    this.size = 0;
-  } // AssociativeArray()
+        Math.max(capacity, 1));
+  } // AssociativeArray(int)
 
   // +------------------+--------------------------------------------
   // | Standard Methods |
@@ -64,8 +78,10 @@ public class AssociativeArray<K, V> {
   public AssociativeArray<K, V> clone() {
     AssociativeArray<K, V> arr = new AssociativeArray<>();
     try {
-      for (int i = 0; i < this.size; i++) {
-        arr.set(this.pairs[i].key, this.pairs[i].val);
+      for (int i = 0; i < this.used; i++) {
+        if (this.pairs[i] != null) {
+          arr.set(this.pairs[i].key, this.pairs[i].val);
+        } // if
       } // for-loop
     } catch (NullKeyException e) {
       // Do nothing because we should not recieve an exception
@@ -80,35 +96,28 @@ public class AssociativeArray<K, V> {
    * @return a string of the form "{Key0:Value0, Key1:Value1, ... KeyN:ValueN}"
    */
   public String toString() {
-
-    String str = "";
-
-    for (int i = 0; i < this.size; i++) {
-      String strKey = "";
-      String strVal = "";
-
-      if (this.pairs[i].key == null) {
-        strKey = "null";
-      } else {
-        strKey = this.pairs[i].key.toString();
-      } // if/else
-
-      if (this.pairs[i].val == null) {
-        strVal = "null";
-      } else {
-        strVal = this.pairs[i].val.toString();
-      } // if/else
-
-      str = str + strKey + ":" + strVal;
-
-      if (i != this.size - 1) {
-        str = str + ", ";
-      } // if
-    } // for-loop
-
-    return "{" + str + "}";
+    return this.toString(Integer.MAX_VALUE);
   } // toString()
 
+  /**
+   * Convert at most the first maxEntries pairs of the array to a
+   * string, e.g., for a diagnostic message about a large array.
+   *
+   * @param maxEntries
+   *   The largest number of pairs to include.
+   *
+   * @return a string of the form "{Key0:Value0, Key1:Value1, ...}"
+   */
+  public String toString(int maxEntries) {
+    StringBuilder str = new StringBuilder();
+    try {
+      this.writeTo(str, maxEntries);
+    } catch (IOException e) {
+      // StringBuilders do not throw IOExceptions.
+    } // try/catch
+    return str.toString();
+  } // toString(int)
+
   // +----------------+----------------------------------------------
   // | Public Methods |
   // +----------------+
@@ -131,22 +140,55 @@ public class AssociativeArray<K, V> {
       throw new NullKeyException();
     } // if
 
-    if (this.hasKey(key)) {
-      try {
-        int index = find(key);
-        pairs[index].val = value;
-        return;
-      } catch (KeyNotFoundException e) {
-        // Do nothing: We shouldn't get an exception.
-      } // try-catch
-    } else {
-      if (this.size == pairs.length) {
-        expand();
-      } // if
-      pairs[this.size++] = new KVPair<>(key, value);
-    } // if/else
+    int hash = hash(key);
+    int slot = this.slotFor(key, hash);
+
+    if (this.index[slot] != EMPTY) {
+      this.pairs[this.index[slot] - 1].val = value;
+      return;
+    } // if
+
+    int pos = this.append(key, hash, slot);
+    this.pairs[pos] = new KVPair<>(key, value);
   } // set(K,V)
 
+  /**
+   * Set many values at once, growing the array at most once. This is
+   * equivalent to calling set(keys[i], vals[i]) for each i in order.
+   *
+   * If the caller knows that the keys are distinct from each other and
+   * from the keys already present, it may say so with `distinct`; the
+   * pairs are then appended without looking for existing keys.
+   *
+   * @param keys
+   *   The keys whose values we are setting.
+   * @param vals
+   *   The values of those keys, in the same order.
+   * @param distinct
+   *   Whether the keys are known to be new and distinct.
+   *
+   * @throws NullKeyException
+   *   If any of the keys is null. The pairs before it are still set.
+   */
+  public void setAll(K[] keys, V[] vals, boolean distinct)
+      throws NullKeyException {
+    this.ensureRoom(keys.length);
+    if (!distinct) {
+      for (int i = 0; i < keys.length; i++) {
+        this.set(keys[i], vals[i]);
+      } // for-loop
+      return;
+    } // if
+
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] == null) {
+        throw new NullKeyException();
+      } // if
+      int pos = this.appendDistinct(hash(keys[i]));
+      this.pairs[pos] = new KVPair<>(keys[i], vals[i]);
+    } // for-loop
+  } // setAll(K[], V[], boolean)
+
   /**
    * Get the value associated with key.
    *
@@ -166,13 +208,7 @@ public class AssociativeArray<K, V> {
       throw new KeyNotFoundException();
     } // if
 
-    for (int i = 0; i < this.size; i++) {
-      if (pairs[i].key.equals(key)) {
-        return pairs[i].val;
-      } // if
-    } // for-loop
-
-    throw new KeyNotFoundException();
+    return this.pairs[this.find(key)].val;
   } // get(K)
 
   /**
@@ -189,42 +225,146 @@ public class AssociativeArray<K, V> {
       return false;
     } // if
 
-    for (int i = 0; i < this.size; i++) {
-      if (pairs[i].key.equals(key)) {
-        return true;
-      } // if
-    } // for-loop
-    return false;
+    return this.positionOf(key) >= 0;
   } // hasKey(K)
 
+  /**
+   * Get the value associated with key, or a default value if key does
+   * not appear. Unlike get, a miss costs no more than a hit, since no
+   * exception is created.
+   *
+   * @param key
+   *            A key
+   * @param defaultValue
+   *            The value to return if key is null or does not appear.
+   *
+   * @return the corresponding value, or defaultValue.
+   */
+  public V getOrDefault(K key, V defaultValue) {
+    if (key == null) {
+      return defaultValue;
+    } // if
+
+    int pos = this.positionOf(key);
+    if (pos < 0) {
+      return defaultValue;
+    } // if
+    return this.pairs[pos].val;
+  } // getOrDefault(K, V)
+
+  /**
+   * Find where key appears among the keys, in the order given by
+   * keys() and keyStrings().
+   *
+   * @param key
+   *            The key we're looking for.
+   *
+   * @return the index of key, or -1 if key is null or does not appear.
+   */
+  public int indexOf(K key) {
+    if (key == null) {
+      return -1;
+    } // if
+
+    int pos = this.positionOf(key);
+    return (pos < 0) ? -1 : this.liveIndex(pos);
+  } // indexOf(K)
+
   /**
    * Remove the key/value pair associated with a key. Future calls
    * to get(key) will throw an exception. If the key does not appear
    * in the associative array, does nothing.
    *
+   * The pair is replaced by a tombstone, so removal takes expected
+   * constant time; the array is compacted once tombstones make up
+   * more than MAX_TOMBSTONE_RATIO of it.
+   *
    * @param key
    *            The key to remove.
    */
   public void remove(K key) {
 
-    if (!this.hasKey(key)) {
+    if (key == null) {
       return;
     } // if
 
-    int index = 0;
+    this.removeKey(key);
+  } // remove(K)
 
-    for (int i = 0; i < this.size; i++) {
-      if (pairs[i].key.equals(key)) {
-        index = i;
+  /**
+   * Write the array to out in the same form as toString. Each pair is
+   * written as we reach it, so no intermediate strings are built.
+   *
+   * @param out
+   *   Where to write the array.
+   *
+   * @throws IOException
+   *   If out throws one.
+   */
+  public void writeTo(Appendable out) throws IOException {
+    this.writeTo(out, Integer.MAX_VALUE);
+  } // writeTo(Appendable)
+
+  /**
+   * Write at most the first maxEntries pairs of the array to out. If
+   * some pairs are left out, "..." takes their place.
+   *
+   * @param out
+   *   Where to write the array.
+   * @param maxEntries
+   *   The largest number of pairs to write.
+   *
+   * @throws IOException
+   *   If out throws one.
+   */
+  public void writeTo(Appendable out, int maxEntries) throws IOException {
+    out.append('{');
+    int written = 0;
+    for (int i = 0; i < this.used; i++) {
+      if (this.pairs[i] == null) {
+        continue;
+      } // if
+      if (written > 0) {
+        out.append(", ");
       } // if
+      if (written == maxEntries) {
+        out.append("...");
+        break;
+      } // if
+      this.pairs[i].writeTo(out);
+      written++;
     } // for-loop
+    out.append('}');
+  } // writeTo(Appendable, int)
 
-    for (int i = index; i < this.size - 1; i++) {
-      pairs[i] = pairs[i + 1];
+  /**
+   * Call action on each key/value pair, in insertion order. Unlike
+   * keyStrings(), this allocates nothing.
+   *
+   * @param action
+   *            The action to apply to each key and its value.
+   */
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    for (int i = 0; i < this.used; i++) {
+      if (this.pairs[i] != null) {
+        action.accept(this.pairs[i].key, this.pairs[i].val);
+      } // if
     } // for-loop
+  } // forEach(BiConsumer)
 
-    this.size--;
-  } // remove(K)
+  /**
+   * Get a read-only view of the keys, in insertion order. The view is
+   * not a copy: it reflects later changes to the associative array,
+   * and the same view is returned on every call.
+   *
+   * @return the list of keys.
+   */
+  public List<K> keys() {
+    if (this.keyView == null) {
+      this.keyView = new KeyView();
+    } // if
+    return this.keyView;
+  } // keys()
 
   /**
    * Creates an array of the keys as strings.
@@ -233,38 +373,55 @@ public class AssociativeArray<K, V> {
    */
   public String[] keyStrings() {
     String[] keys = new String[this.size];
-    for (int i = 0; i < this.size; i++) {
-      keys[i] = this.pairs[i].key.toString();
+    int k = 0;
+    for (int i = 0; i < this.used; i++) {
+      if (this.pairs[i] != null) {
+        keys[k++] = this.pairs[i].key.toString();
+      } // if
     } // for-loop
     return keys;
   } // keyStrings()
 
-  /**
-   * Determine how many key/value pairs are in the associative array.
-   *
-   * @return The number of key/value pairs in the array.
-   */
-  public int size() {
-    return this.size;
-  } // size()
-
   // +-----------------+---------------------------------------------
   // | Private Methods |
   // +-----------------+
 
-  /**
-   * Expand the underlying array.
-   */
-  void expand() {
-    this.pairs = java.util.Arrays.copyOf(this.pairs, this.pairs.length * 2);
-  } // expand()
+  @Override
+  int capacity() {
+    return this.pairs.length;
+  } // capacity()
+
+  @Override
+  boolean isLive(int pos) {
+    return this.pairs[pos] != null;
+  } // isLive(int)
+
+  @Override
+  boolean keyEquals(int pos, Object key) {
+    return this.pairs[pos].key.equals(key);
+  } // keyEquals(int, Object)
+
+  @Override
+  void moveEntry(int from, int to) {
+    this.pairs[to] = this.pairs[from];
+  } // moveEntry(int, int)
+
+  @Override
+  void clearEntry(int pos) {
+    this.pairs[pos] = null;
+  } // clearEntry(int)
+
+  @Override
+  void resize(int capacity) {
+    this.pairs = Arrays.copyOf(this.pairs, capacity);
+  } // resize(int)
 
   /**
-   * Find the index of the first entry in `pairs` that contains key.
-   * If no such entry is found, throws an exception.
+   * Find the index of the entry in `pairs` that contains key. If no
+   * such entry is found, throws an exception.
    *
    * @param key
-   *            The key of the entry.
+   *            The (non-null) key of the entry.
    *
    * @return
    *         The index of the key, if found.
@@ -274,11 +431,69 @@ public class AssociativeArray<K, V> {
    *                              array.
    */
   int find(K key) throws KeyNotFoundException {
-    for (int i = 0; i < this.size; i++) {
-      if (pairs[i].key.equals(key)) {
-        return i;
-      } // if
-    } // for-loop
-    throw new KeyNotFoundException();
+    int pos = this.positionOf(key);
+    if (pos < 0) {
+      throw new KeyNotFoundException();
+    } // if
+    return pos;
   } // find(K)
+
+  /**
+   * Find the key of the i-th live entry.
+   *
+   * @param i
+   *            The index of the entry among the live entries.
+   *
+   * @return its key.
+   */
+  K keyAt(int i) {
+    return this.pairs[this.livePosition(i)].key;
+  } // keyAt(int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A read-only list view of the keys.
+   */
+  class KeyView extends AbstractList<K> implements RandomAccess {
+    @Override
+    public K get(int i) {
+      Objects.checkIndex(i, AssociativeArray.this.size);
+      return AssociativeArray.this.keyAt(i);
+    } // get(int)
+
+    @Override
+    public int size() {
+      return AssociativeArray.this.size;
+    } // size()
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+      // hasKey only calls hashCode and equals on o, which every object
+      // has, so the cast is harmless.
+      return AssociativeArray.this.hasKey((K) o);
+    } // contains(Object)
+
+    @Override
+    public Iterator<K> iterator() {
+      return new Iterator<K>() {
+        int pos = 0;
+
+        public boolean hasNext() {
+          pos = AssociativeArray.this.nextLive(pos);
+          return pos < AssociativeArray.this.used;
+        } // hasNext()
+
+        public K next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          } // if
+          return AssociativeArray.this.pairs[pos++].key;
+        } // next()
+      }; // new Iterator
+    } // iterator()
+  } // class KeyView
 } // class AssociativeArray
\ No newline at end of file
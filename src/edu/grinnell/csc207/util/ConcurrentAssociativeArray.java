@@ -0,0 +1,239 @@
+package edu.grinnell.csc207.util;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * An associative array that many threads may read while others write
+ * to it. Readers work on an immutable snapshot, published through a
+ * volatile field, so reads never lock. Writers are serialized; each
+ * write derives a new PersistentAssociativeArray from the current
+ * snapshot, which copies only the changed path, and publishes it.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ *
+ * @author Alex Cyphers
+ */
+public class ConcurrentAssociativeArray<K, V> {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The current contents.
+   */
+  volatile PersistentAssociativeArray<K, V> snapshot;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty associative array.
+   */
+  public ConcurrentAssociativeArray() {
+    this.snapshot = new PersistentAssociativeArray<>();
+  } // ConcurrentAssociativeArray()
+
+  /**
+   * Create a new associative array with the same contents as an
+   * ordinary one, without the cost of publishing each pair.
+   *
+   * @param contents
+   *   The pairs to start with; later changes to contents are not seen.
+   */
+  public ConcurrentAssociativeArray(AssociativeArray<K, V> contents) {
+    PersistentAssociativeArray<K, V> result = new PersistentAssociativeArray<>();
+    try {
+      for (K key : contents.keys()) {
+        result = result.with(key, contents.getOrDefault(key, null));
+      } // for-loop
+    } catch (NullKeyException e) {
+      // Keys in an associative array are never null.
+    } // try/catch
+    this.snapshot = result;
+  } // ConcurrentAssociativeArray(AssociativeArray)
+
+  /**
+   * Create a new associative array whose contents start as a snapshot.
+   *
+   * @param snapshot
+   *   The contents to start with.
+   */
+  public ConcurrentAssociativeArray(PersistentAssociativeArray<K, V> snapshot) {
+    this.snapshot = snapshot;
+  } // ConcurrentAssociativeArray(PersistentAssociativeArray)
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this associative array. Since snapshots never
+   * change, the copy can share the current one.
+   *
+   * @return a new copy of the array
+   */
+  public ConcurrentAssociativeArray<K, V> clone() {
+    return new ConcurrentAssociativeArray<>(this.snapshot);
+  } // clone()
+
+  /**
+   * Convert the array to a string.
+   *
+   * @return a string of the form "{Key0:Value0, Key1:Value1, ... KeyN:ValueN}"
+   */
+  public String toString() {
+    return this.snapshot.toString();
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Set the value associated with key to value. Readers see either
+   * the old contents or the new ones, never a mix.
+   *
+   * @param key
+   *   The key whose value we are setting.
+   * @param value
+   *   The value of that key.
+   *
+   * @throws NullKeyException
+   *   If the client provides a null key.
+   */
+  public synchronized void set(K key, V value) throws NullKeyException {
+    if (key == null) {
+      throw new NullKeyException();
+    } // if
+
+    this.snapshot = this.snapshot.with(key, value);
+  } // set(K,V)
+
+  /**
+   * Get the value associated with key.
+   *
+   * @param key
+   *   A key
+   *
+   * @return the corresponding value
+   *
+   * @throws KeyNotFoundException
+   *   when the key is null or does not appear in the associative array.
+   */
+  public V get(K key) throws KeyNotFoundException {
+    return this.snapshot.get(key);
+  } // get(K)
+
+  /**
+   * Get the value associated with key, or a default value if key does
+   * not appear.
+   *
+   * @param key
+   *   A key
+   * @param defaultValue
+   *   The value to return if key is null or does not appear.
+   *
+   * @return the corresponding value, or defaultValue.
+   */
+  public V getOrDefault(K key, V defaultValue) {
+    return this.snapshot.getOrDefault(key, defaultValue);
+  } // getOrDefault(K, V)
+
+  /**
+   * Find where key appears among the keys.
+   *
+   * @param key
+   *   The key we're looking for.
+   *
+   * @return the index of key, or -1 if key is null or does not appear.
+   */
+  public int indexOf(K key) {
+    return this.snapshot.indexOf(key);
+  } // indexOf(K)
+
+  /**
+   * Determine if key appears in the associative array.
+   *
+   * @param key
+   *   The key we're looking for.
+   *
+   * @return true if the key appears and false otherwise.
+   */
+  public boolean hasKey(K key) {
+    return this.snapshot.hasKey(key);
+  } // hasKey(K)
+
+  /**
+   * Remove the key/value pair associated with a key. If the key does
+   * not appear in the associative array, does nothing.
+   *
+   * @param key
+   *   The key to remove.
+   */
+  public synchronized void remove(K key) {
+    this.snapshot = this.snapshot.without(key);
+  } // remove(K)
+
+  /**
+   * Replace all of the contents at once. Readers see either the old
+   * contents or the new ones, never a mix.
+   *
+   * @param contents
+   *   The new contents.
+   */
+  public synchronized void replace(PersistentAssociativeArray<K, V> contents) {
+    this.snapshot = contents;
+  } // replace(PersistentAssociativeArray)
+
+  /**
+   * Get the current contents. Later writes do not affect the result,
+   * and getting it takes constant time.
+   *
+   * @return the current snapshot.
+   */
+  public PersistentAssociativeArray<K, V> snapshot() {
+    return this.snapshot;
+  } // snapshot()
+
+  /**
+   * Call action on each key/value pair of the current snapshot, in
+   * insertion order.
+   *
+   * @param action
+   *   The action to apply to each key and its value.
+   */
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    this.snapshot.forEach(action);
+  } // forEach(BiConsumer)
+
+  /**
+   * Get a read-only view of the keys of the current snapshot. Later
+   * writes do not change the view; call keys() again to see them.
+   *
+   * @return the list of keys.
+   */
+  public List<K> keys() {
+    return this.snapshot.keys();
+  } // keys()
+
+  /**
+   * Creates an array of the keys as strings.
+   *
+   * @return the string array of keys.
+   */
+  public String[] keyStrings() {
+    return this.snapshot.keyStrings();
+  } // keyStrings()
+
+  /**
+   * Determine how many key/value pairs are in the associative array.
+   *
+   * @return The number of key/value pairs in the array.
+   */
+  public int size() {
+    return this.snapshot.size();
+  } // size()
+} // class ConcurrentAssociativeArray
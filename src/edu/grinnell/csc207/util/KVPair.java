@@ -1,5 +1,7 @@
 package edu.grinnell.csc207.util;
 
+import java.io.IOException;
+
 /**
  * An easy way to store key/value pairs.  We assume that other
  * classes will access fields directly.
@@ -68,10 +70,51 @@ class KVPair<K, V> {
    * @return a string of the form "key:value".
    */
   public String toString() {
-    if (null == this.val) {
-      return this.key.toString() + ":" + "null";
-    } else {
-      return this.key.toString() + ":" + this.val.toString();
-    } // if
+    StringBuilder str = new StringBuilder();
+    try {
+      this.writeTo(str);
+    } catch (IOException e) {
+      // StringBuilders do not throw IOExceptions.
+    } // try/catch
+    return str.toString();
   } // toString()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Write the key/value pair, in the form "key:value", to out.
+   *
+   * @param out
+   *   Where to write the pair.
+   *
+   * @throws IOException
+   *   If out throws one.
+   */
+  void writeTo(Appendable out) throws IOException {
+    write(out, this.key);
+    out.append(':');
+    write(out, this.val);
+  } // writeTo(Appendable)
+
+  /**
+   * Write an object (or "null") to out. Strings and other character
+   * sequences are appended directly rather than through toString.
+   *
+   * @param out
+   *   Where to write the object.
+   * @param obj
+   *   The object.
+   *
+   * @throws IOException
+   *   If out throws one.
+   */
+  static void write(Appendable out, Object obj) throws IOException {
+    if (obj instanceof CharSequence) {
+      out.append((CharSequence) obj);
+    } else {
+      out.append(String.valueOf(obj));
+    } // if/else
+  } // write(Appendable, Object)
 } // class KVPair
\ No newline at end of file
@@ -0,0 +1,312 @@
+package edu.grinnell.csc207.util;
+
+import java.util.Arrays;
+
+/**
+ * An index of words by their bigrams (pairs of adjacent characters,
+ * counting the start and end of the word), which supports finding all
+ * of the words within a given edit (Levenshtein) distance of a query
+ * without comparing the query with every word.
+ *
+ * Each edit destroys at most two of the bigrams of a word, so a word
+ * within k edits of the query shares all but at most 2k of the
+ * query's distinct bigrams. A search counts the shared bigrams of the
+ * words that have any, and only computes the edit distance of those
+ * with enough of them.
+ *
+ * An index is not safe to use from several threads at once, even for
+ * searches, since searches keep their counts in the index.
+ *
+ * @author Alex Cyphers
+ */
+public class NGramIndex {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** The character that marks the start of a word. */
+  static final char START = '\u0002';
+
+  /** The character that marks the end of a word. */
+  static final char END = '\u0003';
+
+  // +------------------+--------------------------------------------
+  // | Inner Interfaces |
+  // +------------------+
+
+  /**
+   * Something to do with each word found by a search.
+   */
+  @FunctionalInterface
+  public interface Visitor {
+    /**
+     * Visit a word.
+     *
+     * @param word
+     *   The word.
+     * @param distance
+     *   Its distance from the query.
+     */
+    void visit(String word, int distance);
+  } // interface Visitor
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The ids of the words that have each bigram.
+   */
+  StringAssociativeArray<Postings> postings;
+
+  /**
+   * The id of each word.
+   */
+  StringAssociativeArray<Integer> ids;
+
+  /**
+   * The words, by id.
+   */
+  String[] words;
+
+  /**
+   * The number of words.
+   */
+  int size;
+
+  /**
+   * The number of shared bigrams of each word during a search.
+   */
+  int[] shared;
+
+  /**
+   * The ids of the words that share a bigram during a search.
+   */
+  int[] touched;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty index.
+   */
+  public NGramIndex() {
+    this.postings = new StringAssociativeArray<>();
+    this.ids = new StringAssociativeArray<>();
+    this.words = new String[16];
+    this.shared = new int[16];
+    this.touched = new int[16];
+    this.size = 0;
+  } // NGramIndex()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Add a word to the index. Adding a word that is already there does
+   * nothing.
+   *
+   * @param word
+   *   The (non-null) word to add.
+   */
+  public void add(String word) {
+    if (this.ids.hasKey(word)) {
+      return;
+    } // if
+    if (this.size == this.words.length) {
+      this.words = Arrays.copyOf(this.words, this.size * 2);
+      this.shared = Arrays.copyOf(this.shared, this.size * 2);
+      this.touched = Arrays.copyOf(this.touched, this.size * 2);
+    } // if
+    int id = this.size++;
+    this.words[id] = word;
+    try {
+      this.ids.set(word, id);
+      for (String bigram : bigrams(word)) {
+        Postings postings = this.postings.getOrDefault(bigram, null);
+        if (postings == null) {
+          postings = new Postings();
+          this.postings.set(bigram, postings);
+        } // if
+        postings.add(id);
+      } // for
+    } catch (NullKeyException e) {
+      // Should not receive a null key.
+    } // try/catch
+  } // add(String)
+
+  /**
+   * Call visitor on each word within maxDistance edits of query, in
+   * no particular order.
+   *
+   * @param query
+   *   The word to look for.
+   * @param maxDistance
+   *   The largest distance of a word to visit.
+   * @param visitor
+   *   What to do with each word found.
+   */
+  public void forEachWithin(String query, int maxDistance, Visitor visitor) {
+    String[] grams = bigrams(query);
+    int needed = grams.length - 2 * maxDistance;
+    if (needed <= 0) {
+      // Too few bigrams to filter by, so check every word.
+      for (int id = 0; id < this.size; id++) {
+        this.check(id, query, maxDistance, visitor);
+      } // for
+      return;
+    } // if
+
+    int touchedCount = 0;
+    for (String gram : grams) {
+      Postings postings = this.postings.getOrDefault(gram, null);
+      if (postings == null) {
+        continue;
+      } // if
+      for (int p = 0; p < postings.size; p++) {
+        int id = postings.ids[p];
+        if (this.shared[id]++ == 0) {
+          this.touched[touchedCount++] = id;
+        } // if
+      } // for
+    } // for
+    for (int t = 0; t < touchedCount; t++) {
+      int id = this.touched[t];
+      if (this.shared[id] >= needed) {
+        this.check(id, query, maxDistance, visitor);
+      } // if
+      this.shared[id] = 0;
+    } // for
+  } // forEachWithin(String, int, Visitor)
+
+  /**
+   * Determine how many words are in the index.
+   *
+   * @return the number of words.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  /**
+   * Find the edit distance between two strings (the fewest insertions,
+   * deletions, and substitutions of characters that turn one into the
+   * other), if it is at most max.
+   *
+   * @param a
+   *   One string.
+   * @param b
+   *   The other string.
+   * @param max
+   *   The largest distance of interest.
+   *
+   * @return the distance, or max + 1 if it is more than max.
+   */
+  public static int distance(String a, String b, int max) {
+    if (Math.abs(a.length() - b.length()) > max) {
+      return max + 1;
+    } // if
+    int[] prev = new int[b.length() + 1];
+    int[] curr = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) {
+      prev[j] = j;
+    } // for
+    for (int i = 1; i <= a.length(); i++) {
+      curr[0] = i;
+      int rowMin = i;
+      char ch = a.charAt(i - 1);
+      for (int j = 1; j <= b.length(); j++) {
+        int cost = (ch == b.charAt(j - 1)) ? 0 : 1;
+        curr[j] = Math.min(prev[j - 1] + cost,
+            Math.min(prev[j], curr[j - 1]) + 1);
+        rowMin = Math.min(rowMin, curr[j]);
+      } // for
+      if (rowMin > max) {
+        return max + 1;
+      } // if
+      int[] tmp = prev;
+      prev = curr;
+      curr = tmp;
+    } // for
+    return Math.min(prev[b.length()], max + 1);
+  } // distance(String, String, int)
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Find the distinct bigrams of a word, including the ones at its
+   * start and end.
+   *
+   * @param word
+   *   The word.
+   *
+   * @return the bigrams.
+   */
+  static String[] bigrams(String word) {
+    String padded = START + word + END;
+    String[] grams = new String[padded.length() - 1];
+    int count = 0;
+    for (int i = 0; i + 1 < padded.length(); i++) {
+      String gram = padded.substring(i, i + 2);
+      boolean seen = false;
+      for (int g = 0; g < count && !seen; g++) {
+        seen = grams[g].equals(gram);
+      } // for
+      if (!seen) {
+        grams[count++] = gram;
+      } // if
+    } // for
+    return Arrays.copyOf(grams, count);
+  } // bigrams(String)
+
+  /**
+   * Visit a word if it is close enough to the query.
+   *
+   * @param id
+   *   The id of the word.
+   * @param query
+   *   The query.
+   * @param maxDistance
+   *   The largest distance of a word to visit.
+   * @param visitor
+   *   What to do with the word.
+   */
+  void check(int id, String query, int maxDistance, Visitor visitor) {
+    int d = distance(query, this.words[id], maxDistance);
+    if (d <= maxDistance) {
+      visitor.visit(this.words[id], d);
+    } // if
+  } // check(int, String, int, Visitor)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * The ids of the words that have a bigram.
+   */
+  static final class Postings {
+    /** The ids; only the first size are used. */
+    int[] ids = new int[2];
+
+    /** The number of ids. */
+    int size;
+
+    /**
+     * Add an id.
+     *
+     * @param id
+     *   The id.
+     */
+    void add(int id) {
+      if (this.size == this.ids.length) {
+        this.ids = Arrays.copyOf(this.ids, this.size * 2);
+      } // if
+      this.ids[this.size++] = id;
+    } // add(int)
+  } // class Postings
+} // class NGramIndex
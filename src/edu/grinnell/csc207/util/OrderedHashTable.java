@@ -0,0 +1,510 @@
+package edu.grinnell.csc207.util;
+
+import java.util.Arrays;
+
+/**
+ * The part of an insertion-ordered hash table that does not depend on
+ * how its entries are stored, shared by AssociativeArray and
+ * StringAssociativeArray. A subclass keeps its keys and values in
+ * arrays of its own, by position, in insertion order; this class keeps
+ * the cached hash of each entry and an open-addressing index from keys
+ * to positions, and handles growth, removal with tombstones, and
+ * compaction. The subclass only says how to compare, move, clear and
+ * reallocate its entries.
+ *
+ * A removed entry leaves a tombstone behind, so removal takes expected
+ * constant time; the entries are compacted once tombstones make up
+ * more than MAX_TOMBSTONE_RATIO of the used positions.
+ *
+ * @author Alex Cyphers
+ */
+abstract class OrderedHashTable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default capacity of the initial arrays.
+   */
+  static final int DEFAULT_CAPACITY = 16;
+
+  /**
+   * The number of hash slots we keep for each entry position. Keeping
+   * the index at least twice as large as the entries bounds its load
+   * factor by one half, which keeps linear probe sequences short.
+   */
+  static final int INDEX_SCALE = 2;
+
+  /**
+   * The value of an unused slot in the hash index.
+   */
+  static final int EMPTY = 0;
+
+  /**
+   * The largest fraction of the used positions that may hold
+   * tombstones (removed entries) before we compact the entries.
+   */
+  static final double MAX_TOMBSTONE_RATIO = 0.5;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of live entries (key/value pairs).
+   */
+  int size;
+
+  /**
+   * The number of positions in use, including tombstones. Positions
+   * from `used` on are free.
+   */
+  int used;
+
+  /**
+   * The cached (spread) hash codes of the keys, by position.
+   */
+  int[] hashes;
+
+  /**
+   * An open-addressing hash index into the entries. Each slot holds
+   * either EMPTY or one more than the position of an entry, so that
+   * lookups take expected constant time while the entries keep
+   * insertion order.
+   */
+  int[] index;
+
+  /**
+   * The positions of the live entries, in order, or null if they have
+   * not been needed since the entries last changed. Looking up keys by
+   * index when there are tombstones would otherwise take a pass over the
+   * entries each time. Readers may build it at the same time, which is
+   * harmless, so it is published through a volatile field.
+   */
+  volatile int[] livePositions;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create the index of an empty table whose subclass has room for a
+   * given number of entries.
+   *
+   * @param capacity
+   *   The number of entry positions, at least one.
+   */
+  OrderedHashTable(int capacity) {
+    this.hashes = new int[capacity];
+    this.index = new int[indexSize(capacity)];
+    this.size = 0;
+    this.used = 0;
+  } // OrderedHashTable(int)
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Release unused capacity, e.g., once the array has been filled.
+   * Also drops any tombstones.
+   */
+  public void trimToSize() {
+    if (this.capacity() != Math.max(this.size, 1) || this.used != this.size) {
+      this.compact(Math.max(this.size, 1));
+    } // if
+  } // trimToSize()
+
+  /**
+   * Determine how many key/value pairs are in the associative array.
+   *
+   * @return The number of key/value pairs in the array.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  // +------------------+--------------------------------------------
+  // | Abstract Methods |
+  // +------------------+
+
+  /**
+   * Determine how many entries the subclass has room for.
+   *
+   * @return the number of entry positions.
+   */
+  abstract int capacity();
+
+  /**
+   * Determine whether a position holds an entry rather than a
+   * tombstone.
+   *
+   * @param pos
+   *   The position, which is less than `used`.
+   *
+   * @return true for an entry, and false for a tombstone.
+   */
+  abstract boolean isLive(int pos);
+
+  /**
+   * Determine whether the key of an entry equals a key.
+   *
+   * @param pos
+   *   The position of the entry, which is not a tombstone.
+   * @param key
+   *   The (non-null) key.
+   *
+   * @return true if the keys are equal, and false otherwise.
+   */
+  abstract boolean keyEquals(int pos, Object key);
+
+  /**
+   * Copy the key and value of an entry to another position.
+   *
+   * @param from
+   *   The position of the entry.
+   * @param to
+   *   Its new position, which is earlier.
+   */
+  abstract void moveEntry(int from, int to);
+
+  /**
+   * Clear a position, leaving a tombstone (or free space) behind.
+   *
+   * @param pos
+   *   The position.
+   */
+  abstract void clearEntry(int pos);
+
+  /**
+   * Reallocate the entries with a new capacity, keeping the first
+   * `used` of them.
+   *
+   * @param capacity
+   *   The new number of entry positions, at least `used`.
+   */
+  abstract void resize(int capacity);
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Find the position of the entry for a key.
+   *
+   * @param key
+   *   The (non-null) key.
+   *
+   * @return its position, or -1 if the key does not appear.
+   */
+  int positionOf(Object key) {
+    return this.index[this.slotFor(key, hash(key))] - 1;
+  } // positionOf(Object)
+
+  /**
+   * Find the slot of the hash index that refers to key or, if key does
+   * not appear, the empty slot at which it would be inserted.
+   *
+   * @param key
+   *   The (non-null) key to look for.
+   * @param hash
+   *   The hash of that key, as computed by hash(Object).
+   *
+   * @return the slot in `index`.
+   */
+  int slotFor(Object key, int hash) {
+    int mask = this.index.length - 1;
+    int slot = hash & mask;
+    int entry;
+    while ((entry = this.index[slot]) != EMPTY) {
+      if (this.hashes[entry - 1] == hash && this.keyEquals(entry - 1, key)) {
+        return slot;
+      } // if
+      slot = (slot + 1) & mask;
+    } // while
+    return slot;
+  } // slotFor(Object, int)
+
+  /**
+   * Add an entry for a key that does not appear, growing the entries
+   * if they are full. The caller then stores the key and value at the
+   * position returned; since growing reallocates the entries, it must
+   * not read its arrays until this returns.
+   *
+   * @param key
+   *   The key.
+   * @param hash
+   *   Its hash.
+   * @param slot
+   *   The empty slot that slotFor found for it.
+   *
+   * @return the position of the new entry.
+   */
+  int append(Object key, int hash, int slot) {
+    if (this.used == this.capacity()) {
+      this.expand();
+      slot = this.slotFor(key, hash);
+    } // if
+    this.hashes[this.used] = hash;
+    this.index[slot] = ++this.used;
+    this.size++;
+    this.forgetPositions();
+    return this.used - 1;
+  } // append(Object, int, int)
+
+  /**
+   * Add an entry for a key that is known not to appear, without
+   * comparing it with any other key. There must already be room for
+   * it, e.g., from ensureRoom.
+   *
+   * @param hash
+   *   The hash of the key.
+   *
+   * @return the position of the new entry.
+   */
+  int appendDistinct(int hash) {
+    int mask = this.index.length - 1;
+    int slot = hash & mask;
+    while (this.index[slot] != EMPTY) {
+      slot = (slot + 1) & mask;
+    } // while
+    this.hashes[this.used] = hash;
+    this.index[slot] = ++this.used;
+    this.size++;
+    this.forgetPositions();
+    return this.used - 1;
+  } // appendDistinct(int)
+
+  /**
+   * Remove the entry for a key, if there is one, leaving a tombstone.
+   *
+   * @param key
+   *   The (non-null) key.
+   *
+   * @return true if there was an entry, and false otherwise.
+   */
+  boolean removeKey(Object key) {
+    int slot = this.slotFor(key, hash(key));
+    if (this.index[slot] == EMPTY) {
+      return false;
+    } // if
+
+    int pos = this.index[slot] - 1;
+    this.unindex(slot);
+    this.clearEntry(pos);
+    this.size--;
+    this.forgetPositions();
+
+    // Tombstones at the end of the used region can simply be released.
+    while (this.used > 0 && !this.isLive(this.used - 1)) {
+      this.used--;
+    } // while
+
+    if (this.used - this.size > this.used * MAX_TOMBSTONE_RATIO) {
+      this.compact(this.capacity());
+    } // if
+    return true;
+  } // removeKey(Object)
+
+  /**
+   * Make room for another entry. The hash index grows with the entries
+   * so that it stays at least INDEX_SCALE times as large. If enough of
+   * the entries are tombstones, we reclaim them rather than growing.
+   */
+  void expand() {
+    if (this.used - this.size >= this.used * MAX_TOMBSTONE_RATIO / 2) {
+      this.compact(this.capacity());
+    } else {
+      this.compact(this.capacity() * 2);
+    } // if/else
+  } // expand()
+
+  /**
+   * Make sure there is room for a number of additional entries,
+   * growing at most once.
+   *
+   * @param extra
+   *   The number of entries we are about to add.
+   */
+  void ensureRoom(int extra) {
+    if (this.used + extra > this.capacity()) {
+      this.compact(Math.max(this.size + extra, this.capacity()));
+    } // if
+  } // ensureRoom(int)
+
+  /**
+   * Move the live entries to the front, dropping tombstones, give the
+   * entries a new capacity, and rebuild the hash index. Takes a single
+   * pass over the used positions.
+   *
+   * @param capacity
+   *   The new capacity; must be at least `size`.
+   */
+  void compact(int capacity) {
+    int live = 0;
+    for (int pos = 0; pos < this.used; pos++) {
+      if (this.isLive(pos)) {
+        if (pos != live) {
+          this.moveEntry(pos, live);
+          this.hashes[live] = this.hashes[pos];
+        } // if
+        live++;
+      } // if
+    } // for-loop
+    for (int pos = live; pos < this.used; pos++) {
+      this.clearEntry(pos);
+    } // for-loop
+    this.used = live;
+    this.forgetPositions();
+    if (capacity != this.capacity()) {
+      this.resize(capacity);
+      this.hashes = Arrays.copyOf(this.hashes, capacity);
+    } // if
+    this.rehash();
+  } // compact(int)
+
+  /**
+   * Rebuild the hash index from the cached hashes of the entries, which
+   * have no tombstones among them.
+   */
+  void rehash() {
+    this.index = new int[indexSize(this.capacity())];
+    int mask = this.index.length - 1;
+    for (int pos = 0; pos < this.used; pos++) {
+      int slot = this.hashes[pos] & mask;
+      while (this.index[slot] != EMPTY) {
+        slot = (slot + 1) & mask;
+      } // while
+      this.index[slot] = pos + 1;
+    } // for-loop
+  } // rehash()
+
+  /**
+   * Clear a slot of the hash index, shifting later entries of the same
+   * probe sequence back so that no lookup skips over the hole.
+   *
+   * @param slot
+   *   The slot to clear.
+   */
+  void unindex(int slot) {
+    int mask = this.index.length - 1;
+    int hole = slot;
+    int next = (hole + 1) & mask;
+    while (this.index[next] != EMPTY) {
+      int home = this.hashes[this.index[next] - 1] & mask;
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        this.index[hole] = this.index[next];
+        hole = next;
+      } // if
+      next = (next + 1) & mask;
+    } // while
+    this.index[hole] = EMPTY;
+  } // unindex(int)
+
+  /**
+   * Find the first live position at or after a position.
+   *
+   * @param pos
+   *   The position to start from.
+   *
+   * @return the live position, or `used` if there is none.
+   */
+  int nextLive(int pos) {
+    while (pos < this.used && !this.isLive(pos)) {
+      pos++;
+    } // while
+    return pos;
+  } // nextLive(int)
+
+  /**
+   * Find where an entry comes among the live entries. When there are
+   * no tombstones, that is simply its position.
+   *
+   * @param pos
+   *   The position of the entry.
+   *
+   * @return the number of live entries before it.
+   */
+  int liveIndex(int pos) {
+    if (this.used == this.size) {
+      return pos;
+    } // if
+    return Arrays.binarySearch(this.livePositions(), pos);
+  } // liveIndex(int)
+
+  /**
+   * Find the position of the i-th live entry. When there are no
+   * tombstones, that is simply i.
+   *
+   * @param i
+   *   The index of the entry among the live entries.
+   *
+   * @return its position.
+   */
+  int livePosition(int i) {
+    if (this.used == this.size) {
+      return i;
+    } // if
+    return this.livePositions()[i];
+  } // livePosition(int)
+
+  /**
+   * Get the positions of the live entries, finding them if they have
+   * changed since they were last needed. That takes a pass over the
+   * entries, but only once for any number of lookups between changes.
+   *
+   * @return the positions, in order.
+   */
+  int[] livePositions() {
+    int[] positions = this.livePositions;
+    if (positions == null) {
+      positions = new int[this.size];
+      int i = 0;
+      for (int pos = 0; pos < this.used; pos++) {
+        if (this.isLive(pos)) {
+          positions[i++] = pos;
+        } // if
+      } // for-loop
+      this.livePositions = positions;
+    } // if
+    return positions;
+  } // livePositions()
+
+  /**
+   * Drop the positions of the live entries, since they have changed.
+   * The field is only written when there is something to drop, so
+   * adding entries costs no more than it did before it existed.
+   */
+  void forgetPositions() {
+    if (this.livePositions != null) {
+      this.livePositions = null;
+    } // if
+  } // forgetPositions()
+
+  /**
+   * Determine the size of the hash index for a given capacity: the
+   * smallest power of two that is at least INDEX_SCALE times as large.
+   *
+   * @param capacity
+   *   The number of entry positions.
+   *
+   * @return the number of slots in the index.
+   */
+  static int indexSize(int capacity) {
+    return Integer.highestOneBit(Math.max(capacity * INDEX_SCALE - 1, 1)) << 1;
+  } // indexSize(int)
+
+  /**
+   * Compute the hash we use for a key. The high bits are folded into
+   * the low ones, since the index only looks at the low bits.
+   *
+   * @param key
+   *   The (non-null) key.
+   *
+   * @return the spread hash code of key.
+   */
+  static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  } // hash(Object)
+} // class OrderedHashTable
@@ -0,0 +1,773 @@
+package edu.grinnell.csc207.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable associative array. Rather than changing the array,
+ * with and without return new arrays that share all but the changed
+ * path with the original, so keeping old versions around (e.g., for
+ * undo, or for readers that should not see later changes) is cheap,
+ * and clone() is free.
+ *
+ * The pairs are kept in insertion order in a persistent vector (a
+ * 32-way trie indexed by position), and a hash array mapped trie maps
+ * each key to its position. Both tries are at most seven levels deep,
+ * so lookups and updates take effectively constant time.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ *
+ * @author Alex Cyphers
+ */
+public class PersistentAssociativeArray<K, V> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of hash or position bits consumed by each trie level.
+   */
+  static final int BITS = 5;
+
+  /**
+   * The number of children of a full trie node.
+   */
+  static final int WIDTH = 1 << BITS;
+
+  /**
+   * The mask for the bits of one level.
+   */
+  static final int MASK = WIDTH - 1;
+
+  /**
+   * A hash trie node with no children.
+   */
+  static final Node EMPTY_NODE = new Node(0, new Object[0]);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The root of the hash trie that maps keys to positions.
+   */
+  final Node root;
+
+  /**
+   * The root of the vector of pairs. Removed pairs leave null
+   * tombstones behind.
+   */
+  final Object[] pairs;
+
+  /**
+   * The shift of the root of the vector (zero when the root is a leaf).
+   */
+  final int shift;
+
+  /**
+   * The number of positions of the vector in use, including tombstones.
+   */
+  final int used;
+
+  /**
+   * The number of key/value pairs.
+   */
+  final int size;
+
+  /**
+   * The read-only view of the keys, created the first time keys() is
+   * called. Racing threads may each create one, which is harmless.
+   */
+  List<K> keyView;
+
+  /**
+   * The positions of the live pairs in the vector, in order, or null if
+   * they have not been needed. Since the array never changes, they are
+   * found at most once (or once per racing thread, which is harmless).
+   */
+  volatile int[] livePositions;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty associative array.
+   */
+  public PersistentAssociativeArray() {
+    this(EMPTY_NODE, new Object[WIDTH], 0, 0, 0);
+  } // PersistentAssociativeArray()
+
+  /**
+   * Create an associative array from its parts.
+   *
+   * @param root
+   *   The root of the hash trie.
+   * @param pairs
+   *   The root of the vector of pairs.
+   * @param shift
+   *   The shift of that root.
+   * @param used
+   *   The number of positions used in the vector.
+   * @param size
+   *   The number of live pairs.
+   */
+  PersistentAssociativeArray(Node root, Object[] pairs, int shift, int used,
+      int size) {
+    this.root = root;
+    this.pairs = pairs;
+    this.shift = shift;
+    this.used = used;
+    this.size = size;
+  } // PersistentAssociativeArray(Node, Object[], int, int, int)
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this associative array. Since it never changes,
+   * the copy is the array itself.
+   *
+   * @return this array
+   */
+  public PersistentAssociativeArray<K, V> clone() {
+    return this;
+  } // clone()
+
+  /**
+   * Convert the array to a string.
+   *
+   * @return a string of the form "{Key0:Value0, Key1:Value1, ... KeyN:ValueN}"
+   */
+  public String toString() {
+    StringBuilder str = new StringBuilder("{");
+    this.forEach((key, val) -> {
+      if (str.length() > 1) {
+        str.append(", ");
+      } // if
+      str.append(key).append(':').append(val);
+    });
+    return str.append('}').toString();
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Get an associative array like this one, except that key is
+   * associated with value. This array is unchanged.
+   *
+   * @param key
+   *   The key whose value we are setting.
+   * @param value
+   *   The value of that key.
+   *
+   * @return the new array.
+   *
+   * @throws NullKeyException
+   *   If the client provides a null key.
+   */
+  public PersistentAssociativeArray<K, V> with(K key, V value)
+      throws NullKeyException {
+    if (key == null) {
+      throw new NullKeyException();
+    } // if
+
+    int hash = AssociativeArray.hash(key);
+    Leaf leaf = find(this.root, key, hash);
+    KVPair<K, V> pair = new KVPair<>(key, value);
+
+    if (leaf != null) {
+      return new PersistentAssociativeArray<>(this.root,
+          assoc(this.pairs, this.shift, leaf.pos, pair), this.shift,
+          this.used, this.size);
+    } // if
+
+    Object[] newPairs = this.pairs;
+    int newShift = this.shift;
+    if (this.used == 1 << (this.shift + BITS)) {
+      newPairs = new Object[WIDTH];
+      newPairs[0] = this.pairs;
+      newShift += BITS;
+    } // if
+    newPairs = assoc(newPairs, newShift, this.used, pair);
+    Node newRoot = insert(this.root, 0, new Leaf(key, hash, this.used, null));
+    return new PersistentAssociativeArray<>(newRoot, newPairs, newShift,
+        this.used + 1, this.size + 1);
+  } // with(K, V)
+
+  /**
+   * Get an associative array like this one, except without key. If
+   * the key does not appear, returns this array.
+   *
+   * @param key
+   *   The key to remove.
+   *
+   * @return the new array.
+   */
+  public PersistentAssociativeArray<K, V> without(K key) {
+    if (key == null) {
+      return this;
+    } // if
+
+    int hash = AssociativeArray.hash(key);
+    Leaf leaf = find(this.root, key, hash);
+    if (leaf == null) {
+      return this;
+    } // if
+
+    Node newRoot = remove(this.root, 0, key, hash);
+    PersistentAssociativeArray<K, V> result = new PersistentAssociativeArray<>(
+        (newRoot == null) ? EMPTY_NODE : newRoot,
+        assoc(this.pairs, this.shift, leaf.pos, null), this.shift,
+        this.used, this.size - 1);
+    if (result.used - result.size
+        > result.used * AssociativeArray.MAX_TOMBSTONE_RATIO) {
+      result = result.compact();
+    } // if
+    return result;
+  } // without(K)
+
+  /**
+   * Get the value associated with key.
+   *
+   * @param key
+   *   A key
+   *
+   * @return the corresponding value
+   *
+   * @throws KeyNotFoundException
+   *   when the key is null or does not appear in the associative array.
+   */
+  public V get(K key) throws KeyNotFoundException {
+    KVPair<K, V> pair = this.pairFor(key);
+    if (pair == null) {
+      throw new KeyNotFoundException();
+    } // if
+    return pair.val;
+  } // get(K)
+
+  /**
+   * Get the value associated with key, or a default value if key does
+   * not appear.
+   *
+   * @param key
+   *   A key
+   * @param defaultValue
+   *   The value to return if key is null or does not appear.
+   *
+   * @return the corresponding value, or defaultValue.
+   */
+  public V getOrDefault(K key, V defaultValue) {
+    KVPair<K, V> pair = this.pairFor(key);
+    return (pair == null) ? defaultValue : pair.val;
+  } // getOrDefault(K, V)
+
+  /**
+   * Determine if key appears in the associative array.
+   *
+   * @param key
+   *   The key we're looking for.
+   *
+   * @return true if the key appears and false otherwise.
+   */
+  public boolean hasKey(K key) {
+    return (key != null)
+        && (find(this.root, key, AssociativeArray.hash(key)) != null);
+  } // hasKey(K)
+
+  /**
+   * Find where key appears among the keys, in the order given by
+   * keys() and keyStrings().
+   *
+   * @param key
+   *   The key we're looking for.
+   *
+   * @return the index of key, or -1 if key is null or does not appear.
+   */
+  public int indexOf(K key) {
+    if (key == null) {
+      return -1;
+    } // if
+
+    Leaf leaf = find(this.root, key, AssociativeArray.hash(key));
+    if (leaf == null) {
+      return -1;
+    } else if (this.used == this.size) {
+      return leaf.pos;
+    } // if/else
+    return Arrays.binarySearch(this.livePositions(), leaf.pos);
+  } // indexOf(K)
+
+  /**
+   * Call action on each key/value pair, in insertion order.
+   *
+   * @param action
+   *   The action to apply to each key and its value.
+   */
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    forEachIn(this.pairs, this.shift, action);
+  } // forEach(BiConsumer)
+
+  /**
+   * Get a read-only view of the keys, in insertion order.
+   *
+   * @return the list of keys.
+   */
+  public List<K> keys() {
+    if (this.keyView == null) {
+      this.keyView = new KeyView();
+    } // if
+    return this.keyView;
+  } // keys()
+
+  /**
+   * Creates an array of the keys as strings.
+   *
+   * @return the string array of keys.
+   */
+  public String[] keyStrings() {
+    String[] keys = new String[this.size];
+    int[] k = new int[] {0};
+    this.forEach((key, val) -> keys[k[0]++] = key.toString());
+    return keys;
+  } // keyStrings()
+
+  /**
+   * Determine how many key/value pairs are in the associative array.
+   *
+   * @return The number of key/value pairs in the array.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Find the pair for a key.
+   *
+   * @param key
+   *   The key to look for.
+   *
+   * @return the pair, or null if key is null or does not appear.
+   */
+  KVPair<K, V> pairFor(K key) {
+    if (key == null) {
+      return null;
+    } // if
+    Leaf leaf = find(this.root, key, AssociativeArray.hash(key));
+    return (leaf == null) ? null : this.pairAt(leaf.pos);
+  } // pairFor(K)
+
+  /**
+   * Get the pair at a position of the vector.
+   *
+   * @param pos
+   *   The position, which must be less than `used`.
+   *
+   * @return the pair, or null for a tombstone.
+   */
+  @SuppressWarnings("unchecked")
+  KVPair<K, V> pairAt(int pos) {
+    Object[] node = this.pairs;
+    for (int s = this.shift; s > 0; s -= BITS) {
+      node = (Object[]) node[(pos >>> s) & MASK];
+    } // for-loop
+    return (KVPair<K, V>) node[pos & MASK];
+  } // pairAt(int)
+
+  /**
+   * Find the key of the i-th live pair.
+   *
+   * @param i
+   *   The index of the pair among the live pairs.
+   *
+   * @return its key.
+   */
+  K keyAt(int i) {
+    if (this.used == this.size) {
+      return this.pairAt(i).key;
+    } // if
+    return this.pairAt(this.livePositions()[i]).key;
+  } // keyAt(int)
+
+  /**
+   * Get the positions of the live pairs in the vector, finding them the
+   * first time they are needed.
+   *
+   * @return the positions, in order.
+   */
+  int[] livePositions() {
+    int[] positions = this.livePositions;
+    if (positions == null) {
+      positions = new int[this.size];
+      int i = 0;
+      for (int pos = 0; pos < this.used; pos++) {
+        if (this.pairAt(pos) != null) {
+          positions[i++] = pos;
+        } // if
+      } // for-loop
+      this.livePositions = positions;
+    } // if
+    return positions;
+  } // livePositions()
+
+  /**
+   * Build an equivalent array without tombstones.
+   *
+   * @return the compacted array.
+   */
+  PersistentAssociativeArray<K, V> compact() {
+    PersistentAssociativeArray<K, V> result = new PersistentAssociativeArray<>();
+    for (int pos = 0; pos < this.used; pos++) {
+      KVPair<K, V> pair = this.pairAt(pos);
+      if (pair != null) {
+        try {
+          result = result.with(pair.key, pair.val);
+        } catch (NullKeyException e) {
+          // Keys in the array are never null.
+        } // try/catch
+      } // if
+    } // for-loop
+    return result;
+  } // compact()
+
+  /**
+   * Call action on each pair in a subtree of the vector.
+   *
+   * @param node
+   *   The root of the subtree.
+   * @param shift
+   *   The shift of that root.
+   * @param action
+   *   The action to apply.
+   */
+  @SuppressWarnings("unchecked")
+  static <K, V> void forEachIn(Object[] node, int shift,
+      BiConsumer<? super K, ? super V> action) {
+    for (Object child : node) {
+      if (child == null) {
+        continue;
+      } else if (shift > 0) {
+        forEachIn((Object[]) child, shift - BITS, action);
+      } else {
+        KVPair<K, V> pair = (KVPair<K, V>) child;
+        action.accept(pair.key, pair.val);
+      } // if/else
+    } // for-loop
+  } // forEachIn(Object[], int, BiConsumer)
+
+  /**
+   * Copy the path to a position of the vector, storing a value at that
+   * position. Missing nodes along the path are created.
+   *
+   * @param node
+   *   The root of the subtree, or null if there is none yet.
+   * @param shift
+   *   The shift of that root.
+   * @param pos
+   *   The position.
+   * @param val
+   *   The value to store.
+   *
+   * @return the root of the new subtree.
+   */
+  static Object[] assoc(Object[] node, int shift, int pos, Object val) {
+    Object[] copy = (node == null) ? new Object[WIDTH] : node.clone();
+    if (shift == 0) {
+      copy[pos & MASK] = val;
+    } else {
+      int i = (pos >>> shift) & MASK;
+      copy[i] = assoc((Object[]) copy[i], shift - BITS, pos, val);
+    } // if/else
+    return copy;
+  } // assoc(Object[], int, int, Object)
+
+  /**
+   * Find the leaf for a key in the hash trie.
+   *
+   * @param node
+   *   The root of the trie.
+   * @param key
+   *   The (non-null) key.
+   * @param hash
+   *   The hash of the key.
+   *
+   * @return the leaf, or null if the key does not appear.
+   */
+  static Leaf find(Node node, Object key, int hash) {
+    int shift = 0;
+    while (true) {
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((node.bitmap & bit) == 0) {
+        return null;
+      } // if
+      Object child = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+      if (child instanceof Node) {
+        node = (Node) child;
+        shift += BITS;
+      } else {
+        for (Leaf leaf = (Leaf) child; leaf != null; leaf = leaf.next) {
+          if (leaf.hash == hash && leaf.key.equals(key)) {
+            return leaf;
+          } // if
+        } // for-loop
+        return null;
+      } // if/else
+    } // while
+  } // find(Node, Object, int)
+
+  /**
+   * Insert a leaf for a key that does not appear in a subtrie.
+   *
+   * @param node
+   *   The root of the subtrie.
+   * @param shift
+   *   The shift of that root.
+   * @param leaf
+   *   The new leaf, whose next field is null.
+   *
+   * @return the root of the new subtrie.
+   */
+  static Node insert(Node node, int shift, Leaf leaf) {
+    int bit = 1 << ((leaf.hash >>> shift) & MASK);
+    int idx = Integer.bitCount(node.bitmap & (bit - 1));
+
+    if ((node.bitmap & bit) == 0) {
+      Object[] slots = new Object[node.slots.length + 1];
+      System.arraycopy(node.slots, 0, slots, 0, idx);
+      slots[idx] = leaf;
+      System.arraycopy(node.slots, idx, slots, idx + 1,
+          node.slots.length - idx);
+      return new Node(node.bitmap | bit, slots);
+    } // if
+
+    Object child = node.slots[idx];
+    Object replacement;
+    if (child instanceof Node) {
+      replacement = insert((Node) child, shift + BITS, leaf);
+    } else if (((Leaf) child).hash == leaf.hash) {
+      replacement = new Leaf(leaf.key, leaf.hash, leaf.pos, (Leaf) child);
+    } else {
+      replacement = merge((Leaf) child, leaf, shift + BITS);
+    } // if/else
+    Object[] slots = node.slots.clone();
+    slots[idx] = replacement;
+    return new Node(node.bitmap, slots);
+  } // insert(Node, int, Leaf)
+
+  /**
+   * Build the smallest subtrie holding two leaves with different
+   * hashes.
+   *
+   * @param a
+   *   One leaf.
+   * @param b
+   *   The other.
+   * @param shift
+   *   The shift of the new subtrie.
+   *
+   * @return its root.
+   */
+  static Node merge(Leaf a, Leaf b, int shift) {
+    int ia = (a.hash >>> shift) & MASK;
+    int ib = (b.hash >>> shift) & MASK;
+    if (ia == ib) {
+      return new Node(1 << ia, new Object[] {merge(a, b, shift + BITS)});
+    } else if (ia < ib) {
+      return new Node((1 << ia) | (1 << ib), new Object[] {a, b});
+    } else {
+      return new Node((1 << ia) | (1 << ib), new Object[] {b, a});
+    } // if/else
+  } // merge(Leaf, Leaf, int)
+
+  /**
+   * Remove a key that appears in a subtrie.
+   *
+   * @param node
+   *   The root of the subtrie.
+   * @param shift
+   *   The shift of that root.
+   * @param key
+   *   The key.
+   * @param hash
+   *   Its hash.
+   *
+   * @return the root of the new subtrie, or null if it is empty.
+   */
+  static Node remove(Node node, int shift, Object key, int hash) {
+    int bit = 1 << ((hash >>> shift) & MASK);
+    int idx = Integer.bitCount(node.bitmap & (bit - 1));
+    Object child = node.slots[idx];
+    Object replacement;
+
+    if (child instanceof Node) {
+      Node sub = remove((Node) child, shift + BITS, key, hash);
+      // A subtrie holding a single chain of leaves is pulled up.
+      if (sub != null && sub.slots.length == 1 && sub.slots[0] instanceof Leaf) {
+        replacement = sub.slots[0];
+      } else {
+        replacement = sub;
+      } // if/else
+    } else {
+      replacement = without((Leaf) child, key);
+    } // if/else
+
+    if (replacement != null) {
+      Object[] slots = node.slots.clone();
+      slots[idx] = replacement;
+      return new Node(node.bitmap, slots);
+    } else if (node.slots.length == 1) {
+      return null;
+    } // if/else
+
+    Object[] slots = new Object[node.slots.length - 1];
+    System.arraycopy(node.slots, 0, slots, 0, idx);
+    System.arraycopy(node.slots, idx + 1, slots, idx, slots.length - idx);
+    return new Node(node.bitmap & ~bit, slots);
+  } // remove(Node, int, Object, int)
+
+  /**
+   * Remove a key from a chain of leaves with the same hash.
+   *
+   * @param leaf
+   *   The first leaf of the chain.
+   * @param key
+   *   The key to remove.
+   *
+   * @return the first leaf of the new chain, or null if it is empty.
+   */
+  static Leaf without(Leaf leaf, Object key) {
+    if (leaf == null) {
+      return null;
+    } else if (leaf.key.equals(key)) {
+      return leaf.next;
+    } else {
+      return new Leaf(leaf.key, leaf.hash, leaf.pos, without(leaf.next, key));
+    } // if/else
+  } // without(Leaf, Object)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A node of the hash trie. Slot i holds the child for the i-th set
+   * bit of the bitmap, which is either a Node or a chain of Leaves.
+   */
+  static final class Node {
+    /** Which of the 32 possible children are present. */
+    final int bitmap;
+
+    /** The children that are present. */
+    final Object[] slots;
+
+    /**
+     * Create a node.
+     *
+     * @param bitmap
+     *   Which children are present.
+     * @param slots
+     *   The children.
+     */
+    Node(int bitmap, Object[] slots) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+    } // Node(int, Object[])
+  } // class Node
+
+  /**
+   * A leaf of the hash trie, mapping a key to its position in the
+   * vector. Keys whose hashes are equal are chained through next.
+   */
+  static final class Leaf {
+    /** The key. */
+    final Object key;
+
+    /** The hash of the key. */
+    final int hash;
+
+    /** The position of the pair in the vector. */
+    final int pos;
+
+    /** The next leaf with the same hash, if any. */
+    final Leaf next;
+
+    /**
+     * Create a leaf.
+     *
+     * @param key
+     *   The key.
+     * @param hash
+     *   Its hash.
+     * @param pos
+     *   The position of its pair.
+     * @param next
+     *   The next leaf with the same hash.
+     */
+    Leaf(Object key, int hash, int pos, Leaf next) {
+      this.key = key;
+      this.hash = hash;
+      this.pos = pos;
+      this.next = next;
+    } // Leaf(Object, int, int, Leaf)
+  } // class Leaf
+
+  /**
+   * A read-only list view of the keys.
+   */
+  class KeyView extends AbstractList<K> implements RandomAccess {
+    @Override
+    public K get(int i) {
+      Objects.checkIndex(i, PersistentAssociativeArray.this.size);
+      return PersistentAssociativeArray.this.keyAt(i);
+    } // get(int)
+
+    @Override
+    public int size() {
+      return PersistentAssociativeArray.this.size;
+    } // size()
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+      // hasKey only calls hashCode and equals on o, which every object
+      // has, so the cast is harmless.
+      return PersistentAssociativeArray.this.hasKey((K) o);
+    } // contains(Object)
+
+    @Override
+    public Iterator<K> iterator() {
+      return new Iterator<K>() {
+        int pos = 0;
+
+        public boolean hasNext() {
+          while (pos < PersistentAssociativeArray.this.used
+              && PersistentAssociativeArray.this.pairAt(pos) == null) {
+            pos++;
+          } // while
+          return pos < PersistentAssociativeArray.this.used;
+        } // hasNext()
+
+        public K next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          } // if
+          return PersistentAssociativeArray.this.pairAt(pos++).key;
+        } // next()
+      }; // new Iterator
+    } // iterator()
+  } // class KeyView
+} // class PersistentAssociativeArray
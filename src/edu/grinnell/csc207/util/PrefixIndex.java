@@ -0,0 +1,341 @@
+package edu.grinnell.csc207.util;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A compressed trie (radix tree) of strings, which supports finding
+ * all of the strings with a given prefix in time proportional to the
+ * length of the prefix plus the number of strings found. Each edge is
+ * labelled with a string rather than a single character, so long
+ * shared prefixes, such as the directories of image locations, are
+ * stored once.
+ *
+ * @author Alex Cyphers
+ */
+public class PrefixIndex {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The root of the trie, whose label is empty.
+   */
+  Node root;
+
+  /**
+   * The number of strings in the trie.
+   */
+  int size;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty index.
+   */
+  public PrefixIndex() {
+    this.root = new Node("");
+    this.size = 0;
+  } // PrefixIndex()
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this index.
+   *
+   * @return the copy
+   */
+  public PrefixIndex clone() {
+    PrefixIndex copy = new PrefixIndex();
+    copy.root = this.root.copy();
+    copy.size = this.size;
+    return copy;
+  } // clone()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Add a string to the index. Adding a string that is already there
+   * does nothing.
+   *
+   * @param str
+   *   The (non-null) string to add.
+   */
+  public void add(String str) {
+    Node node = this.root;
+    int i = 0;
+    while (i < str.length()) {
+      int c = node.childIndex(str.charAt(i));
+      if (c < 0) {
+        Node leaf = new Node(str.substring(i));
+        leaf.str = str;
+        node.addChild(-c - 1, leaf);
+        this.size++;
+        return;
+      } // if
+
+      Node child = node.children[c];
+      int common = commonLength(child.label, str, i);
+      if (common < child.label.length()) {
+        // Split the edge where str leaves it.
+        Node mid = new Node(child.label.substring(0, common));
+        child.label = child.label.substring(common);
+        mid.addChild(0, child);
+        node.children[c] = mid;
+        child = mid;
+      } // if
+      node = child;
+      i += common;
+    } // while
+
+    if (node.str == null) {
+      node.str = str;
+      this.size++;
+    } // if
+  } // add(String)
+
+  /**
+   * Remove a string from the index. Removing a string that is not
+   * there does nothing.
+   *
+   * @param str
+   *   The string to remove.
+   */
+  public void remove(String str) {
+    Node parent = null;
+    Node node = this.root;
+    int i = 0;
+    while (i < str.length()) {
+      int c = node.childIndex(str.charAt(i));
+      if (c < 0) {
+        return;
+      } // if
+      Node child = node.children[c];
+      if (!str.startsWith(child.label, i)) {
+        return;
+      } // if
+      parent = node;
+      node = child;
+      i += child.label.length();
+    } // while
+
+    if (node.str == null) {
+      return;
+    } // if
+    node.str = null;
+    this.size--;
+
+    // Keep the trie compressed: drop empty leaves and merge nodes that
+    // are left with a single child.
+    if (node.count == 0 && parent != null) {
+      parent.removeChild(parent.childIndex(node.label.charAt(0)));
+      if (parent != this.root && parent.str == null && parent.count == 1) {
+        parent.mergeWithChild();
+      } // if
+    } else if (node.count == 1 && node != this.root) {
+      node.mergeWithChild();
+    } // if/else
+  } // remove(String)
+
+  /**
+   * Call action on each string in the index that starts with prefix,
+   * in lexicographic order.
+   *
+   * @param prefix
+   *   The prefix to look for.
+   * @param action
+   *   What to do with each string found.
+   */
+  public void forEachWithPrefix(String prefix,
+      Consumer<? super String> action) {
+    Node node = this.root;
+    int i = 0;
+    while (i < prefix.length()) {
+      int c = node.childIndex(prefix.charAt(i));
+      if (c < 0) {
+        return;
+      } // if
+      Node child = node.children[c];
+      int common = commonLength(child.label, prefix, i);
+      if (i + common < prefix.length() && common < child.label.length()) {
+        return;
+      } // if
+      node = child;
+      i += common;
+    } // while
+    node.forEach(action);
+  } // forEachWithPrefix(String, Consumer)
+
+  /**
+   * Determine how many strings are in the index.
+   *
+   * @return the number of strings.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Find the length of the common prefix of label and str.substring(i).
+   *
+   * @param label
+   *   One string.
+   * @param str
+   *   The other string.
+   * @param i
+   *   Where to start in str.
+   *
+   * @return the length of the common prefix.
+   */
+  static int commonLength(String label, String str, int i) {
+    int max = Math.min(label.length(), str.length() - i);
+    int n = 0;
+    while (n < max && label.charAt(n) == str.charAt(i + n)) {
+      n++;
+    } // while
+    return n;
+  } // commonLength(String, String, int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A node of the trie. The children are kept sorted by the first
+   * character of their labels, which are all different.
+   */
+  static final class Node {
+    /** The label of the edge that leads to this node. */
+    String label;
+
+    /** The string that ends at this node, if any. */
+    String str;
+
+    /** The children; only the first count are used. */
+    Node[] children;
+
+    /** The number of children. */
+    int count;
+
+    /**
+     * Create a node with no children.
+     *
+     * @param label
+     *   The label of its edge.
+     */
+    Node(String label) {
+      this.label = label;
+      this.children = new Node[0];
+      this.count = 0;
+    } // Node(String)
+
+    /**
+     * Find the child whose label starts with ch.
+     *
+     * @param ch
+     *   The character.
+     *
+     * @return its index or, if there is no such child, -(i + 1) where
+     *   i is the index at which it would go.
+     */
+    int childIndex(char ch) {
+      int lo = 0;
+      int hi = this.count - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        char midCh = this.children[mid].label.charAt(0);
+        if (midCh < ch) {
+          lo = mid + 1;
+        } else if (midCh > ch) {
+          hi = mid - 1;
+        } else {
+          return mid;
+        } // if/else
+      } // while
+      return -(lo + 1);
+    } // childIndex(char)
+
+    /**
+     * Add a child at an index.
+     *
+     * @param i
+     *   The index.
+     * @param child
+     *   The child.
+     */
+    void addChild(int i, Node child) {
+      if (this.count == this.children.length) {
+        this.children = Arrays.copyOf(this.children,
+            Math.max(2, this.count * 2));
+      } // if
+      System.arraycopy(this.children, i, this.children, i + 1,
+          this.count - i);
+      this.children[i] = child;
+      this.count++;
+    } // addChild(int, Node)
+
+    /**
+     * Remove the child at an index.
+     *
+     * @param i
+     *   The index.
+     */
+    void removeChild(int i) {
+      System.arraycopy(this.children, i + 1, this.children, i,
+          this.count - i - 1);
+      this.children[--this.count] = null;
+    } // removeChild(int)
+
+    /**
+     * Absorb the only child of this node, which holds no string.
+     */
+    void mergeWithChild() {
+      Node child = this.children[0];
+      this.label = this.label + child.label;
+      this.str = child.str;
+      this.children = child.children;
+      this.count = child.count;
+    } // mergeWithChild()
+
+    /**
+     * Call action on each string in the subtrie, in order.
+     *
+     * @param action
+     *   The action.
+     */
+    void forEach(Consumer<? super String> action) {
+      if (this.str != null) {
+        action.accept(this.str);
+      } // if
+      for (int i = 0; i < this.count; i++) {
+        this.children[i].forEach(action);
+      } // for-loop
+    } // forEach(Consumer)
+
+    /**
+     * Copy the subtrie.
+     *
+     * @return the copy.
+     */
+    Node copy() {
+      Node result = new Node(this.label);
+      result.str = this.str;
+      result.children = new Node[this.count];
+      for (int i = 0; i < this.count; i++) {
+        result.children[i] = this.children[i].copy();
+      } // for-loop
+      result.count = this.count;
+      return result;
+    } // copy()
+  } // class Node
+} // class PrefixIndex
@@ -0,0 +1,292 @@
+package edu.grinnell.csc207.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A table of the directory prefixes of strings such as file paths,
+ * shared by many associative arrays so that each prefix is stored only
+ * once. A string is compressed into a byte array that holds the id of
+ * its prefix (everything up to and including the last '/') followed by
+ * the rest of the string, one byte per character. That costs about
+ * half as much as a String holding the whole path, and the String is
+ * only rebuilt when it is asked for.
+ *
+ * Strings that have no '/', that have characters past U+00FF after
+ * the last '/', or whose prefix does not fit in a full table are not
+ * compressed.
+ *
+ * Any number of threads may use a table at once.
+ *
+ * @author Alex Cyphers
+ */
+public class PrefixTable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of bytes that hold the id of a prefix.
+   */
+  static final int ID_BYTES = 2;
+
+  /**
+   * The largest number of prefixes a table can hold.
+   */
+  static final int MAX_PREFIXES = 1 << (8 * ID_BYTES);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The ids of the prefixes.
+   */
+  StringAssociativeArray<Integer> ids;
+
+  /**
+   * The prefixes, by id. A new array is published whenever the table
+   * grows, after the new prefix is written, so readers need no lock.
+   */
+  volatile String[] prefixes;
+
+  /**
+   * The prefixes as bytes, one per character, by id, or null for a
+   * prefix with characters past U+00FF. Published along with
+   * `prefixes`.
+   */
+  volatile byte[][] prefixBytes;
+
+  /**
+   * The number of prefixes.
+   */
+  int count;
+
+  /**
+   * The id of the prefix most recently looked up, which is usually the
+   * prefix of the next string too, since strings come in directory
+   * order.
+   */
+  volatile int lastId;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create an empty table.
+   */
+  public PrefixTable() {
+    this.ids = new StringAssociativeArray<>();
+    this.prefixes = new String[16];
+    this.prefixBytes = new byte[16][];
+    this.count = 0;
+    this.lastId = -1;
+  } // PrefixTable()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Compress a string, if it can be.
+   *
+   * @param str
+   *   The string.
+   *
+   * @return a byte array holding the compressed string, or str itself
+   *   if it cannot be compressed.
+   */
+  public Object compress(String str) {
+    int slash = str.lastIndexOf('/');
+    if (slash < 0) {
+      return str;
+    } // if
+    for (int i = slash + 1; i < str.length(); i++) {
+      if (str.charAt(i) > 0xff) {
+        return str;
+      } // if
+    } // for-loop
+    int id = this.lastId;
+    if (id < 0 || this.prefixes[id].length() != slash + 1
+        || !str.startsWith(this.prefixes[id])) {
+      id = this.idOf(str.substring(0, slash + 1));
+    } // if
+    if (id < 0) {
+      return str;
+    } // if
+
+    byte[] bytes = new byte[ID_BYTES + str.length() - slash - 1];
+    bytes[0] = (byte) (id >>> 8);
+    bytes[1] = (byte) id;
+    for (int i = ID_BYTES; i < bytes.length; i++) {
+      bytes[i] = (byte) str.charAt(slash + 1 + i - ID_BYTES);
+    } // for-loop
+    return bytes;
+  } // compress(String)
+
+  /**
+   * Rebuild a string from what compress returned.
+   *
+   * @param stored
+   *   The compressed string, or a String.
+   *
+   * @return the string.
+   */
+  public String expand(Object stored) {
+    if (stored instanceof String) {
+      return (String) stored;
+    } // if
+    byte[] bytes = (byte[]) stored;
+    int id = ((bytes[0] & 0xff) << 8) | (bytes[1] & 0xff);
+    byte[] start = this.prefixBytes[id];
+    if (start != null) {
+      // Both parts fit in a byte per character, so the String can be
+      // made from bytes without looking at each character.
+      byte[] all = new byte[start.length + bytes.length - ID_BYTES];
+      System.arraycopy(start, 0, all, 0, start.length);
+      System.arraycopy(bytes, ID_BYTES, all, start.length, bytes.length - ID_BYTES);
+      return new String(all, StandardCharsets.ISO_8859_1);
+    } // if
+    String prefix = this.prefixes[id];
+    char[] chars = new char[prefix.length() + bytes.length - ID_BYTES];
+    prefix.getChars(0, prefix.length(), chars, 0);
+    for (int i = ID_BYTES; i < bytes.length; i++) {
+      chars[prefix.length() + i - ID_BYTES] = (char) (bytes[i] & 0xff);
+    } // for-loop
+    return new String(chars);
+  } // expand(Object)
+
+  /**
+   * Determine whether what compress returned is a string.
+   *
+   * @param stored
+   *   The compressed string, or a String.
+   * @param str
+   *   The string to compare it with.
+   *
+   * @return true if they are the same string, and false otherwise.
+   */
+  public boolean matches(Object stored, String str) {
+    if (stored instanceof String) {
+      return str.equals(stored);
+    } // if
+    byte[] bytes = (byte[]) stored;
+    String prefix = this.prefix(bytes);
+    return (str.length() == prefix.length() + bytes.length - ID_BYTES)
+        && str.startsWith(prefix)
+        && this.regionMatches(bytes, str, prefix.length(), bytes.length);
+  } // matches(Object, String)
+
+  /**
+   * Determine whether what compress returned starts with a prefix.
+   *
+   * @param stored
+   *   The compressed string, or a String.
+   * @param start
+   *   The prefix.
+   *
+   * @return true if the string starts with start, and false otherwise.
+   */
+  public boolean startsWith(Object stored, String start) {
+    if (stored instanceof String) {
+      return ((String) stored).startsWith(start);
+    } // if
+    byte[] bytes = (byte[]) stored;
+    String prefix = this.prefix(bytes);
+    if (start.length() <= prefix.length()) {
+      return prefix.startsWith(start);
+    } // if
+    int length = start.length() - prefix.length();
+    return start.startsWith(prefix) && length <= bytes.length - ID_BYTES
+        && this.regionMatches(bytes, start, prefix.length(), ID_BYTES + length);
+  } // startsWith(Object, String)
+
+  /**
+   * Determine how many prefixes are in the table.
+   *
+   * @return the number of prefixes.
+   */
+  public int size() {
+    return this.count;
+  } // size()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Get the id of a prefix, adding it to the table if it is new.
+   *
+   * @param prefix
+   *   The prefix.
+   *
+   * @return its id, or -1 if the table is full.
+   */
+  synchronized int idOf(String prefix) {
+    Integer id = this.ids.getOrDefault(prefix, null);
+    if (id != null) {
+      this.lastId = id;
+      return id;
+    } // if
+    if (this.count == MAX_PREFIXES) {
+      return -1;
+    } // if
+
+    String[] current = this.prefixes;
+    byte[][] currentBytes = this.prefixBytes;
+    if (this.count == current.length) {
+      current = Arrays.copyOf(current, Math.min(current.length * 2, MAX_PREFIXES));
+      currentBytes = Arrays.copyOf(currentBytes, current.length);
+    } // if
+    current[this.count] = prefix;
+    if (StandardCharsets.ISO_8859_1.newEncoder().canEncode(prefix)) {
+      currentBytes[this.count] = prefix.getBytes(StandardCharsets.ISO_8859_1);
+    } // if
+    this.prefixBytes = currentBytes;
+    this.prefixes = current;
+    try {
+      this.ids.set(prefix, this.count);
+    } catch (NullKeyException e) {
+      // The prefix is not null.
+    } // try/catch
+    this.lastId = this.count;
+    return this.count++;
+  } // idOf(String)
+
+  /**
+   * Get the prefix of a compressed string.
+   *
+   * @param bytes
+   *   The compressed string.
+   *
+   * @return its prefix.
+   */
+  String prefix(byte[] bytes) {
+    return this.prefixes[((bytes[0] & 0xff) << 8) | (bytes[1] & 0xff)];
+  } // prefix(byte[])
+
+  /**
+   * Compare the characters of a compressed string after its prefix with
+   * those of a string.
+   *
+   * @param bytes
+   *   The compressed string.
+   * @param str
+   *   The string.
+   * @param offset
+   *   The position in str of the character that matches bytes[ID_BYTES].
+   * @param end
+   *   The position in bytes just past the last one to compare.
+   *
+   * @return true if the characters match, and false otherwise.
+   */
+  boolean regionMatches(byte[] bytes, String str, int offset, int end) {
+    for (int i = ID_BYTES; i < end; i++) {
+      if (str.charAt(offset + i - ID_BYTES) != (char) (bytes[i] & 0xff)) {
+        return false;
+      } // if
+    } // for-loop
+    return true;
+  } // regionMatches(byte[], String, int, int)
+} // class PrefixTable
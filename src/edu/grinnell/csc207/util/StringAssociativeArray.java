@@ -0,0 +1,693 @@
+package edu.grinnell.csc207.util;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * An associative array specialized for String keys. Rather than
+ * storing a KVPair for each entry, it keeps the keys, their cached
+ * hash codes, and the values in parallel arrays, so an entry costs
+ * no more than its key and value.
+ *
+ * Like AssociativeArray, it keeps entries in insertion order and
+ * finds them through the open-addressing hash index of
+ * OrderedHashTable.
+ *
+ * An array created with a PrefixTable stores its keys compressed,
+ * with their directory prefixes shared through the table, and rebuilds
+ * a key's String only when the key is asked for. The Strings rebuilt
+ * by keyStrings() and by get on the view of the keys are held softly
+ * until the keys next change, so clients that list the keys over and
+ * over pay for them once, but the collector may drop them whenever
+ * memory runs short. Iterating over the keys does not keep them.
+ *
+ * @param <V> the value type
+ *
+ * @author Alex Cyphers
+ */
+public class StringAssociativeArray<V> extends OrderedHashTable {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The keys, in insertion order, either as Strings or as compressed
+   * by `prefixes`. A removed entry leaves a null tombstone behind until
+   * the arrays are next compacted.
+   */
+  Object[] keys;
+
+  /**
+   * The table that compresses the keys, or null if they are stored as
+   * they are.
+   */
+  PrefixTable prefixes;
+
+  /**
+   * The compressed keys as Strings, parallel to `keys`, held softly,
+   * or null if they have not been rebuilt since the keys last changed.
+   */
+  volatile SoftReference<String[]> expanded;
+
+  /**
+   * The values, parallel to `keys`.
+   */
+  Object[] vals;
+
+  /**
+   * The read-only view of the keys, created the first time keys() is
+   * called.
+   */
+  List<String> keyView;
+
+  /**
+   * An optional index of the keys by prefix, or null if the index has
+   * not been enabled.
+   */
+  PrefixIndex prefixIndex;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty associative array.
+   */
+  public StringAssociativeArray() {
+    this(DEFAULT_CAPACITY);
+  } // StringAssociativeArray()
+
+  /**
+   * Create a new, empty associative array with room for a given number
+   * of pairs, so that filling it does not require expanding it.
+   *
+   * @param capacity
+   *   The expected number of pairs.
+   */
+  public StringAssociativeArray(int capacity) {
+    super(Math.max(capacity, 1));
+    this.keys = new Object[this.hashes.length];
+    this.vals = new Object[this.hashes.length];
+  } // StringAssociativeArray(int)
+
+  /**
+   * Create a new, empty associative array that compresses its keys
+   * with a shared table of prefixes.
+   *
+   * @param prefixes
+   *   The table of prefixes.
+   */
+  public StringAssociativeArray(PrefixTable prefixes) {
+    this(DEFAULT_CAPACITY, prefixes);
+  } // StringAssociativeArray(PrefixTable)
+
+  /**
+   * Create a new, empty associative array with room for a given number
+   * of pairs that compresses its keys with a shared table of prefixes.
+   *
+   * @param capacity
+   *   The expected number of pairs.
+   * @param prefixes
+   *   The table of prefixes.
+   */
+  public StringAssociativeArray(int capacity, PrefixTable prefixes) {
+    this(capacity);
+    this.prefixes = prefixes;
+  } // StringAssociativeArray(int, PrefixTable)
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this associative array. Since there are no
+   * per-entry objects to copy, this just copies the arrays.
+   *
+   * @return a new copy of the array
+   */
+  public StringAssociativeArray<V> clone() {
+    StringAssociativeArray<V> arr = new StringAssociativeArray<>();
+    arr.keys = this.keys.clone();
+    arr.prefixes = this.prefixes;
+    arr.expanded = this.expanded;
+    arr.hashes = this.hashes.clone();
+    arr.vals = this.vals.clone();
+    arr.index = this.index.clone();
+    arr.size = this.size;
+    arr.used = this.used;
+    if (this.prefixIndex != null) {
+      arr.prefixIndex = this.prefixIndex.clone();
+    } // if
+    return arr;
+  } // clone()
+
+  /**
+   * Convert the array to a string.
+   *
+   * @return a string of the form "{Key0:Value0, Key1:Value1, ... KeyN:ValueN}"
+   */
+  public String toString() {
+    return this.toString(Integer.MAX_VALUE);
+  } // toString()
+
+  /**
+   * Convert at most the first maxEntries pairs of the array to a
+   * string.
+   *
+   * @param maxEntries
+   *   The largest number of pairs to include.
+   *
+   * @return a string of the form "{Key0:Value0, Key1:Value1, ...}"
+   */
+  public String toString(int maxEntries) {
+    StringBuilder str = new StringBuilder();
+    try {
+      this.writeTo(str, maxEntries);
+    } catch (IOException e) {
+      // StringBuilders do not throw IOExceptions.
+    } // try/catch
+    return str.toString();
+  } // toString(int)
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Set the value associated with key to value. Future calls to
+   * get(key) will return value.
+   *
+   * @param key
+   *              The key whose value we are setting.
+   * @param value
+   *              The value of that key.
+   *
+   * @throws NullKeyException
+   *                          If the client provides a null key.
+   */
+  public void set(String key, V value) throws NullKeyException {
+    if (key == null) {
+      throw new NullKeyException();
+    } // if
+
+    int hash = hash(key);
+    int slot = this.slotFor(key, hash);
+
+    if (this.index[slot] != EMPTY) {
+      this.vals[this.index[slot] - 1] = value;
+      return;
+    } // if
+
+    int pos = this.append(key, hash, slot);
+    this.keys[pos] = this.store(key);
+    this.vals[pos] = value;
+    this.forgetExpanded();
+    if (this.prefixIndex != null) {
+      this.prefixIndex.add(key);
+    } // if
+  } // set(String,V)
+
+  /**
+   * Set many values at once, growing the array at most once. This is
+   * equivalent to calling set(keys[i], vals[i]) for each i in order.
+   *
+   * If the caller knows that the keys are distinct from each other and
+   * from the keys already present, it may say so with `distinct`; the
+   * pairs are then appended without looking for existing keys.
+   *
+   * @param keys
+   *   The keys whose values we are setting.
+   * @param vals
+   *   The values of those keys, in the same order.
+   * @param distinct
+   *   Whether the keys are known to be new and distinct.
+   *
+   * @throws NullKeyException
+   *   If any of the keys is null. The pairs before it are still set.
+   */
+  public void setAll(String[] keys, V[] vals, boolean distinct)
+      throws NullKeyException {
+    this.ensureRoom(keys.length);
+    if (!distinct) {
+      for (int i = 0; i < keys.length; i++) {
+        this.set(keys[i], vals[i]);
+      } // for-loop
+      return;
+    } // if
+
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] == null) {
+        throw new NullKeyException();
+      } // if
+      int pos = this.appendDistinct(hash(keys[i]));
+      this.keys[pos] = this.store(keys[i]);
+      this.vals[pos] = vals[i];
+      this.forgetExpanded();
+      if (this.prefixIndex != null) {
+        this.prefixIndex.add(keys[i]);
+      } // if
+    } // for-loop
+  } // setAll(String[], V[], boolean)
+
+  /**
+   * Get the value associated with key.
+   *
+   * @param key
+   *            A key
+   *
+   * @return
+   *         The corresponding value
+   *
+   * @throws KeyNotFoundException
+   *                              when the key is null or does not appear in the
+   *                              associative array.
+   */
+  @SuppressWarnings("unchecked")
+  public V get(String key) throws KeyNotFoundException {
+    if (key == null) {
+      throw new KeyNotFoundException();
+    } // if
+
+    int pos = this.positionOf(key);
+    if (pos < 0) {
+      throw new KeyNotFoundException();
+    } // if
+    return (V) this.vals[pos];
+  } // get(String)
+
+  /**
+   * Determine if key appears in the associative array. Returns false
+   * for the null key, since it cannot appear.
+   *
+   * @param key
+   *            The key we're looking for.
+   *
+   * @return true if the key appears and false otherwise.
+   */
+  public boolean hasKey(String key) {
+    if (key == null) {
+      return false;
+    } // if
+
+    return this.positionOf(key) >= 0;
+  } // hasKey(String)
+
+  /**
+   * Get the value associated with key, or a default value if key does
+   * not appear. Unlike get, a miss costs no more than a hit, since no
+   * exception is created.
+   *
+   * @param key
+   *            A key
+   * @param defaultValue
+   *            The value to return if key is null or does not appear.
+   *
+   * @return the corresponding value, or defaultValue.
+   */
+  @SuppressWarnings("unchecked")
+  public V getOrDefault(String key, V defaultValue) {
+    if (key == null) {
+      return defaultValue;
+    } // if
+
+    int pos = this.positionOf(key);
+    if (pos < 0) {
+      return defaultValue;
+    } // if
+    return (V) this.vals[pos];
+  } // getOrDefault(String, V)
+
+  /**
+   * Find where key appears among the keys, in the order given by
+   * keys() and keyStrings().
+   *
+   * @param key
+   *            The key we're looking for.
+   *
+   * @return the index of key, or -1 if key is null or does not appear.
+   */
+  public int indexOf(String key) {
+    if (key == null) {
+      return -1;
+    } // if
+
+    int pos = this.positionOf(key);
+    return (pos < 0) ? -1 : this.liveIndex(pos);
+  } // indexOf(String)
+
+  /**
+   * Remove the key/value pair associated with a key. If the key does
+   * not appear in the associative array, does nothing.
+   *
+   * @param key
+   *            The key to remove.
+   */
+  public void remove(String key) {
+    if (key == null) {
+      return;
+    } // if
+
+    if (this.removeKey(key) && this.prefixIndex != null) {
+      this.prefixIndex.remove(key);
+    } // if
+  } // remove(String)
+
+  /**
+   * Write the array to out in the same form as toString, without
+   * building intermediate strings.
+   *
+   * @param out
+   *   Where to write the array.
+   *
+   * @throws IOException
+   *   If out throws one.
+   */
+  public void writeTo(Appendable out) throws IOException {
+    this.writeTo(out, Integer.MAX_VALUE);
+  } // writeTo(Appendable)
+
+  /**
+   * Write at most the first maxEntries pairs of the array to out. If
+   * some pairs are left out, "..." takes their place.
+   *
+   * @param out
+   *   Where to write the array.
+   * @param maxEntries
+   *   The largest number of pairs to write.
+   *
+   * @throws IOException
+   *   If out throws one.
+   */
+  public void writeTo(Appendable out, int maxEntries) throws IOException {
+    out.append('{');
+    int written = 0;
+    for (int i = 0; i < this.used; i++) {
+      if (this.keys[i] == null) {
+        continue;
+      } // if
+      if (written > 0) {
+        out.append(", ");
+      } // if
+      if (written == maxEntries) {
+        out.append("...");
+        break;
+      } // if
+      out.append(this.keyString(i)).append(':');
+      KVPair.write(out, this.vals[i]);
+      written++;
+    } // for-loop
+    out.append('}');
+  } // writeTo(Appendable, int)
+
+  /**
+   * Call action on each key/value pair, in insertion order. Unlike
+   * keyStrings(), this allocates nothing.
+   *
+   * @param action
+   *            The action to apply to each key and its value.
+   */
+  @SuppressWarnings("unchecked")
+  public void forEach(BiConsumer<? super String, ? super V> action) {
+    for (int i = 0; i < this.used; i++) {
+      if (this.keys[i] != null) {
+        action.accept(this.keyString(i), (V) this.vals[i]);
+      } // if
+    } // for-loop
+  } // forEach(BiConsumer)
+
+  /**
+   * Get a read-only view of the keys, in insertion order. The view is
+   * not a copy: it reflects later changes to the associative array,
+   * and the same view is returned on every call.
+   *
+   * @return the list of keys.
+   */
+  public List<String> keys() {
+    if (this.keyView == null) {
+      this.keyView = new KeyView();
+    } // if
+    return this.keyView;
+  } // keys()
+
+  /**
+   * Build an index of the keys by prefix, which later changes keep up
+   * to date. Until it is enabled, forEachWithPrefix has to look at
+   * every key.
+   */
+  public void enablePrefixIndex() {
+    if (this.prefixIndex == null) {
+      PrefixIndex index = new PrefixIndex();
+      for (int i = 0; i < this.used; i++) {
+        if (this.keys[i] != null) {
+          index.add(this.keyString(i));
+        } // if
+      } // for-loop
+      this.prefixIndex = index;
+    } // if
+  } // enablePrefixIndex()
+
+  /**
+   * Call action on each key that starts with prefix. With the prefix
+   * index enabled, this takes time proportional to the length of the
+   * prefix plus the number of keys found, and the keys come in
+   * lexicographic order; otherwise they come in insertion order.
+   *
+   * @param prefix
+   *   The prefix to look for.
+   * @param action
+   *   What to do with each key found.
+   */
+  public void forEachWithPrefix(String prefix,
+      Consumer<? super String> action) {
+    if (this.prefixIndex != null) {
+      this.prefixIndex.forEachWithPrefix(prefix, action);
+      return;
+    } // if
+    for (int i = 0; i < this.used; i++) {
+      if (this.keys[i] != null && this.startsWith(i, prefix)) {
+        action.accept(this.keyString(i));
+      } // if
+    } // for-loop
+  } // forEachWithPrefix(String, Consumer)
+
+  /**
+   * Creates an array of the keys.
+   *
+   * @return the array of keys, in insertion order.
+   */
+  public String[] keyStrings() {
+    Object[] strings = (this.prefixes == null) ? this.keys : this.expandedKeys();
+    if (this.used == this.size) {
+      return Arrays.copyOf(strings, this.size, String[].class);
+    } // if
+    String[] result = new String[this.size];
+    int k = 0;
+    for (int i = 0; i < this.used; i++) {
+      if (this.keys[i] != null) {
+        result[k++] = (String) strings[i];
+      } // if
+    } // for-loop
+    return result;
+  } // keyStrings()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  @Override
+  int capacity() {
+    return this.keys.length;
+  } // capacity()
+
+  @Override
+  boolean isLive(int pos) {
+    return this.keys[pos] != null;
+  } // isLive(int)
+
+  @Override
+  boolean keyEquals(int pos, Object key) {
+    return this.matches(pos, (String) key);
+  } // keyEquals(int, Object)
+
+  @Override
+  void moveEntry(int from, int to) {
+    this.keys[to] = this.keys[from];
+    this.vals[to] = this.vals[from];
+    this.forgetExpanded();
+  } // moveEntry(int, int)
+
+  @Override
+  void clearEntry(int pos) {
+    this.keys[pos] = null;
+    this.vals[pos] = null;
+    this.forgetExpanded();
+  } // clearEntry(int)
+
+  @Override
+  void resize(int capacity) {
+    this.keys = Arrays.copyOf(this.keys, capacity);
+    this.vals = Arrays.copyOf(this.vals, capacity);
+    this.forgetExpanded();
+  } // resize(int)
+
+  /**
+   * Prepare a key to be stored, compressing it if the array has a
+   * table of prefixes.
+   *
+   * @param key
+   *            The key.
+   *
+   * @return what to store in `keys`.
+   */
+  Object store(String key) {
+    return (this.prefixes == null) ? key : this.prefixes.compress(key);
+  } // store(String)
+
+  /**
+   * Get the key of an entry as a String.
+   *
+   * @param pos
+   *            The position of the entry, which is not a tombstone.
+   *
+   * @return its key.
+   */
+  String keyString(int pos) {
+    SoftReference<String[]> ref = this.expanded;
+    String[] strings = (ref == null) ? null : ref.get();
+    if (strings != null) {
+      return strings[pos];
+    } // if
+    Object key = this.keys[pos];
+    return (key instanceof String) ? (String) key : this.prefixes.expand(key);
+  } // keyString(int)
+
+  /**
+   * Get the compressed keys as Strings, by position, rebuilding them
+   * and holding them softly in `expanded` unless they are still there.
+   *
+   * @return the keys, with null for each tombstone.
+   */
+  String[] expandedKeys() {
+    SoftReference<String[]> ref = this.expanded;
+    String[] strings = (ref == null) ? null : ref.get();
+    if (strings == null) {
+      strings = new String[this.used];
+      for (int i = 0; i < this.used; i++) {
+        if (this.keys[i] != null) {
+          strings[i] = this.prefixes.expand(this.keys[i]);
+        } // if
+      } // for-loop
+      this.expanded = new SoftReference<>(strings);
+    } // if
+    return strings;
+  } // expandedKeys()
+
+  /**
+   * Drop the rebuilt keys, since the keys or their positions have
+   * changed.
+   */
+  void forgetExpanded() {
+    if (this.expanded != null) {
+      this.expanded = null;
+    } // if
+  } // forgetExpanded()
+
+  /**
+   * Determine whether the key of an entry is a given key.
+   *
+   * @param pos
+   *            The position of the entry, which is not a tombstone.
+   * @param key
+   *            The key.
+   *
+   * @return true if it is, and false otherwise.
+   */
+  boolean matches(int pos, String key) {
+    Object stored = this.keys[pos];
+    return (stored instanceof String) ? key.equals(stored)
+        : this.prefixes.matches(stored, key);
+  } // matches(int, String)
+
+  /**
+   * Determine whether the key of an entry starts with a prefix.
+   *
+   * @param pos
+   *            The position of the entry, which is not a tombstone.
+   * @param prefix
+   *            The prefix.
+   *
+   * @return true if it does, and false otherwise.
+   */
+  boolean startsWith(int pos, String prefix) {
+    Object stored = this.keys[pos];
+    return (stored instanceof String) ? ((String) stored).startsWith(prefix)
+        : this.prefixes.startsWith(stored, prefix);
+  } // startsWith(int, String)
+
+  /**
+   * Find the key of the i-th live entry.
+   *
+   * @param i
+   *            The index of the entry among the live entries.
+   *
+   * @return its key.
+   */
+  String keyAt(int i) {
+    int pos = this.livePosition(i);
+    return (this.prefixes == null) ? (String) this.keys[pos] : this.expandedKeys()[pos];
+  } // keyAt(int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A read-only list view of the keys.
+   */
+  class KeyView extends AbstractList<String> implements RandomAccess {
+    @Override
+    public String get(int i) {
+      Objects.checkIndex(i, StringAssociativeArray.this.size);
+      return StringAssociativeArray.this.keyAt(i);
+    } // get(int)
+
+    @Override
+    public int size() {
+      return StringAssociativeArray.this.size;
+    } // size()
+
+    @Override
+    public boolean contains(Object o) {
+      return (o instanceof String)
+          && StringAssociativeArray.this.hasKey((String) o);
+    } // contains(Object)
+
+    @Override
+    public Iterator<String> iterator() {
+      return new Iterator<String>() {
+        int pos = 0;
+
+        public boolean hasNext() {
+          pos = StringAssociativeArray.this.nextLive(pos);
+          return pos < StringAssociativeArray.this.used;
+        } // hasNext()
+
+        public String next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          } // if
+          return StringAssociativeArray.this.keyString(pos++);
+        } // next()
+      }; // new Iterator
+    } // iterator()
+  } // class KeyView
+} // class StringAssociativeArray
@@ -0,0 +1,649 @@
+package edu.grinnell.csc207.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of AssociativeArray and of the hash index it shares with
+ * StringAssociativeArray.
+ *
+ * @author Alex Cyphers
+ */
+public class TestAssociativeArray {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * A key whose hash code is the same as that of every other key of
+   * its kind, so that every key collides in the hash index.
+   */
+  static class Collider {
+    /** The name that tells keys apart. */
+    final String name;
+
+    /**
+     * Create a key.
+     *
+     * @param name
+     *   Its name.
+     */
+    Collider(String name) {
+      this.name = name;
+    } // Collider(String)
+
+    @Override
+    public int hashCode() {
+      return 42;
+    } // hashCode()
+
+    @Override
+    public boolean equals(Object other) {
+      return (other instanceof Collider)
+          && ((Collider) other).name.equals(this.name);
+    } // equals(Object)
+
+    @Override
+    public String toString() {
+      return this.name;
+    } // toString()
+  } // class Collider
+
+  /**
+   * An Appendable that fails once a given number of characters have
+   * been written to it.
+   */
+  static class Failing implements Appendable {
+    /** The number of characters it still accepts. */
+    int room;
+
+    /**
+     * Create an Appendable.
+     *
+     * @param room
+     *   How many characters it accepts before failing.
+     */
+    Failing(int room) {
+      this.room = room;
+    } // Failing(int)
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+      return this.append(csq, 0, csq.length());
+    } // append(CharSequence)
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end)
+        throws IOException {
+      for (int i = start; i < end; i++) {
+        this.append(csq.charAt(i));
+      } // for
+      return this;
+    } // append(CharSequence, int, int)
+
+    @Override
+    public Appendable append(char c) throws IOException {
+      if (this.room-- == 0) {
+        throw new IOException("Full");
+      } // if
+      return this;
+    } // append(char)
+  } // class Failing
+
+  /**
+   * Make sure that every slot of the hash index refers to a live pair
+   * that can be found from its home slot, and that every live pair is
+   * indexed exactly once.
+   */
+  static void assertIndexed(OrderedHashTable arr) {
+    int mask = arr.index.length - 1;
+    int entries = 0;
+    for (int slot = 0; slot < arr.index.length; slot++) {
+      int entry = arr.index[slot];
+      if (entry == AssociativeArray.EMPTY) {
+        continue;
+      } // if
+      entries++;
+      assertTrue(entry - 1 < arr.used, "Index entry within the used pairs");
+      assertTrue(arr.isLive(entry - 1), "Index entry is not a tombstone");
+      // No empty slot may lie between the pair's home and its slot.
+      for (int s = arr.hashes[entry - 1] & mask; s != slot; s = (s + 1) & mask) {
+        assertTrue(arr.index[s] != AssociativeArray.EMPTY, "Probe sequence unbroken");
+      } // for
+    } // for
+    assertEquals(arr.size(), entries, "One index entry per pair");
+  } // assertIndexed(OrderedHashTable)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Can we set, get, replace and look for keys?
+   */
+  @Test
+  void testSetGet() throws Exception {
+    AssociativeArray<String, String> arr = new AssociativeArray<>();
+    assertEquals(0, arr.size(), "Empty to start with");
+    assertFalse(arr.hasKey("a"), "No key to start with");
+    arr.set("a", "apple");
+    arr.set("b", "banana");
+    assertEquals("apple", arr.get("a"));
+    assertEquals("banana", arr.get("b"));
+    assertEquals(2, arr.size(), "Two pairs");
+
+    arr.set("a", "avocado");
+    assertEquals("avocado", arr.get("a"), "Set replaces the value");
+    assertEquals(2, arr.size(), "Replacing does not add a pair");
+    assertEquals("[a, b]", arr.keys().toString(), "Replacing keeps the order");
+
+    assertTrue(arr.hasKey("b"));
+    assertFalse(arr.hasKey("c"));
+    assertFalse(arr.hasKey(null), "The null key never appears");
+    assertEquals("cherry", arr.getOrDefault("c", "cherry"), "Default for a miss");
+    assertEquals("banana", arr.getOrDefault("b", "cherry"), "No default for a hit");
+    assertThrows(KeyNotFoundException.class, () -> arr.get("c"));
+    assertThrows(KeyNotFoundException.class, () -> arr.get(null));
+    assertThrows(NullKeyException.class, () -> arr.set(null, "nothing"));
+
+    arr.set("c", null);
+    assertTrue(arr.hasKey("c"), "A null value is still a pair");
+    assertNull(arr.get("c"));
+    assertIndexed(arr);
+  } // testSetGet()
+
+  /**
+   * Can we remove keys?
+   */
+  @Test
+  void testRemove() throws Exception {
+    AssociativeArray<String, Integer> arr = new AssociativeArray<>();
+    arr.set("a", 1);
+    arr.set("b", 2);
+    arr.set("c", 3);
+    arr.remove("b");
+    assertFalse(arr.hasKey("b"), "Removed");
+    assertThrows(KeyNotFoundException.class, () -> arr.get("b"));
+    assertEquals(2, arr.size(), "One fewer pair");
+    assertEquals(1, arr.get("a"), "Others remain");
+    assertEquals(3, arr.get("c"), "Others remain");
+    assertEquals("{a:1, c:3}", arr.toString());
+
+    arr.remove("b");
+    arr.remove("z");
+    arr.remove(null);
+    assertEquals(2, arr.size(), "Removing a missing key does nothing");
+
+    arr.set("b", 4);
+    assertEquals("{a:1, c:3, b:4}", arr.toString(), "A key set again goes last");
+    assertIndexed(arr);
+  } // testRemove()
+
+  /**
+   * Do keys whose hash codes are equal stay apart?
+   */
+  @Test
+  void testCollisions() throws Exception {
+    AssociativeArray<Collider, Integer> arr = new AssociativeArray<>();
+    for (int i = 0; i < 100; i++) {
+      arr.set(new Collider("k" + i), i);
+    } // for
+    assertEquals(100, arr.size(), "Colliding keys are distinct");
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, arr.get(new Collider("k" + i)), "Find k" + i);
+    } // for
+    assertFalse(arr.hasKey(new Collider("k100")), "Equal hash, unequal key");
+
+    arr.set(new Collider("k50"), -50);
+    assertEquals(-50, arr.get(new Collider("k50")), "Replace within a collision");
+    assertEquals(100, arr.size(), "Replacing does not add a pair");
+    assertEquals(50, arr.indexOf(new Collider("k50")), "Position kept");
+    assertIndexed(arr);
+  } // testCollisions()
+
+  /**
+   * Do the pairs keep their insertion order, and can they all still be
+   * found, as the array grows well past its initial capacity?
+   */
+  @Test
+  void testResizeOrder() throws Exception {
+    AssociativeArray<String, Integer> arr = new AssociativeArray<>();
+    int initial = arr.pairs.length;
+    for (int i = 0; i < 1000; i++) {
+      arr.set("key" + i, i);
+      if (i % 100 == 0) {
+        assertIndexed(arr);
+      } // if
+    } // for
+    assertTrue(arr.pairs.length > initial, "Grew");
+    assertTrue(arr.index.length >= AssociativeArray.INDEX_SCALE * arr.pairs.length,
+        "The index grew with the pairs");
+    String[] keys = arr.keyStrings();
+    assertEquals(1000, keys.length);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals("key" + i, keys[i], "Insertion order");
+      assertEquals("key" + i, arr.keys().get(i), "View order");
+      assertEquals(i, arr.get("key" + i), "Lookup after resizing");
+      assertEquals(i, arr.indexOf("key" + i), "Position after resizing");
+    } // for
+    assertIndexed(arr);
+
+    AssociativeArray<String, Integer> presized = new AssociativeArray<>(1000);
+    int capacity = presized.pairs.length;
+    for (int i = 0; i < 1000; i++) {
+      presized.set("key" + i, i);
+    } // for
+    assertEquals(capacity, presized.pairs.length, "A presized array does not grow");
+    assertEquals(arr.toString(), presized.toString(), "Same pairs, same order");
+  } // testResizeOrder()
+
+  /**
+   * Does setAll grow the array at most once, and set the same pairs as
+   * calling set on each, whether or not the keys are said to be
+   * distinct?
+   */
+  @Test
+  void testSetAll() throws Exception {
+    String[] keys = new String[500];
+    Integer[] vals = new Integer[500];
+    for (int i = 0; i < 500; i++) {
+      keys[i] = "key" + i;
+      vals[i] = i;
+    } // for
+
+    AssociativeArray<String, Integer> distinct = new AssociativeArray<>();
+    distinct.set("first", -1);
+    distinct.setAll(keys, vals, true);
+    int capacity = distinct.capacity();
+    assertTrue(capacity >= 501, "Grew once, to fit every pair");
+    assertEquals(501, distinct.size());
+    assertEquals("first", distinct.keys().get(0), "Old pairs come first");
+    for (int i = 0; i < 500; i++) {
+      assertEquals(i, distinct.get("key" + i), "Lookup of key" + i);
+      assertEquals(i + 1, distinct.indexOf("key" + i), "Position of key" + i);
+    } // for
+    assertIndexed(distinct);
+
+    StringAssociativeArray<Integer> strings =
+        new StringAssociativeArray<>(new PrefixTable());
+    strings.enablePrefixIndex();
+    strings.setAll(keys, vals, true);
+    assertEquals(List.of(keys), strings.keys(), "Same keys in order");
+    assertEquals(499, strings.get("key499"));
+    List<String> found = new ArrayList<>();
+    strings.forEachWithPrefix("key1", found::add);
+    assertEquals(111, found.size(), "Prefix index kept up");
+    assertIndexed(strings);
+
+    // Without the promise, repeated keys replace earlier values.
+    AssociativeArray<String, Integer> repeated = new AssociativeArray<>();
+    repeated.set("b", 0);
+    repeated.setAll(new String[] {"a", "b", "a"}, new Integer[] {1, 2, 3}, false);
+    assertEquals("{b:2, a:3}", repeated.toString(), "Same as set on each");
+    assertIndexed(repeated);
+
+    AssociativeArray<String, Integer> nulls = new AssociativeArray<>();
+    assertThrows(NullKeyException.class,
+        () -> nulls.setAll(new String[] {"a", null, "c"}, new Integer[] {1, 2, 3}, true));
+    assertEquals("{a:1}", nulls.toString(), "Pairs before the null key are set");
+    assertIndexed(nulls);
+  } // testSetAll()
+
+  /**
+   * Does trimToSize release spare room and tombstones, leaving an
+   * array that still works and can grow again?
+   */
+  @Test
+  void testTrimToSize() throws Exception {
+    AssociativeArray<String, Integer> empty = new AssociativeArray<>(100);
+    empty.trimToSize();
+    assertEquals(1, empty.capacity(), "Room for one pair");
+    empty.set("a", 1);
+    empty.set("b", 2);
+    assertEquals("{a:1, b:2}", empty.toString(), "Grows again");
+    assertIndexed(empty);
+
+    AssociativeArray<String, Integer> arr = new AssociativeArray<>();
+    StringAssociativeArray<Integer> strs = new StringAssociativeArray<>();
+    for (int i = 0; i < 100; i++) {
+      arr.set("key" + i, i);
+      strs.set("key" + i, i);
+    } // for
+    for (int i = 0; i < 100; i += 3) {
+      arr.remove("key" + i);
+      strs.remove("key" + i);
+    } // for
+    for (OrderedHashTable table : List.<OrderedHashTable>of(arr, strs)) {
+      assertTrue(table.used > table.size(), "Tombstones left behind");
+      table.trimToSize();
+      assertEquals(table.size(), table.used, "No tombstones");
+      assertEquals(table.size(), table.capacity(), "No spare room");
+      assertIndexed(table);
+    } // for
+    assertEquals(arr.keys(), strs.keys(), "Same keys");
+    for (int i = 1; i < 100; i += 3) {
+      assertEquals(i, arr.get("key" + i), "Lookup of key" + i);
+      assertEquals(i, strs.get("key" + i), "String lookup of key" + i);
+    } // for
+    arr.set("new", -1);
+    assertEquals(-1, arr.get("new"), "Grows again");
+    assertEquals(arr.size() - 1, arr.indexOf("new"), "New key last");
+    assertIndexed(arr);
+  } // testTrimToSize()
+
+  /**
+   * Are compressed keys kept only once the view or keyStrings has
+   * listed them, dropped when the keys change, and right as the array
+   * changes, grows, is compacted and is cloned?
+   */
+  @Test
+  void testExpandedKeys() throws Exception {
+    StringAssociativeArray<Integer> strs = new StringAssociativeArray<>(new PrefixTable());
+    for (int i = 0; i < 10; i++) {
+      strs.set("img/k" + i, i);
+    } // for
+    List<String> view = strs.keys();
+    for (String key : view) {
+      assertTrue(key.startsWith("img/k"));
+    } // for
+    assertNull(strs.expanded, "Iterating keeps nothing");
+    assertSame(view.get(3), strs.keys().get(3), "Rebuilt once");
+    assertSame(view.get(3), strs.keyStrings()[3], "Shared with keyStrings");
+    strs.set("img/k3", 33);
+    assertSame(view.get(3), strs.keyStrings()[3], "Kept when only a value changes");
+    strs.set("img/new", 0);
+    assertNull(strs.expanded, "Dropped when a key is added");
+    strs.remove("img/new");
+
+    for (int i = 0; i < 6; i++) {
+      strs.remove("img/k" + i);
+    } // for
+    strs.setAll(new String[] {"img/a", "img/b"}, new Integer[] {10, 11}, true);
+    for (int i = 10; i < 40; i++) {
+      strs.set("img/k" + i, i);
+    } // for
+    List<String> expected = new ArrayList<>();
+    for (int i = 6; i < 10; i++) {
+      expected.add("img/k" + i);
+    } // for
+    expected.add("img/a");
+    expected.add("img/b");
+    for (int i = 10; i < 40; i++) {
+      expected.add("img/k" + i);
+    } // for
+    assertEquals(expected, view, "View after removing, compacting and growing");
+    assertEquals(expected, List.of(strs.keyStrings()), "Array of keys");
+
+    StringAssociativeArray<Integer> copy = strs.clone();
+    copy.remove("img/a");
+    copy.set("img/c", 12);
+    assertEquals(expected, strs.keys(), "Original unchanged");
+    assertEquals("img/c", copy.keys().get(copy.size() - 1), "Copy changed");
+    assertFalse(copy.keys().contains("img/a"), "Copy lost a key");
+  } // testExpandedKeys()
+
+  /**
+   * Does writeTo write what toString returns, stop after maxEntries
+   * pairs, and pass on the exceptions of what it writes to?
+   */
+  @Test
+  void testWriteTo() throws Exception {
+    AssociativeArray<String, Integer> arr = new AssociativeArray<>();
+    StringAssociativeArray<Integer> strs = new StringAssociativeArray<>(new PrefixTable());
+    for (int i = 0; i < 6; i++) {
+      arr.set("img/k" + i, i);
+      strs.set("img/k" + i, i);
+    } // for
+    arr.remove("img/k2");
+    strs.remove("img/k2");
+    arr.set("none", null);
+    strs.set("none", null);
+    String expected = "{img/k0:0, img/k1:1, img/k3:3, img/k4:4, img/k5:5, none:null}";
+
+    StringWriter arrOut = new StringWriter();
+    arr.writeTo(arrOut);
+    assertEquals(expected, arrOut.toString(), "Tombstones skipped, nulls written");
+    assertEquals(arr.toString(), arrOut.toString(), "Same as toString");
+    StringWriter strsOut = new StringWriter();
+    strs.writeTo(strsOut);
+    assertEquals(expected, strsOut.toString(), "Compressed keys expanded");
+    assertEquals(strs.toString(), strsOut.toString(), "Same as toString");
+
+    assertEquals("{img/k0:0, img/k1:1, ...}", arr.toString(2), "Truncated");
+    assertEquals("{img/k0:0, img/k1:1, ...}", strs.toString(2), "Truncated");
+    assertEquals("{...}", arr.toString(0), "Nothing but the ellipsis");
+    assertEquals(expected, arr.toString(6), "Exactly enough, no ellipsis");
+    assertEquals(expected, strs.toString(6), "Exactly enough, no ellipsis");
+    assertEquals("{}", new AssociativeArray<String, String>().toString(0), "Empty");
+
+    assertThrows(IOException.class, () -> arr.writeTo(new Failing(20)), "Failure passed on");
+    assertThrows(IOException.class, () -> strs.writeTo(new Failing(20)), "Failure passed on");
+    assertThrows(IOException.class, () -> arr.writeTo(new Failing(0), 0), "Even the brace");
+
+    KVPair<StringBuilder, Object> pair = new KVPair<>(new StringBuilder("key"), null);
+    StringBuilder out = new StringBuilder("<");
+    pair.writeTo(out);
+    assertEquals("<key:null", out.toString(), "Pairs append to what is there");
+    assertEquals("key:null", pair.toString(), "Same as toString");
+    assertThrows(IOException.class, () -> pair.writeTo(new Failing(2)), "Failure passed on");
+  } // testWriteTo()
+
+  /**
+   * Does removing a key from the middle of a run of colliding keys
+   * shift the rest of the run back, so that they can still be found?
+   */
+  @Test
+  void testRemoveCollisions() throws Exception {
+    AssociativeArray<Collider, Integer> arr = new AssociativeArray<>();
+    for (int i = 0; i < 10; i++) {
+      arr.set(new Collider("k" + i), i);
+    } // for
+    arr.remove(new Collider("k0"));
+    arr.remove(new Collider("k5"));
+    arr.remove(new Collider("k9"));
+    assertIndexed(arr);
+    for (int i = 0; i < 10; i++) {
+      boolean removed = (i == 0 || i == 5 || i == 9);
+      assertEquals(!removed, arr.hasKey(new Collider("k" + i)), "Has k" + i);
+    } // for
+    arr.set(new Collider("k5"), 55);
+    assertEquals(55, arr.get(new Collider("k5")), "Set again");
+    assertEquals("{k1:1, k2:2, k3:3, k4:4, k6:6, k7:7, k8:8, k5:55}", arr.toString());
+    assertIndexed(arr);
+  } // testRemoveCollisions()
+
+  /**
+   * Do removals leave tombstones that are dropped once there are
+   * enough of them, and do lookups, positions and order survive the
+   * compaction?
+   */
+  @Test
+  void testTombstones() throws Exception {
+    AssociativeArray<String, Integer> arr = new AssociativeArray<>(64);
+    for (int i = 0; i < 64; i++) {
+      arr.set("key" + i, i);
+    } // for
+
+    // Removing from the front leaves tombstones behind.
+    arr.remove("key0");
+    arr.remove("key2");
+    assertEquals(64, arr.used, "Tombstones are kept");
+    assertEquals(62, arr.size());
+    assertEquals(0, arr.indexOf("key1"), "Positions skip tombstones");
+    assertEquals(61, arr.indexOf("key63"), "Positions skip tombstones");
+    assertEquals("key3", arr.keys().get(1), "The view skips tombstones");
+
+    // Removing from the end releases the positions at once.
+    arr.remove("key63");
+    assertEquals(63, arr.used, "Trailing tombstones are released");
+
+    // Past the threshold, the pairs are compacted.
+    for (int i = 4; i < 40; i += 2) {
+      arr.remove("key" + i);
+    } // for
+    assertTrue(arr.used - arr.size() <= arr.used * AssociativeArray.MAX_TOMBSTONE_RATIO,
+        "Never more tombstones than the threshold");
+    for (int i = 40; i < 64; i += 2) {
+      arr.remove("key" + i);
+    } // for
+    assertEquals(62, arr.used, "Not yet compacted");
+    arr.remove("key1");
+    assertEquals(arr.size(), arr.used, "Compacted");
+    assertIndexed(arr);
+
+    // Removed keys come back at the end, after every other key.
+    StringBuilder expected = new StringBuilder();
+    for (int i = 3; i < 63; i += 2) {
+      expected.append("key").append(i).append(',');
+    } // for
+    for (int i = 0; i < 64; i += 2) {
+      arr.set("key" + i, -i);
+      expected.append("key").append(i).append(',');
+    } // for
+    StringBuilder actual = new StringBuilder();
+    for (String key : arr.keys()) {
+      actual.append(key).append(',');
+    } // for
+    assertEquals(expected.toString(), actual.toString(), "Order after reinserting");
+    assertEquals(62, arr.size());
+    for (int i = 0; i < 64; i++) {
+      if (i == 1 || i == 63) {
+        assertFalse(arr.hasKey("key" + i), "Still removed: key" + i);
+        continue;
+      } // if
+      int expectedValue = (i % 2 == 0) ? -i : i;
+      assertEquals(expectedValue, arr.get("key" + i), "Lookup of key" + i);
+      assertEquals("key" + i, arr.keys().get(arr.indexOf("key" + i)), "Position of key" + i);
+    } // for
+    assertIndexed(arr);
+  } // testTombstones()
+
+  /**
+   * Does a long run of removals and insertions keep the array and a
+   * simple model of it in step?
+   */
+  @Test
+  void testChurn() throws Exception {
+    AssociativeArray<Integer, Integer> arr = new AssociativeArray<>();
+    LinkedHashMap<Integer, Integer> model = new LinkedHashMap<>();
+    Random random = new Random(207);
+    for (int step = 0; step < 20000; step++) {
+      int key = random.nextInt(300);
+      if (random.nextInt(3) == 0) {
+        arr.remove(key);
+        model.remove(key);
+      } else if (!model.containsKey(key)) {
+        arr.set(key, step);
+        model.put(key, step);
+      } // if/else
+    } // for
+    assertEquals(model.size(), arr.size());
+    assertEquals(new ArrayList<>(model.keySet()), arr.keys(), "Same order");
+    for (int key = 0; key < 300; key++) {
+      assertEquals(model.get(key), arr.getOrDefault(key, null), "Lookup of " + key);
+    } // for
+    assertTrue(arr.used - arr.size() <= arr.used * AssociativeArray.MAX_TOMBSTONE_RATIO,
+        "Never more tombstones than the threshold");
+    assertIndexed(arr);
+  } // testChurn()
+
+  /**
+   * Does StringAssociativeArray, which stores its entries differently,
+   * keep the same order and lookups through a long run of removals and
+   * insertions, with and without compressed keys?
+   */
+  @Test
+  void testStringChurn() throws Exception {
+    StringAssociativeArray<Integer> plain = new StringAssociativeArray<>();
+    StringAssociativeArray<Integer> compressed =
+        new StringAssociativeArray<>(new PrefixTable());
+    LinkedHashMap<String, Integer> model = new LinkedHashMap<>();
+    Random random = new Random(207);
+    for (int step = 0; step < 20000; step++) {
+      String key = "img/dir" + random.nextInt(5) + "/" + random.nextInt(60) + ".png";
+      if (random.nextInt(3) == 0) {
+        plain.remove(key);
+        compressed.remove(key);
+        model.remove(key);
+      } else if (!model.containsKey(key)) {
+        plain.set(key, step);
+        compressed.set(key, step);
+        model.put(key, step);
+      } // if/else
+    } // for
+    for (StringAssociativeArray<Integer> arr : List.of(plain, compressed)) {
+      assertEquals(model.size(), arr.size());
+      assertEquals(new ArrayList<>(model.keySet()), arr.keys(), "Same order");
+      assertEquals(new ArrayList<>(model.keySet()), List.of(arr.keyStrings()), "Same keys");
+      int i = 0;
+      for (String key : model.keySet()) {
+        assertEquals(model.get(key), arr.get(key), "Lookup of " + key);
+        assertEquals(i++, arr.indexOf(key), "Position of " + key);
+      } // for
+      assertIndexed(arr);
+      arr.trimToSize();
+      assertEquals(arr.size(), arr.capacity(), "Trimmed");
+      assertEquals(new ArrayList<>(model.keySet()), arr.keys(), "Same order once trimmed");
+      assertIndexed(arr);
+    } // for
+  } // testStringChurn()
+
+  /**
+   * Do the key views of all three arrays agree with the model, by
+   * position and by index, while removals leave tombstones behind and
+   * later insertions reuse the cached positions?
+   */
+  @Test
+  void testViewWithTombstones() throws Exception {
+    AssociativeArray<String, Integer> arr = new AssociativeArray<>();
+    StringAssociativeArray<Integer> strs = new StringAssociativeArray<>();
+    PersistentAssociativeArray<String, Integer> pers =
+        new PersistentAssociativeArray<>();
+    List<String> arrKeys = arr.keys();
+    List<String> strKeys = strs.keys();
+    List<String> model = new ArrayList<>();
+    Random random = new Random(4);
+    for (int step = 0; step < 3000; step++) {
+      String key = "k" + random.nextInt(200);
+      if (random.nextInt(3) == 0) {
+        arr.remove(key);
+        strs.remove(key);
+        pers = pers.without(key);
+        model.remove(key);
+      } else if (!model.contains(key)) {
+        arr.set(key, step);
+        strs.set(key, step);
+        pers = pers.with(key, step);
+        model.add(key);
+      } // if/else
+      if (step % 7 == 0) {
+        for (int i = 0; i < model.size(); i += 5) {
+          String expected = model.get(i);
+          assertEquals(expected, arrKeys.get(i), "Key " + i);
+          assertEquals(expected, strKeys.get(i), "String key " + i);
+          assertEquals(expected, pers.keys().get(i), "Persistent key " + i);
+          assertEquals(i, arr.indexOf(expected), "Index of " + expected);
+          assertEquals(i, strs.indexOf(expected), "String index of " + expected);
+          assertEquals(i, pers.indexOf(expected), "Persistent index of " + expected);
+        } // for
+      } // if
+    } // for
+    assertEquals(model, arrKeys);
+    assertEquals(model, strKeys);
+    assertEquals(model, pers.keys());
+    assertThrows(IndexOutOfBoundsException.class, () -> arrKeys.get(model.size()));
+  } // testViewWithTombstones()
+} // class TestAssociativeArray
@@ -0,0 +1,166 @@
+package edu.grinnell.csc207.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of ConcurrentAssociativeArray, and in particular of its
+ * copy-on-write snapshots.
+ *
+ * @author Alex Cyphers
+ */
+public class TestConcurrentAssociativeArray {
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Do snapshots, key views and clones keep the contents they had
+   * when they were taken, whatever happens to the array later?
+   */
+  @Test
+  void testSnapshotsDoNotChange() throws Exception {
+    ConcurrentAssociativeArray<String, Integer> arr = new ConcurrentAssociativeArray<>();
+    arr.set("a", 1);
+    arr.set("b", 2);
+    PersistentAssociativeArray<String, Integer> before = arr.snapshot();
+    List<String> keys = arr.keys();
+    ConcurrentAssociativeArray<String, Integer> copy = arr.clone();
+
+    arr.set("a", 10);
+    arr.set("c", 3);
+    arr.remove("b");
+
+    assertEquals("{a:1, b:2}", before.toString(), "Snapshot unchanged");
+    assertEquals(List.of("a", "b"), keys, "Key view unchanged");
+    assertEquals("{a:1, b:2}", copy.toString(), "Clone unchanged");
+    assertEquals("{a:10, c:3}", arr.toString(), "Array changed");
+    assertEquals(List.of("a", "c"), arr.keys(), "New key view");
+
+    copy.set("d", 4);
+    assertFalse(arr.hasKey("d"), "Changing the clone leaves the array alone");
+    assertSame(arr.snapshot(), arr.snapshot(), "No change, same snapshot");
+  } // testSnapshotsDoNotChange()
+
+  /**
+   * Does replace publish the new contents as a whole?
+   */
+  @Test
+  void testReplace() throws Exception {
+    ConcurrentAssociativeArray<String, Integer> arr = new ConcurrentAssociativeArray<>();
+    arr.set("a", 1);
+    PersistentAssociativeArray<String, Integer> contents =
+        new PersistentAssociativeArray<String, Integer>().with("x", 7).with("y", 8);
+    arr.replace(contents);
+    assertSame(contents, arr.snapshot(), "Replaced");
+    assertNull(arr.getOrDefault("a", null), "Old key gone");
+    assertEquals(1, arr.indexOf("y"), "New keys in order");
+  } // testReplace()
+
+  /**
+   * Do readers that run while a writer adds and removes keys only ever
+   * see whole states? The writer adds key i with value i in order,
+   * then removes the even keys, so every state is a prefix of the
+   * keys, less some of the even ones.
+   */
+  @Test
+  void testConcurrentReaders() throws Exception {
+    final int keys = 5000;
+    ConcurrentAssociativeArray<Integer, Integer> arr = new ConcurrentAssociativeArray<>();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread writer = new Thread(() -> {
+      try {
+        for (int i = 0; i < keys; i++) {
+          arr.set(i, i);
+        } // for
+        for (int i = 0; i < keys; i += 2) {
+          arr.remove(i);
+        } // for
+      } catch (Throwable e) {
+        failure.compareAndSet(null, e);
+      } // try/catch
+    });
+
+    List<Thread> readers = new ArrayList<>();
+    for (int r = 0; r < 4; r++) {
+      readers.add(new Thread(() -> {
+        try {
+          while (writer.isAlive() || arr.size() > keys / 2) {
+            PersistentAssociativeArray<Integer, Integer> seen = arr.snapshot();
+            List<Integer> order = seen.keys();
+            assertEquals(seen.size(), order.size(), "Size matches the keys");
+            int last = -1;
+            for (int i = 0; i < order.size(); i++) {
+              int key = order.get(i);
+              assertTrue(key == last + 1 || (key == last + 2 && key % 2 == 1),
+                  "Keys in order, with only even keys missing");
+              assertEquals(key, seen.get(key), "Value of " + key);
+              assertEquals(i, seen.indexOf(key), "Index of " + key);
+              last = key;
+            } // for
+          } // while
+        } catch (Throwable e) {
+          failure.compareAndSet(null, e);
+        } // try/catch
+      }));
+    } // for
+
+    writer.start();
+    for (Thread reader : readers) {
+      reader.start();
+    } // for
+    writer.join();
+    for (Thread reader : readers) {
+      reader.join();
+    } // for
+
+    if (failure.get() != null) {
+      throw new AssertionError("A thread failed", failure.get());
+    } // if
+    assertEquals(keys / 2, arr.size(), "Odd keys left");
+    for (int i = 0; i < keys; i++) {
+      assertEquals(i % 2 == 1, arr.hasKey(i), "Key " + i);
+    } // for
+  } // testConcurrentReaders()
+
+  /**
+   * Do concurrent writers lose any of each other's changes?
+   */
+  @Test
+  void testConcurrentWriters() throws Exception {
+    ConcurrentAssociativeArray<String, Integer> arr = new ConcurrentAssociativeArray<>();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<Thread> writers = new ArrayList<>();
+    for (int w = 0; w < 4; w++) {
+      final int id = w;
+      writers.add(new Thread(() -> {
+        try {
+          for (int i = 0; i < 1000; i++) {
+            arr.set(id + ":" + i, i);
+          } // for
+        } catch (Throwable e) {
+          failure.compareAndSet(null, e);
+        } // try/catch
+      }));
+    } // for
+    for (Thread writer : writers) {
+      writer.start();
+    } // for
+    for (Thread writer : writers) {
+      writer.join();
+    } // for
+    if (failure.get() != null) {
+      throw new AssertionError("A thread failed", failure.get());
+    } // if
+    assertEquals(4000, arr.size(), "No lost writes");
+  } // testConcurrentWriters()
+} // class TestConcurrentAssociativeArray
@@ -0,0 +1,201 @@
+package edu.grinnell.csc207.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of PersistentAssociativeArray, including the shapes of its two
+ * tries.
+ *
+ * @author Alex Cyphers
+ */
+public class TestPersistentAssociativeArray {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Build an array mapping each of 0 .. n-1 to its square.
+   */
+  static PersistentAssociativeArray<Integer, Integer> squares(int n)
+      throws Exception {
+    PersistentAssociativeArray<Integer, Integer> arr = new PersistentAssociativeArray<>();
+    for (int i = 0; i < n; i++) {
+      arr = arr.with(i, i * i);
+    } // for
+    return arr;
+  } // squares(int)
+
+  /**
+   * Find how many levels of nodes a hash trie has.
+   */
+  static int depth(PersistentAssociativeArray.Node node) {
+    int depth = 0;
+    for (Object child : node.slots) {
+      if (child instanceof PersistentAssociativeArray.Node) {
+        depth = Math.max(depth, depth((PersistentAssociativeArray.Node) child));
+      } // if
+    } // for
+    return depth + 1;
+  } // depth(Node)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Do with and without give new arrays and leave the old ones as they
+   * were?
+   */
+  @Test
+  void testWithWithout() throws Exception {
+    PersistentAssociativeArray<String, Integer> empty = new PersistentAssociativeArray<>();
+    PersistentAssociativeArray<String, Integer> one = empty.with("a", 1);
+    PersistentAssociativeArray<String, Integer> two = one.with("b", 2);
+    PersistentAssociativeArray<String, Integer> changed = two.with("a", 10);
+    PersistentAssociativeArray<String, Integer> removed = changed.without("a");
+
+    assertEquals(0, empty.size(), "Empty stays empty");
+    assertEquals("{a:1}", one.toString());
+    assertEquals("{a:1, b:2}", two.toString());
+    assertEquals("{a:10, b:2}", changed.toString(), "Replacing keeps the order");
+    assertEquals("{b:2}", removed.toString());
+    assertEquals(0, removed.indexOf("b"), "Index skips the removed key");
+    assertFalse(removed.hasKey("a"));
+    assertThrows(KeyNotFoundException.class, () -> removed.get("a"));
+    assertSame(removed, removed.without("a"), "Removing a missing key");
+    assertSame(removed, removed.without(null), "Removing null");
+    assertThrows(NullKeyException.class, () -> removed.with(null, 3));
+    assertSame(two, two.clone(), "Clones are free");
+  } // testWithWithout()
+
+  /**
+   * Do keys whose hashes are equal, or that share the bits of the
+   * first levels of the hash trie, stay apart?
+   */
+  @Test
+  void testCollisions() throws Exception {
+    PersistentAssociativeArray<TestAssociativeArray.Collider, Integer> same =
+        new PersistentAssociativeArray<>();
+    List<PersistentAssociativeArray<TestAssociativeArray.Collider, Integer>> versions =
+        new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      versions.add(same);
+      same = same.with(new TestAssociativeArray.Collider("c" + i), i);
+    } // for
+    assertEquals(1, depth(same.root), "Equal hashes share a chain");
+    for (int i = 0; i < 10; i++) {
+      assertEquals(i, same.get(new TestAssociativeArray.Collider("c" + i)));
+      assertEquals(i, versions.get(i).size(), "Old versions unchanged");
+    } // for
+    same = same.without(new TestAssociativeArray.Collider("c4"));
+    assertFalse(same.hasKey(new TestAssociativeArray.Collider("c4")));
+    assertEquals(5, same.get(new TestAssociativeArray.Collider("c5")),
+        "Rest of the chain kept");
+    assertEquals(4, same.indexOf(new TestAssociativeArray.Collider("c5")));
+
+    // Integers below 65536 are their own hashes, so these share the
+    // lowest 5, 10 and 15 bits.
+    PersistentAssociativeArray<Integer, String> deep = new PersistentAssociativeArray<>();
+    for (int key : new int[] {0, 32, 1024, 32768}) {
+      deep = deep.with(key, "v" + key);
+    } // for
+    assertEquals(4, depth(deep.root), "One level per shared group of bits");
+    for (int key : new int[] {0, 32, 1024, 32768}) {
+      assertEquals("v" + key, deep.get(key));
+    } // for
+    assertFalse(deep.hasKey(64), "Same path, different key");
+    deep = deep.without(1024).without(32768);
+    assertEquals(2, depth(deep.root), "Emptied levels are pulled up");
+    assertEquals("v32", deep.get(32));
+  } // testCollisions()
+
+  /**
+   * Does the vector of pairs grow new levels at 32, 1024 and 32768
+   * pairs, and are the pairs still in order and found?
+   */
+  @Test
+  void testVectorDepth() throws Exception {
+    PersistentAssociativeArray<Integer, Integer> arr = new PersistentAssociativeArray<>();
+    for (int i = 0; i < 40000; i++) {
+      if (i == 32 || i == 1024 || i == 32768) {
+        int before = arr.shift;
+        arr = arr.with(i, i * i);
+        assertEquals(before + PersistentAssociativeArray.BITS, arr.shift,
+            "New level at " + i);
+      } else {
+        arr = arr.with(i, i * i);
+      } // if/else
+    } // for
+    assertEquals(15, arr.shift, "Four levels");
+    for (int i = 0; i < 40000; i += 7) {
+      assertEquals(i * i, arr.get(i), "Value of " + i);
+      assertEquals(i, arr.keys().get(i), "Key " + i);
+      assertEquals(i, arr.indexOf(i), "Index of " + i);
+    } // for
+    int[] next = new int[] {0};
+    arr.forEach((key, val) -> assertEquals(next[0]++, key, "In order"));
+    assertEquals(40000, next[0], "Every pair visited");
+  } // testVectorDepth()
+
+  /**
+   * Do new versions share the parts of both tries that they did not
+   * change?
+   */
+  @Test
+  void testStructuralSharing() throws Exception {
+    PersistentAssociativeArray<Integer, Integer> arr = squares(2000);
+
+    PersistentAssociativeArray<Integer, Integer> replaced = arr.with(1999, -1);
+    assertSame(arr.root, replaced.root, "Replacing a value keeps the hash trie");
+    assertSame(arr.pairs[0], replaced.pairs[0], "Untouched pairs shared");
+    assertEquals(1999 * 1999, arr.get(1999), "Old version unchanged");
+    assertEquals(-1, replaced.get(1999));
+
+    PersistentAssociativeArray<Integer, Integer> added = arr.with(2000, 0);
+    assertSame(arr.pairs[0], added.pairs[0], "Appending shares the pairs");
+    int shared = 0;
+    for (int i = 0; i < arr.root.slots.length; i++) {
+      if (arr.root.slots[i] == added.root.slots[i]) {
+        shared++;
+      } // if
+    } // for
+    assertEquals(arr.root.slots.length - 1, shared, "One path of the trie copied");
+
+    PersistentAssociativeArray<Integer, Integer> removed = arr.without(5);
+    assertSame(arr.pairs[1], removed.pairs[1], "Removing shares other pairs");
+    assertNull(removed.pairAt(5), "Tombstone left behind");
+    assertEquals(2000, removed.used, "Positions kept");
+    assertEquals(1999, removed.size());
+    assertTrue(arr.hasKey(5), "Old version unchanged");
+  } // testStructuralSharing()
+
+  /**
+   * Are tombstones dropped once they are most of the vector?
+   */
+  @Test
+  void testCompaction() throws Exception {
+    PersistentAssociativeArray<Integer, Integer> arr = squares(100);
+    for (int i = 0; i < 50; i++) {
+      arr = arr.without(2 * i);
+    } // for
+    assertEquals(100, arr.used, "Half tombstones are kept");
+    arr = arr.without(1);
+    assertEquals(49, arr.size());
+    assertEquals(49, arr.used, "Compacted");
+    for (int i = 1; i < 50; i++) {
+      int key = 2 * i + 1;
+      assertEquals(key * key, arr.get(key));
+      assertEquals(i - 1, arr.indexOf(key), "Index of " + key);
+    } // for
+  } // testCompaction()
+} // class TestPersistentAssociativeArray